@@ -0,0 +1,87 @@
+package org.granite.classification.frequency;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.granite.classification.model.AssociationStatistics;
+import org.granite.math.ProbabilityTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Compares the shared-product likelihood pass against the per-value union it replaced
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LikelihoodBenchmark {
+
+  @Param({"1000", "5000", "20000"})
+  public int valueCount;
+
+  private HashMap<Integer, AssociationStatistics<Integer>> associationStatistics;
+
+  @Setup
+  public void setUp() {
+    final Random random = new Random(42);
+
+    associationStatistics = new HashMap<>();
+
+    double totalFrequency = 0.0;
+    final double[] frequencies = new double[valueCount];
+
+    for (int value = 0; value < valueCount; value++) {
+      frequencies[value] = 1 + random.nextInt(1000);
+      totalFrequency += frequencies[value];
+    }
+
+    for (int value = 0; value < valueCount; value++) {
+      associationStatistics.put(value, new AssociationStatistics<>(value)
+          .withFrequency(frequencies[value])
+          .withProbability(frequencies[value] / totalFrequency));
+    }
+  }
+
+  @Benchmark
+  public Map<Integer, AssociationStatistics<Integer>> sharedProduct() {
+    FrequencyModelBuilder.calculateLikelihoods(associationStatistics);
+
+    return associationStatistics;
+  }
+
+  @Benchmark
+  public Map<Integer, AssociationStatistics<Integer>> perValueUnion() {
+    for (Map.Entry<Integer, AssociationStatistics<Integer>> statisticsEntry : associationStatistics
+        .entrySet()) {
+
+      final List<Double> allOtherProbabilities = associationStatistics
+          .entrySet()
+          .stream()
+          .filter(entry -> !entry.getKey().equals(statisticsEntry.getKey()))
+          .map(entry -> entry.getValue().getProbability())
+          .collect(Collectors.toList());
+
+      statisticsEntry
+          .getValue()
+          .withLikelihood(
+              statisticsEntry.getValue().getProbability() /
+                  ProbabilityTools.independentUnion(allOtherProbabilities)
+          );
+    }
+
+    return associationStatistics;
+  }
+}
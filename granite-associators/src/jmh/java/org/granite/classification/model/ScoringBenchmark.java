@@ -0,0 +1,122 @@
+package org.granite.classification.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.granite.base.KeyValue;
+import org.granite.classification.bayes.BayesModelBuilder;
+import org.granite.classification.frequency.FrequencyModelBuilder;
+import org.granite.math.StatsTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Scoring a candidate against evidence drawn from the same Zipf distribution as the training
+// rows. Queries rotate so the same lookups are not repeated every invocation.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScoringBenchmark {
+
+  private static final int QUERY_COUNT = 1024;
+
+  @Param({"frequency", "bayes"})
+  public String modelType;
+
+  @Param({"100000"})
+  public int rowCount;
+
+  @Param({"8"})
+  public int rowWidth;
+
+  @Param({"10000"})
+  public int vocabularySize;
+
+  @Param({"1.0"})
+  public double zipfExponent;
+
+  @Param({"16"})
+  public int associationCount;
+
+  @Param({"100"})
+  public int candidateCount;
+
+  private AssociationModel<String, ?> model;
+  private List<String> candidates;
+  private List<String> queryValues;
+  private List<List<String>> queryAssociations;
+  private int queryIndex;
+
+  @Setup
+  public void setUp() {
+    final ZipfDataset dataset = new ZipfDataset(vocabularySize, zipfExponent, 42L);
+    final TrainingSet<Integer, String> trainingSet = new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(dataset.nextRows(rowCount, rowWidth))
+        .build();
+
+    model = "bayes".equals(modelType)
+        ? BayesModelBuilder.build(trainingSet)
+        : FrequencyModelBuilder.build(trainingSet);
+
+    candidates = dataset.nextValues(candidateCount);
+    queryValues = new ArrayList<>(QUERY_COUNT);
+    queryAssociations = new ArrayList<>(QUERY_COUNT);
+
+    for (int index = 0; index < QUERY_COUNT; index++) {
+      queryValues.add(dataset.nextValue());
+      queryAssociations.add(dataset.nextValues(associationCount));
+    }
+  }
+
+  private int nextQuery() {
+    queryIndex = (queryIndex + 1) & (QUERY_COUNT - 1);
+
+    return queryIndex;
+  }
+
+  @Benchmark
+  public Map<String, Double> supportingProbabilities() {
+    final int query = nextQuery();
+
+    return model.supportingProbabilities(queryValues.get(query), queryAssociations.get(query));
+  }
+
+  @Benchmark
+  public double meanProbability() {
+    final int query = nextQuery();
+
+    return model.meanProbability(queryValues.get(query), queryAssociations.get(query));
+  }
+
+  @Benchmark
+  public double medianProbability() {
+    final int query = nextQuery();
+
+    return model.medianProbability(queryValues.get(query), queryAssociations.get(query));
+  }
+
+  @Benchmark
+  public KeyValue<String, Double> mostProbable() {
+    return model.mostProbable(candidates, queryAssociations.get(nextQuery()), StatsTools::mean);
+  }
+
+  @Benchmark
+  public KeyValue<String, Double> mostProbablePrimitive() {
+    return model.mostProbable(
+        candidates,
+        queryAssociations.get(nextQuery()),
+        ProbabilityEnsembles.MEAN);
+  }
+}
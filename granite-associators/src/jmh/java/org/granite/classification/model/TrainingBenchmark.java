@@ -0,0 +1,67 @@
+package org.granite.classification.model;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.granite.classification.bayes.BayesModel;
+import org.granite.classification.bayes.BayesModelBuilder;
+import org.granite.classification.frequency.FrequencyModel;
+import org.granite.classification.frequency.FrequencyModelBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Counting and model building over Zipf distributed rows
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrainingBenchmark {
+
+  @Param({"10000", "100000"})
+  public int rowCount;
+
+  @Param({"4", "16"})
+  public int rowWidth;
+
+  @Param({"10000"})
+  public int vocabularySize;
+
+  @Param({"1.0"})
+  public double zipfExponent;
+
+  private List<TrainingRow<Integer, String>> rows;
+  private TrainingSet<Integer, String> trainingSet;
+
+  @Setup
+  public void setUp() {
+    rows = new ZipfDataset(vocabularySize, zipfExponent, 42L).nextRows(rowCount, rowWidth);
+    trainingSet = buildTrainingSet();
+  }
+
+  @Benchmark
+  public TrainingSet<Integer, String> buildTrainingSet() {
+    return new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(rows)
+        .build();
+  }
+
+  @Benchmark
+  public FrequencyModel<String> buildFrequencyModel() {
+    return FrequencyModelBuilder.build(trainingSet);
+  }
+
+  @Benchmark
+  public BayesModel<String> buildBayesModel() {
+    return BayesModelBuilder.build(trainingSet);
+  }
+}
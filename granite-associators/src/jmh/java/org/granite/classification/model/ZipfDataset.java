@@ -0,0 +1,68 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Synthetic training data whose values follow a Zipf distribution, like tags or words: a few
+ * values occur in most rows and a long tail occurs rarely. Seeded, so every fork benchmarks the
+ * same rows.
+ */
+public class ZipfDataset {
+
+  private final double[] cumulativeProbabilities;
+  private final Random random;
+
+  public ZipfDataset(final int vocabularySize, final double exponent, final long seed) {
+    checkArgument(vocabularySize > 0, "vocabularySize must be > 0");
+
+    this.cumulativeProbabilities = new double[vocabularySize];
+    this.random = new Random(seed);
+
+    double total = 0.0;
+
+    for (int rank = 0; rank < vocabularySize; rank++) {
+      total += 1.0 / Math.pow(rank + 1, exponent);
+      cumulativeProbabilities[rank] = total;
+    }
+
+    for (int rank = 0; rank < vocabularySize; rank++) {
+      cumulativeProbabilities[rank] /= total;
+    }
+  }
+
+  public String nextValue() {
+    final int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+
+    return "v" + (index < 0 ? Math.min(-index - 1, cumulativeProbabilities.length - 1) : index);
+  }
+
+  // Distinct values drawn until the row is full; width is capped at the vocabulary size
+  public List<String> nextValues(final int width) {
+    final int distinctWidth = Math.min(width, cumulativeProbabilities.length);
+    final Set<String> values = new LinkedHashSet<>();
+
+    while (values.size() < distinctWidth) {
+      values.add(nextValue());
+    }
+
+    return new ArrayList<>(values);
+  }
+
+  // Rows of random width between one and twice the mean width
+  public List<TrainingRow<Integer, String>> nextRows(final int rowCount, final int meanWidth) {
+    final List<TrainingRow<Integer, String>> rows = new ArrayList<>(rowCount);
+
+    for (int id = 0; id < rowCount; id++) {
+      rows.add(new TrainingRow<>(id, nextValues(1 + random.nextInt(2 * meanWidth))));
+    }
+
+    return rows;
+  }
+}
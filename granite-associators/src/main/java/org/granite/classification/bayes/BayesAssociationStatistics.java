@@ -4,15 +4,28 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.math.DoubleMath;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 import org.granite.classification.model.AssociationStatistics;
-import org.granite.math.ProbabilityTools;
+import org.granite.classification.model.IndependentUnions.LogComplementProduct;
 
 public class BayesAssociationStatistics<V> extends AssociationStatistics<V> {
 
+  // Product of (1 - p) over the associated value probabilities and the modification stamp of
+  // the probabilities it was built from
+  private static class StampedProduct {
+
+    private final LogComplementProduct product;
+    private final long stamp;
+
+    private StampedProduct(final LogComplementProduct product, final long stamp) {
+      this.product = product;
+      this.stamp = stamp;
+    }
+  }
+
   private Map<V, Double> associatedValuePosteriorProbabilities = new HashMap<>();
+  // Built on first use and rebuilt whenever the associated value probabilities change
+  private volatile StampedProduct associatedProbabilityProduct;
 
   public BayesAssociationStatistics(AssociationStatistics<V> associationStatistics) {
     super(associationStatistics);
@@ -47,24 +60,38 @@ public class BayesAssociationStatistics<V> extends AssociationStatistics<V> {
       return 0.0; //No likelihood
     }
 
-    if (getAssociatedValueProbabilities().size() == 0) {
+    if (getAssociatedValueProbabilities().size() == 1) {
       return associatedProbability;
     }
 
-    final List<Double> otherAssociationProbabilities = getAssociatedValueProbabilities()
-        .entrySet()
-        .stream()
-        .filter(entry -> !entry.getKey().equals(key))
-        .map(Map.Entry::getValue)
-        .collect(Collectors.toList());
+    // Union of every other associated probability, without rebuilding the list for each key
+    final double denominator = getAssociatedProbabilityProduct()
+        .unionWithout(associatedProbability);
 
-    if (otherAssociationProbabilities.size() == 0) {
-      return associatedProbability;
-    }
+    return denominator > 0.0 ? associatedProbability / denominator : associatedProbability;
+  }
+
+  // Drops the memoized product. Changes to the associated value probabilities are also detected
+  // on the next lookup, so this only releases the product early.
+  public void clearAssociationLikelihoods() {
+    this.associatedProbabilityProduct = null;
+  }
 
-    double denominator = ProbabilityTools
-        .independentUnion(otherAssociationProbabilities);
+  private LogComplementProduct getAssociatedProbabilityProduct() {
+    final long stamp = getAssociatedValueProbabilitiesStamp();
+    StampedProduct product = associatedProbabilityProduct;
 
-    return denominator > 0.0 ? associatedProbability / denominator : associatedProbability;
+    if (product == null || product.stamp != stamp) {
+      final LogComplementProduct complementProduct = new LogComplementProduct();
+
+      for (double probability : getAssociatedValueProbabilities().values()) {
+        complementProduct.add(probability);
+      }
+
+      product = new StampedProduct(complementProduct, stamp);
+      associatedProbabilityProduct = product;
+    }
+
+    return product.product;
   }
 }
@@ -1,12 +1,17 @@
 package org.granite.classification.bayes;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.collect.ImmutableMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.granite.base.KeyValue;
 import org.granite.classification.model.AssociationModel;
+import org.granite.classification.model.CompactionReport;
+import org.granite.classification.model.CompactionRules;
+import org.granite.classification.model.CooccurrenceTable;
 
 public class BayesModel<V> extends AssociationModel<V, BayesAssociationStatistics<V>> {
 
@@ -22,8 +27,7 @@ public class BayesModel<V> extends AssociationModel<V, BayesAssociationStatistic
     checkNotNull(value, "value");
     checkNotNull(givenAssociations, "givenAssociations");
 
-    final BayesAssociationStatistics<V> valueStatistics = getAssociationStatisticsMap()
-        .get(value);
+    final BayesAssociationStatistics<V> valueStatistics = getAssociationStatistics(value);
 
     if (valueStatistics == null) {
       return ImmutableMap.of();
@@ -38,13 +42,136 @@ public class BayesModel<V> extends AssociationModel<V, BayesAssociationStatistic
     for (V associatedValue : givenAssociations) {
       checkNotNull(associatedValue, "givenAssociations cannot contain a null");
 
-      final double probabilityOfValueGivenAssociation = valueStatistics
-          .getAssociatedValuePosteriorProbabilities()
-          .getOrDefault(associatedValue, 0.0);
-
-      results.put(associatedValue, probabilityOfValueGivenAssociation);
+      results.put(
+          associatedValue,
+          supportingProbability(value, valueStatistics, associatedValue, null));
     }
 
     return results;
   }
+
+  // Naive Bayes log joint probability log P(V) + Σ log P(A:V) over the given associations,
+  // scored in one pass over the value's association row. P(A:V) is smoothed as
+  // (count(V, A) + smoothing) / (count(V) + smoothing * |values|), so with smoothing > 0 an
+  // unseen pair lowers the score instead of zeroing it. Associations the model has never seen
+  // carry no evidence for any value and are skipped. Unknown values score negative infinity.
+  public double logJointProbability(
+      final V value,
+      final List<V> givenAssociations,
+      final double smoothing) {
+    checkNotNull(value, "value");
+    checkNotNull(givenAssociations, "givenAssociations");
+    checkArgument(smoothing >= 0.0, "smoothing must be >= 0");
+
+    final BayesAssociationStatistics<V> valueStatistics = getAssociationStatistics(value);
+
+    if (valueStatistics == null || valueStatistics.getProbability() <= 0.0) {
+      return Double.NEGATIVE_INFINITY;
+    }
+
+    final Map<V, Double> likelihoods = valueStatistics.getAssociatedValueProbabilities();
+    final double associationTotal = valueStatistics.getAssociationFrequency();
+    final double denominator = associationTotal + smoothing * getValueCount();
+
+    if (denominator <= 0.0) {
+      return Double.NEGATIVE_INFINITY;
+    }
+
+    final double logDenominator = Math.log(denominator);
+    double logJoint = Math.log(valueStatistics.getProbability());
+
+    for (int index = 0; index < givenAssociations.size(); index++) {
+      final V associatedValue = checkNotNull(givenAssociations.get(index),
+          "givenAssociations cannot contain a null");
+
+      if (!containsValue(associatedValue)) {
+        continue;
+      }
+
+      final Double likelihood = likelihoods.get(associatedValue);
+      final double count = likelihood == null ? 0.0 : likelihood * associationTotal;
+
+      logJoint += Math.log(count + smoothing) - logDenominator;
+    }
+
+    return logJoint;
+  }
+
+  // The value with the highest log joint probability. Ties keep the earlier value.
+  public KeyValue<V, Double> mostProbableJoint(
+      final List<V> values,
+      final List<V> givenAssociations,
+      final double smoothing) {
+    checkNotNull(values, "values");
+
+    V highestValue = null;
+    double highestLogJoint = Double.NEGATIVE_INFINITY;
+
+    for (V value : values) {
+      final double logJoint = logJointProbability(value, givenAssociations, smoothing);
+
+      if (highestValue == null || logJoint > highestLogJoint) {
+        highestLogJoint = logJoint;
+        highestValue = value;
+      }
+    }
+
+    return new KeyValue<>(highestValue, highestLogJoint);
+  }
+
+  protected boolean containsValue(final V value) {
+    return super.getAssociationStatisticsMap().containsKey(value);
+  }
+
+  protected int getValueCount() {
+    return super.getAssociationStatisticsMap().size();
+  }
+
+  // Ranked by P(value : associatedValue), and removed from both the likelihood and posterior rows
+  @Override
+  protected double associationPosterior(
+      final V value,
+      final BayesAssociationStatistics<V> valueStatistics,
+      final V associatedValue) {
+    return supportingProbability(value, valueStatistics, associatedValue, null);
+  }
+
+  @Override
+  protected int removeAssociation(
+      final BayesAssociationStatistics<V> valueStatistics,
+      final V associatedValue) {
+    final int removed = super.removeAssociation(valueStatistics, associatedValue)
+        + (valueStatistics.getAssociatedValuePosteriorProbabilities()
+        .remove(associatedValue) == null ? 0 : 1);
+
+    valueStatistics.clearAssociationLikelihoods();
+
+    return removed;
+  }
+
+  @Override
+  protected boolean usesAssociationStatistics() {
+    return false;
+  }
+
+  // P(value : associatedValue) is read from the value's posterior row, so the association
+  // statistics are not needed
+  @Override
+  public double supportingProbability(
+      final V value,
+      final BayesAssociationStatistics<V> valueStatistics,
+      final V associatedValue,
+      final BayesAssociationStatistics<V> associatedValueStatistics) {
+    // Not getOrDefault, which would box the default on every miss
+    final Double posterior = valueStatistics
+        .getAssociatedValuePosteriorProbabilities()
+        .get(associatedValue);
+
+    return posterior == null ? 0.0 : posterior;
+  }
+
+  // Only called by the builder, on a model nothing else has seen yet
+  CompactionReport compact(final CompactionRules rules, final CooccurrenceTable<V> table) {
+    return pruneAssociations(rules, table);
+  }
 }
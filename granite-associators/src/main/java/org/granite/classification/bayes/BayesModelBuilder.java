@@ -4,10 +4,18 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.HashMap;
 import java.util.Map;
-import org.granite.classification.frequency.FrequencyModel;
 import org.granite.classification.frequency.FrequencyModelBuilder;
+import org.granite.classification.metrics.BuildPhase;
+import org.granite.classification.metrics.Metrics;
+import org.granite.classification.metrics.ModelSize;
+import org.granite.classification.metrics.Timing;
 import org.granite.classification.model.AssociationStatistics;
+import org.granite.classification.model.CompactionRules;
+import org.granite.classification.model.CooccurrenceTable;
+import org.granite.classification.model.FrequencyCounter;
+import org.granite.classification.model.IncrementalFrequencies;
 import org.granite.classification.model.TrainingSet;
+import org.granite.classification.model.ValueDictionary;
 
 public class BayesModelBuilder {
 
@@ -17,13 +25,15 @@ public class BayesModelBuilder {
 
     checkNotNull(trainingSet, "trainingSet");
 
-    final FrequencyModel<V> frequencyModel = FrequencyModelBuilder
-        .build(trainingSet);
+    final Timing build = Metrics.beginModelBuild();
+
+    // Not FrequencyModelBuilder.build, which would report a model build of its own
+    final Map<V, AssociationStatistics<V>> frequencyStatistics = FrequencyModelBuilder
+        .calculateStatistics(trainingSet);
 
     final HashMap<V, BayesAssociationStatistics<V>> result = new HashMap<>();
 
-    for (AssociationStatistics<V> associationStatistics : frequencyModel
-        .getAssociationStatisticsMap().values()) {
+    for (AssociationStatistics<V> associationStatistics : frequencyStatistics.values()) {
 
       final BayesAssociationStatistics<V> bayesAssociationStatistics = new BayesAssociationStatistics<>(
           associationStatistics);
@@ -31,44 +41,94 @@ public class BayesModelBuilder {
       result.put(bayesAssociationStatistics.getValue(), bayesAssociationStatistics);
     }
 
-    calculateAssociativePosteriors(result);
+    final Timing posteriors = Metrics.beginPhase(BuildPhase.POSTERIORS);
+
+    calculateAssociativePosteriors(trainingSet.getCooccurrenceTable(), result);
+
+    Metrics.endPhase(posteriors, BuildPhase.POSTERIORS, result.size());
+
+    // Probabilities and posteriors are kept per association
+    if (build.isEnabled()) {
+      Metrics.endModelBuild(build, ModelSize.of(BayesModel.class, result, 2));
+    }
+
+    return new BayesModel<>(result, trainingSet.getTotalValueFrequency());
+  }
+
+  // Builds the model and prunes its associations; the model keeps the compaction report
+  public static <K extends Comparable<K>, V> BayesModel<V> build(
+      final TrainingSet<K, V> trainingSet,
+      final CompactionRules compactionRules
+  ) {
+    checkNotNull(compactionRules, "compactionRules");
+
+    final BayesModel<V> bayesModel = build(trainingSet);
+
+    bayesModel.compact(compactionRules, trainingSet.getCooccurrenceTable());
 
-    return new BayesModel<>(result, frequencyModel.getTotalValueFrequency());
+    return bayesModel;
+  }
+
+  public static <K extends Comparable<K>, V> UpdatableBayesModel<V> buildUpdatable(
+      final TrainingSet<K, V> trainingSet
+  ) {
+    final BayesModel<V> bayesModel = build(trainingSet);
+
+    return new UpdatableBayesModel<>(
+        bayesModel.getAssociationStatisticsMap(),
+        new IncrementalFrequencies<>(
+            FrequencyCounter.of(
+                trainingSet.getCooccurrenceTable(),
+                trainingSet.getTotalValueFrequency(),
+                trainingSet.isStrictAssociation(),
+                trainingSet.getWideRowStrategy()),
+            trainingSet.getDecay())
+    );
   }
 
   private static <V> void calculateAssociativePosteriors(
+      final CooccurrenceTable<V> table,
       final Map<V, BayesAssociationStatistics<V>> associationStatisticsMap) {
 
+    final ValueDictionary<V> dictionary = table.getDictionary();
+
+    // Per-value probabilities and association totals, indexed by dictionary id
+    final double[] probabilities = new double[table.size()];
+    final double[] associationTotals = new double[table.size()];
+
+    for (int id = 0; id < table.size(); id++) {
+      final BayesAssociationStatistics<V> statistics = associationStatisticsMap
+          .get(dictionary.getValue(id));
+
+      checkNotNull(statistics, "statistics");
+
+      probabilities[id] = statistics.getProbability();
+      associationTotals[id] = table.getRowTotal(id);
+    }
+
     // Calculate P(value : associatedValue)
     // P(V:A) = (P(A:V) * P(V)) / P(A)
     // P(V) = prior
     // P(A) = evidence
-    for (V value : associationStatisticsMap.keySet()) {
+    for (int valueId = 0; valueId < table.size(); valueId++) {
 
       final BayesAssociationStatistics<V> currentValueStatistics = associationStatisticsMap
-          .get(value);
-
-      checkNotNull(currentValueStatistics, "currentValueStatistics");
-
-      for (Map.Entry<V, Double> associatedEntry : currentValueStatistics
-          .getAssociatedValueProbabilities()
-          .entrySet()) {
+          .get(dictionary.getValue(valueId));
 
-        final BayesAssociationStatistics<V> associatedValueStatistics = associationStatisticsMap
-            .get(
-                associatedEntry.getKey());
+      for (int index = table.getRowStart(valueId); index < table.getRowEnd(valueId); index++) {
 
-        checkNotNull(associatedValueStatistics, "associatedValueStatistics");
+        final int associatedId = table.getColumn(index);
 
-        final double associationLikelihood = associatedValueStatistics
-            .getAssociatedValueProbabilities().getOrDefault(value, 0.0);
+        final double associationLikelihood = associationTotals[associatedId] > 0.0
+            ? table.getCount(associatedId, valueId) / associationTotals[associatedId]
+            : 0.0;
 
         final double posterior =
-            (currentValueStatistics.getProbability() * associationLikelihood) /
-                associatedValueStatistics.getProbability();
+            (probabilities[valueId] * associationLikelihood) /
+                probabilities[associatedId];
 
         currentValueStatistics.getAssociatedValuePosteriorProbabilities()
-            .put(associatedEntry.getKey(),
+            .put(dictionary.getValue(associatedId),
                 posterior);
 
       }
@@ -0,0 +1,15 @@
+package org.granite.classification.bayes;
+
+/**
+ * How {@link QuantizedBayesModel} stores probabilities and posteriors.
+ */
+public enum Quantization {
+  // 32 bit floats, about 7 significant digits
+  FLOAT,
+  // 16 bit codes spread evenly from zero to the largest stored value. The absolute error is at
+  // most half a step, so small probabilities lose relative precision.
+  FIXED_POINT_16,
+  // 16 bit codes spread evenly in log space between the smallest and largest positive values,
+  // giving the same relative error at every magnitude. Zero keeps its own code.
+  LOG_16
+}
@@ -0,0 +1,155 @@
+package org.granite.classification.bayes;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.granite.classification.model.ValueDictionary;
+
+/**
+ * Accuracy of a quantized model against the full-precision model it was built from. Errors are
+ * over every stored posterior. Ranking agreement is measured per association A over the values
+ * it supports, ordered by P(V:A): how often the most probable value is unchanged, and what
+ * fraction of differently scored value pairs keep their order.
+ */
+public class QuantizationReport {
+
+  private final double maximumAbsoluteError;
+  private final double maximumRelativeError;
+  private final double topOneAgreement;
+  private final double pairwiseAgreement;
+
+  private QuantizationReport(
+      final double maximumAbsoluteError,
+      final double maximumRelativeError,
+      final double topOneAgreement,
+      final double pairwiseAgreement) {
+    this.maximumAbsoluteError = maximumAbsoluteError;
+    this.maximumRelativeError = maximumRelativeError;
+    this.topOneAgreement = topOneAgreement;
+    this.pairwiseAgreement = pairwiseAgreement;
+  }
+
+  // Quadratic in the number of values each association supports, meant for offline evaluation
+  public static <V> QuantizationReport of(
+      final BayesModel<V> model,
+      final QuantizedBayesModel<V> quantizedModel) {
+    checkNotNull(model, "model");
+    checkNotNull(quantizedModel, "quantizedModel");
+
+    final Map<V, BayesAssociationStatistics<V>> statisticsMap = model.getAssociationStatisticsMap();
+    final ValueDictionary<V> dictionary = quantizedModel.getDictionary();
+
+    double maximumAbsoluteError = 0.0;
+    double maximumRelativeError = 0.0;
+
+    for (BayesAssociationStatistics<V> statistics : statisticsMap.values()) {
+      final int id = dictionary.getId(statistics.getValue());
+
+      for (Map.Entry<V, Double> posterior : statistics
+          .getAssociatedValuePosteriorProbabilities().entrySet()) {
+        final double error = Math.abs(posterior.getValue()
+            - quantizedModel.posterior(id, dictionary.getId(posterior.getKey())));
+
+        maximumAbsoluteError = Math.max(maximumAbsoluteError, error);
+
+        if (posterior.getValue() > 0.0) {
+          maximumRelativeError = Math.max(maximumRelativeError, error / posterior.getValue());
+        }
+      }
+    }
+
+    // A value is scored given A from its own posterior row, so the values A supports are the
+    // values whose rows hold A
+    final Map<V, List<V>> candidatesByAssociation = new HashMap<>();
+
+    for (BayesAssociationStatistics<V> statistics : statisticsMap.values()) {
+      for (V associatedValue : statistics.getAssociatedValuePosteriorProbabilities().keySet()) {
+        candidatesByAssociation
+            .computeIfAbsent(associatedValue, key -> new ArrayList<>())
+            .add(statistics.getValue());
+      }
+    }
+
+    int rankedAssociations = 0;
+    int topOneAgreements = 0;
+    long orderedPairs = 0L;
+    long concordantPairs = 0L;
+
+    for (Map.Entry<V, List<V>> entry : candidatesByAssociation.entrySet()) {
+      final V associatedValue = entry.getKey();
+      final int associatedId = dictionary.getId(associatedValue);
+      final List<V> candidates = entry.getValue();
+      final int candidateCount = candidates.size();
+
+      final double[] scores = new double[candidateCount];
+      final double[] quantizedScores = new double[candidateCount];
+
+      for (int index = 0; index < candidateCount; index++) {
+        final V value = candidates.get(index);
+
+        scores[index] = statisticsMap.get(value)
+            .getAssociatedValuePosteriorProbabilities()
+            .get(associatedValue);
+        quantizedScores[index] = quantizedModel.posterior(dictionary.getId(value), associatedId);
+      }
+
+      rankedAssociations++;
+
+      if (scores[argmax(quantizedScores)] == scores[argmax(scores)]) {
+        topOneAgreements++;
+      }
+
+      for (int first = 0; first < candidateCount; first++) {
+        for (int second = first + 1; second < candidateCount; second++) {
+          if (scores[first] == scores[second]) {
+            continue;
+          }
+
+          orderedPairs++;
+
+          if (Double.compare(scores[first], scores[second])
+              == Double.compare(quantizedScores[first], quantizedScores[second])) {
+            concordantPairs++;
+          }
+        }
+      }
+    }
+
+    return new QuantizationReport(
+        maximumAbsoluteError,
+        maximumRelativeError,
+        rankedAssociations == 0 ? 1.0 : (double) topOneAgreements / rankedAssociations,
+        orderedPairs == 0L ? 1.0 : (double) concordantPairs / orderedPairs);
+  }
+
+  public double getMaximumAbsoluteError() {
+    return maximumAbsoluteError;
+  }
+
+  public double getMaximumRelativeError() {
+    return maximumRelativeError;
+  }
+
+  public double getTopOneAgreement() {
+    return topOneAgreement;
+  }
+
+  public double getPairwiseAgreement() {
+    return pairwiseAgreement;
+  }
+
+  private static int argmax(final double[] values) {
+    int best = 0;
+
+    for (int index = 1; index < values.length; index++) {
+      if (values[index] > values[best]) {
+        best = index;
+      }
+    }
+
+    return best;
+  }
+}
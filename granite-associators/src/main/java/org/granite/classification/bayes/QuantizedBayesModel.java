@@ -0,0 +1,270 @@
+package org.granite.classification.bayes;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.granite.classification.model.AssociationModel;
+import org.granite.classification.model.ValueDictionary;
+
+/**
+ * Read-only Bayes model holding its association rows in primitive arrays with P(A:V) and
+ * P(V:A) at reduced precision, see {@link Quantization}. Values are decoded while scoring.
+ * Statistics are materialized on access.
+ */
+public class QuantizedBayesModel<V> extends AssociationModel<V, BayesAssociationStatistics<V>> {
+
+  private final ValueDictionary<V> dictionary;
+  private final double[] frequencies;
+  private final double[] probabilities;
+  private final double[] likelihoods;
+  private final double[] associationFrequencies;
+  private final int[] rowOffsets;
+  private final int[] columns;
+  private final QuantizedValues associatedProbabilities;
+  private final QuantizedValues posteriors;
+
+  private QuantizedBayesModel(
+      final double totalValueFrequency,
+      final ValueDictionary<V> dictionary,
+      final double[] frequencies,
+      final double[] probabilities,
+      final double[] likelihoods,
+      final double[] associationFrequencies,
+      final int[] rowOffsets,
+      final int[] columns,
+      final QuantizedValues associatedProbabilities,
+      final QuantizedValues posteriors) {
+    super(totalValueFrequency, ImmutableMap.of());
+    this.dictionary = dictionary;
+    this.frequencies = frequencies;
+    this.probabilities = probabilities;
+    this.likelihoods = likelihoods;
+    this.associationFrequencies = associationFrequencies;
+    this.rowOffsets = rowOffsets;
+    this.columns = columns;
+    this.associatedProbabilities = associatedProbabilities;
+    this.posteriors = posteriors;
+  }
+
+  public static <V> QuantizedBayesModel<V> of(
+      final BayesModel<V> model,
+      final Quantization quantization) {
+    checkNotNull(model, "model");
+    checkNotNull(quantization, "quantization");
+
+    final Map<V, BayesAssociationStatistics<V>> statisticsMap = model.getAssociationStatisticsMap();
+    final ValueDictionary<V> dictionary = new ValueDictionary<>(
+        new ArrayList<>(statisticsMap.keySet()));
+    final int valueCount = dictionary.size();
+
+    final double[] frequencies = new double[valueCount];
+    final double[] probabilities = new double[valueCount];
+    final double[] likelihoods = new double[valueCount];
+    final double[] associationFrequencies = new double[valueCount];
+    final int[] rowOffsets = new int[valueCount + 1];
+
+    for (int id = 0; id < valueCount; id++) {
+      final BayesAssociationStatistics<V> statistics =
+          statisticsMap.get(dictionary.getValue(id));
+
+      frequencies[id] = statistics.getFrequency();
+      probabilities[id] = statistics.getProbability();
+      likelihoods[id] = statistics.getLikelihood();
+      associationFrequencies[id] = statistics.getAssociationFrequency();
+      rowOffsets[id + 1] =
+          rowOffsets[id] + statistics.getAssociatedValueProbabilities().size();
+    }
+
+    final int[] columns = new int[rowOffsets[valueCount]];
+    final double[] rowProbabilities = new double[columns.length];
+    final double[] rowPosteriors = new double[columns.length];
+
+    for (int id = 0; id < valueCount; id++) {
+      final BayesAssociationStatistics<V> statistics =
+          statisticsMap.get(dictionary.getValue(id));
+
+      int index = rowOffsets[id];
+
+      for (V associatedValue : statistics.getAssociatedValueProbabilities().keySet()) {
+        columns[index++] = dictionary.getId(associatedValue);
+      }
+
+      Arrays.sort(columns, rowOffsets[id], rowOffsets[id + 1]);
+
+      for (index = rowOffsets[id]; index < rowOffsets[id + 1]; index++) {
+        final V associatedValue = dictionary.getValue(columns[index]);
+
+        rowProbabilities[index] = statistics.getAssociatedValueProbabilities()
+            .get(associatedValue);
+        rowPosteriors[index] = statistics.getAssociatedValuePosteriorProbabilities()
+            .getOrDefault(associatedValue, 0.0);
+      }
+    }
+
+    return new QuantizedBayesModel<>(
+        model.getTotalValueFrequency(),
+        dictionary,
+        frequencies,
+        probabilities,
+        likelihoods,
+        associationFrequencies,
+        rowOffsets,
+        columns,
+        QuantizedValues.of(rowProbabilities, quantization),
+        QuantizedValues.of(rowPosteriors, quantization));
+  }
+
+  public Quantization getQuantization() {
+    return posteriors.getQuantization();
+  }
+
+  public int getPairCount() {
+    return columns.length;
+  }
+
+  // Bytes of the primitive arrays, excluding the dictionary
+  public long estimateArrayBytes() {
+    return (long) frequencies.length * Double.BYTES * 4
+        + (long) rowOffsets.length * Integer.BYTES
+        + (long) columns.length * Integer.BYTES
+        + associatedProbabilities.getByteSize()
+        + posteriors.getByteSize();
+  }
+
+  // Materialized on every call
+  @Override
+  public Map<V, BayesAssociationStatistics<V>> getAssociationStatisticsMap() {
+    final ImmutableMap.Builder<V, BayesAssociationStatistics<V>> builder = ImmutableMap.builder();
+
+    for (int id = 0; id < dictionary.size(); id++) {
+      builder.put(dictionary.getValue(id), materialize(id));
+    }
+
+    return builder.build();
+  }
+
+  @Override
+  public BayesAssociationStatistics<V> getAssociationStatistics(final V value) {
+    final int id = dictionary.getId(value);
+
+    return id == ValueDictionary.UNKNOWN_ID ? null : materialize(id);
+  }
+
+  @Override
+  public Map<V, Double> supportingProbabilities(final V value, final List<V> givenAssociations) {
+    checkNotNull(value, "value");
+    checkNotNull(givenAssociations, "givenAssociations");
+
+    final int id = dictionary.getId(value);
+
+    if (id == ValueDictionary.UNKNOWN_ID || givenAssociations.isEmpty()) {
+      return ImmutableMap.of();
+    }
+
+    final HashMap<V, Double> results = new HashMap<>();
+
+    for (V associatedValue : givenAssociations) {
+      checkNotNull(associatedValue, "givenAssociations cannot contain a null");
+
+      results.put(associatedValue, posterior(id, dictionary.getId(associatedValue)));
+    }
+
+    return results;
+  }
+
+  @Override
+  public int supportingProbabilities(
+      final V value,
+      final List<V> givenAssociations,
+      final double[] probabilities) {
+    checkNotNull(value, "value");
+    checkNotNull(givenAssociations, "givenAssociations");
+    checkNotNull(probabilities, "probabilities");
+    checkArgument(probabilities.length >= givenAssociations.size(),
+        "Buffer holds %s probabilities but %s associations were given",
+        probabilities.length, givenAssociations.size());
+
+    final int id = dictionary.getId(value);
+
+    if (id == ValueDictionary.UNKNOWN_ID) {
+      return 0;
+    }
+
+    final Set<V> repeatTracker = repeatTracker(givenAssociations);
+    int length = 0;
+
+    for (int index = 0; index < givenAssociations.size(); index++) {
+      final V associatedValue = checkNotNull(givenAssociations.get(index),
+          "givenAssociations cannot contain a null");
+
+      if (!isRepeated(givenAssociations, index, repeatTracker)) {
+        probabilities[length++] = posterior(id, dictionary.getId(associatedValue));
+      }
+    }
+
+    return length;
+  }
+
+  @Override
+  public double supportingProbability(
+      final V value,
+      final BayesAssociationStatistics<V> valueStatistics,
+      final V associatedValue,
+      final BayesAssociationStatistics<V> associatedValueStatistics) {
+    final int id = dictionary.getId(value);
+
+    return id == ValueDictionary.UNKNOWN_ID
+        ? 0.0
+        : posterior(id, dictionary.getId(associatedValue));
+  }
+
+  @Override
+  protected boolean usesAssociationStatistics() {
+    return false;
+  }
+
+  // P(V:A) decoded from the row of V, zero when the pair was never seen
+  double posterior(final int id, final int associatedId) {
+    if (associatedId == ValueDictionary.UNKNOWN_ID) {
+      return 0.0;
+    }
+
+    final int index = Arrays.binarySearch(columns, rowOffsets[id], rowOffsets[id + 1],
+        associatedId);
+
+    return index < 0 ? 0.0 : posteriors.get(index);
+  }
+
+  ValueDictionary<V> getDictionary() {
+    return dictionary;
+  }
+
+  private BayesAssociationStatistics<V> materialize(final int id) {
+    final BayesAssociationStatistics<V> statistics =
+        new BayesAssociationStatistics<>(dictionary.getValue(id));
+
+    statistics
+        .withFrequency(frequencies[id])
+        .withProbability(probabilities[id])
+        .withLikelihood(likelihoods[id])
+        .withAssociationFrequency(associationFrequencies[id]);
+
+    for (int index = rowOffsets[id]; index < rowOffsets[id + 1]; index++) {
+      final V associatedValue = dictionary.getValue(columns[index]);
+
+      statistics.getAssociatedValueProbabilities()
+          .put(associatedValue, associatedProbabilities.get(index));
+      statistics.getAssociatedValuePosteriorProbabilities()
+          .put(associatedValue, posteriors.get(index));
+    }
+
+    return statistics;
+  }
+}
@@ -0,0 +1,107 @@
+package org.granite.classification.bayes;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+// Array of non-negative doubles held at reduced precision and decoded on read
+final class QuantizedValues {
+
+  private static final int MAXIMUM_CODE = 0xFFFF;
+
+  private final Quantization quantization;
+  private final float[] floats;
+  private final short[] codes;
+  private final double offset;
+  private final double step;
+
+  private QuantizedValues(
+      final Quantization quantization,
+      final float[] floats,
+      final short[] codes,
+      final double offset,
+      final double step) {
+    this.quantization = quantization;
+    this.floats = floats;
+    this.codes = codes;
+    this.offset = offset;
+    this.step = step;
+  }
+
+  static QuantizedValues of(final double[] values, final Quantization quantization) {
+    checkNotNull(values, "values");
+    checkNotNull(quantization, "quantization");
+
+    double maximum = 0.0;
+    double minimumPositive = Double.MAX_VALUE;
+
+    for (double value : values) {
+      checkArgument(value >= 0.0, "Quantized values must be >= 0");
+
+      maximum = Math.max(maximum, value);
+
+      if (value > 0.0) {
+        minimumPositive = Math.min(minimumPositive, value);
+      }
+    }
+
+    switch (quantization) {
+      case FLOAT: {
+        final float[] floats = new float[values.length];
+
+        for (int index = 0; index < values.length; index++) {
+          floats[index] = (float) values[index];
+        }
+
+        return new QuantizedValues(quantization, floats, null, 0.0, 0.0);
+      }
+      case FIXED_POINT_16: {
+        final double step = maximum > 0.0 ? maximum / MAXIMUM_CODE : 1.0;
+        final short[] codes = new short[values.length];
+
+        for (int index = 0; index < values.length; index++) {
+          codes[index] = (short) Math.round(values[index] / step);
+        }
+
+        return new QuantizedValues(quantization, null, codes, 0.0, step);
+      }
+      case LOG_16: {
+        // Code 0 is zero, codes 1 to MAXIMUM_CODE cover [log minimum, log maximum]
+        final double offset = maximum > 0.0 ? Math.log(minimumPositive) : 0.0;
+        final double range = maximum > 0.0 ? Math.log(maximum) - offset : 0.0;
+        final double step = range > 0.0 ? range / (MAXIMUM_CODE - 1) : 1.0;
+        final short[] codes = new short[values.length];
+
+        for (int index = 0; index < values.length; index++) {
+          codes[index] = values[index] > 0.0
+              ? (short) (1 + Math.round((Math.log(values[index]) - offset) / step))
+              : 0;
+        }
+
+        return new QuantizedValues(quantization, null, codes, offset, step);
+      }
+      default:
+        throw new IllegalArgumentException("Unknown quantization " + quantization);
+    }
+  }
+
+  Quantization getQuantization() {
+    return quantization;
+  }
+
+  double get(final int index) {
+    switch (quantization) {
+      case FLOAT:
+        return floats[index];
+      case FIXED_POINT_16:
+        return (codes[index] & MAXIMUM_CODE) * step;
+      default:
+        final int code = codes[index] & MAXIMUM_CODE;
+
+        return code == 0 ? 0.0 : Math.exp(offset + (code - 1) * step);
+    }
+  }
+
+  long getByteSize() {
+    return floats != null ? (long) floats.length * Float.BYTES : (long) codes.length * Short.BYTES;
+  }
+}
@@ -0,0 +1,185 @@
+package org.granite.classification.bayes;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.BitSet;
+import java.util.Map;
+import org.granite.classification.frequency.FrequencyModelBuilder;
+import org.granite.classification.model.FrequencyCounter;
+import org.granite.classification.model.IncrementalFrequencies;
+import org.granite.classification.model.TrainingRow;
+
+/**
+ * Bayes model that accepts additional training rows. The posterior row of a value touched by new
+ * rows is recomputed the next time the value is read. A posterior P(V:A) of an untouched value is
+ * recomputed on read when A was touched. Likelihoods are only recomputed by {@link #refresh()}.
+ */
+public class UpdatableBayesModel<V> extends BayesModel<V> {
+
+  private final IncrementalFrequencies<V> incrementalFrequencies;
+  private double likelihoodTotalValueFrequency;
+  private volatile long modificationStamp;
+
+  UpdatableBayesModel(
+      final Map<V, BayesAssociationStatistics<V>> bayesAssociationStatisticsMap,
+      final IncrementalFrequencies<V> incrementalFrequencies) {
+    super(
+        bayesAssociationStatisticsMap,
+        incrementalFrequencies.getFrequencyCounter().getTotalValueFrequency());
+    this.incrementalFrequencies = checkNotNull(incrementalFrequencies, "incrementalFrequencies");
+    this.likelihoodTotalValueFrequency = getTotalValueFrequency();
+  }
+
+  public synchronized <K extends Comparable<K>> void update(
+      final Iterable<TrainingRow<K, V>> trainingRows) {
+    checkNotNull(trainingRows, "trainingRows");
+
+    for (TrainingRow<K, V> trainingRow : trainingRows) {
+      incrementalFrequencies.add(trainingRow);
+    }
+
+    setTotalValueFrequency(
+        incrementalFrequencies.getFrequencyCounter().getTotalValueFrequency());
+    modificationStamp++;
+  }
+
+  @Override
+  public boolean isUpdatable() {
+    return true;
+  }
+
+  @Override
+  public long getModificationStamp() {
+    return modificationStamp;
+  }
+
+  @Override
+  public synchronized BayesAssociationStatistics<V> getAssociationStatistics(final V value) {
+    checkNotNull(value, "value");
+
+    final int id = incrementalFrequencies.getFrequencyCounter().getId(value);
+
+    return id < 0 ? null : refreshValue(id);
+  }
+
+  // The posterior is recomputed first when the association changed after the value's row was
+  // last refreshed
+  @Override
+  public synchronized double supportingProbability(
+      final V value,
+      final BayesAssociationStatistics<V> valueStatistics,
+      final V associatedValue,
+      final BayesAssociationStatistics<V> associatedValueStatistics) {
+    final FrequencyCounter<V> frequencyCounter = incrementalFrequencies.getFrequencyCounter();
+    final int id = frequencyCounter.getId(value);
+    final int associatedId = frequencyCounter.getId(associatedValue);
+
+    if (id >= 0
+        && associatedId >= 0
+        && incrementalFrequencies.isStale(id, associatedId)
+        && frequencyCounter.getCount(id, associatedId) > 0.0) {
+      refreshPosterior(valueStatistics, id, associatedId);
+    }
+
+    return super.supportingProbability(
+        value,
+        valueStatistics,
+        associatedValue,
+        associatedValueStatistics);
+  }
+
+  @Override
+  protected synchronized boolean containsValue(final V value) {
+    return incrementalFrequencies.getFrequencyCounter().getId(value) >= 0;
+  }
+
+  @Override
+  protected synchronized int getValueCount() {
+    return incrementalFrequencies.getFrequencyCounter().size();
+  }
+
+  // Brings every statistic, including likelihoods, up to date before exposing the map
+  @Override
+  public synchronized Map<V, BayesAssociationStatistics<V>> getAssociationStatisticsMap() {
+    refresh();
+
+    return super.getAssociationStatisticsMap();
+  }
+
+  public synchronized void refresh() {
+    final BitSet changed = incrementalFrequencies.getChangedSinceFullRefresh();
+
+    if (changed.isEmpty() && likelihoodTotalValueFrequency == getTotalValueFrequency()) {
+      return;
+    }
+
+    final FrequencyCounter<V> frequencyCounter = incrementalFrequencies.getFrequencyCounter();
+
+    for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+      refreshValue(id);
+
+      // Values associated with a changed value hold a posterior that depends on its counts
+      for (int index = 0; index < frequencyCounter.getRowSize(id); index++) {
+        final int associatedId = frequencyCounter.getColumn(id, index);
+
+        refreshPosterior(refreshValue(associatedId), associatedId, id);
+      }
+    }
+
+    for (int id = 0; id < frequencyCounter.size(); id++) {
+      refreshValue(id);
+    }
+
+    FrequencyModelBuilder.calculateLikelihoods(super.getAssociationStatisticsMap());
+
+    incrementalFrequencies.markFullyRefreshed();
+    likelihoodTotalValueFrequency = getTotalValueFrequency();
+  }
+
+  private BayesAssociationStatistics<V> refreshValue(final int id) {
+    final FrequencyCounter<V> frequencyCounter = incrementalFrequencies.getFrequencyCounter();
+
+    final BayesAssociationStatistics<V> valueStatistics = super.getAssociationStatisticsMap()
+        .computeIfAbsent(frequencyCounter.getValue(id), BayesAssociationStatistics::new);
+
+    valueStatistics
+        .withProbability(frequencyCounter.getFrequency(id) / getTotalValueFrequency());
+
+    if (!incrementalFrequencies.isStale(id)) {
+      return valueStatistics;
+    }
+
+    incrementalFrequencies.refreshFrequencyStatistics(id, valueStatistics);
+    incrementalFrequencies.markRefreshed(id);
+    valueStatistics.clearAssociationLikelihoods();
+
+    valueStatistics.getAssociatedValuePosteriorProbabilities().clear();
+
+    for (int index = 0; index < frequencyCounter.getRowSize(id); index++) {
+      refreshPosterior(valueStatistics, id, frequencyCounter.getColumn(id, index));
+    }
+
+    return valueStatistics;
+  }
+
+  // P(V:A) = (P(A:V) * P(V)) / P(A)
+  private void refreshPosterior(
+      final BayesAssociationStatistics<V> valueStatistics,
+      final int id,
+      final int associatedId) {
+    final FrequencyCounter<V> frequencyCounter = incrementalFrequencies.getFrequencyCounter();
+
+    final double associationTotal = frequencyCounter.getRowTotal(associatedId);
+
+    final double associationLikelihood = associationTotal > 0.0
+        ? frequencyCounter.getCount(associatedId, id) / associationTotal
+        : 0.0;
+
+    final double posterior =
+        ((frequencyCounter.getFrequency(id) / getTotalValueFrequency()) * associationLikelihood) /
+            (frequencyCounter.getFrequency(associatedId) / getTotalValueFrequency());
+
+    valueStatistics.getAssociatedValuePosteriorProbabilities()
+        .put(frequencyCounter.getValue(associatedId), posterior);
+  }
+}
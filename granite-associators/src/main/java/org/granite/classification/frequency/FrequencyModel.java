@@ -7,6 +7,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.granite.classification.model.AssociationModel;
+import org.granite.classification.model.CompactionReport;
+import org.granite.classification.model.CompactionRules;
+import org.granite.classification.model.CooccurrenceTable;
 import org.granite.classification.model.AssociationStatistics;
 
 public class FrequencyModel<V> extends AssociationModel<V, AssociationStatistics<V>> {
@@ -25,7 +28,7 @@ public class FrequencyModel<V> extends AssociationModel<V, AssociationStatistics
     checkNotNull(value, "value");
     checkNotNull(givenAssociations, "givenAssociations");
 
-    final AssociationStatistics<V> valueStatistics = getAssociationStatisticsMap().get(value);
+    final AssociationStatistics<V> valueStatistics = getAssociationStatistics(value);
 
     if (valueStatistics == null) {
       return ImmutableMap.of();
@@ -40,31 +43,43 @@ public class FrequencyModel<V> extends AssociationModel<V, AssociationStatistics
     for (V associatedValue : givenAssociations) {
       checkNotNull(associatedValue, "givenAssociations cannot contain a null");
 
-      final AssociationStatistics<V> associatedValueStatistics = getAssociationStatisticsMap()
-          .get(associatedValue);
-
-      if (associatedValueStatistics == null) {
-        results.put(associatedValue, 0.0);
-      } else {
-
-        final Double associationProbability = associatedValueStatistics
-            .getAssociatedValueProbabilities()
-            .get(value);
+      results.put(
+          associatedValue,
+          supportingProbability(
+              value,
+              valueStatistics,
+              associatedValue,
+              getAssociationStatistics(associatedValue)));
+    }
 
-        if (associationProbability == null) {
+    return results;
+  }
 
-          results.put(associatedValue, 0.0);
+  @Override
+  public double supportingProbability(
+      final V value,
+      final AssociationStatistics<V> valueStatistics,
+      final V associatedValue,
+      final AssociationStatistics<V> associatedValueStatistics) {
+
+    if (associatedValueStatistics == null) {
+      return 0.0;
+    }
 
-        } else {
+    final Double associationProbability = associatedValueStatistics
+        .getAssociatedValueProbabilities()
+        .get(value);
 
-          results.put(associatedValue,
-              (valueStatistics.getProbability() * associatedValueStatistics
-                  .getProbability())
-                  / associationProbability);
-        }
-      }
+    if (associationProbability == null) {
+      return 0.0;
     }
 
-    return results;
+    return (valueStatistics.getProbability() * associatedValueStatistics.getProbability())
+        / associationProbability;
+  }
+
+  // Only called by the builder, on a model nothing else has seen yet
+  CompactionReport compact(final CompactionRules rules, final CooccurrenceTable<V> table) {
+    return pruneAssociations(rules, table);
   }
 }
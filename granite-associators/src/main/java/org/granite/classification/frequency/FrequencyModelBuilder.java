@@ -4,14 +4,22 @@ package org.granite.classification.frequency;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import org.granite.classification.metrics.BuildPhase;
+import org.granite.classification.metrics.Metrics;
+import org.granite.classification.metrics.ModelSize;
+import org.granite.classification.metrics.Timing;
 import org.granite.classification.model.AssociationStatistics;
+import org.granite.classification.model.CompactionRules;
+import org.granite.classification.model.CooccurrenceTable;
+import org.granite.classification.model.FrequencyCounter;
+import org.granite.classification.model.IncrementalFrequencies;
+import org.granite.classification.model.IndependentUnions;
 import org.granite.classification.model.TrainingSet;
-import org.granite.math.ProbabilityTools;
+import org.granite.classification.model.ValueDictionary;
 
 public class FrequencyModelBuilder {
 
@@ -22,74 +30,128 @@ public class FrequencyModelBuilder {
 
     checkArgument(trainingSet.getTotalValueFrequency() >= 1.0, "Training set has no values");
 
-    final HashMap<V, AssociationStatistics<V>> result = new HashMap<>();
+    final Timing build = Metrics.beginModelBuild();
+    final HashMap<V, AssociationStatistics<V>> result = calculateStatistics(trainingSet);
+
+    if (build.isEnabled()) {
+      Metrics.endModelBuild(build, ModelSize.of(FrequencyModel.class, result, 1));
+    }
+
+    return new FrequencyModel<>(
+        result,
+        trainingSet.getTotalValueFrequency()
+    );
+  }
+
+  // Statistics of every value, with association probabilities and likelihoods, for builders
+  // that start from a frequency model. The phases are reported but not a model build, which is
+  // left to the caller.
+  public static <K extends Comparable<K>, V> HashMap<V, AssociationStatistics<V>>
+      calculateStatistics(final TrainingSet<K, V> trainingSet) {
+    checkNotNull(trainingSet, "trainingSet");
+
+    checkArgument(trainingSet.getTotalValueFrequency() >= 1.0, "Training set has no values");
+
+    final Timing probabilities = Metrics.beginPhase(BuildPhase.ASSOCIATION_PROBABILITIES);
+
+    final CooccurrenceTable<V> table = trainingSet.getCooccurrenceTable();
+    final ValueDictionary<V> dictionary = table.getDictionary();
+
+    final HashMap<V, AssociationStatistics<V>> result = new HashMap<>(table.size() * 2);
 
     // Calculate overall probability of each value and its associations
-    for (Map.Entry<V, Double> frequencyEntry : trainingSet.getValueFrequency().entrySet()) {
-      final AssociationStatistics<V> associationStatistics = new AssociationStatistics<V>(
-          frequencyEntry.getKey()
-      );
+    for (int id = 0; id < table.size(); id++) {
+      final V value = dictionary.getValue(id);
 
-      result.put(
-          frequencyEntry.getKey(),
-          associationStatistics
-      );
+      final AssociationStatistics<V> associationStatistics = new AssociationStatistics<V>(value);
+
+      result.put(value, associationStatistics);
 
       associationStatistics
-          .withFrequency(frequencyEntry.getValue())
-          .withProbability(frequencyEntry.getValue() / trainingSet.getTotalValueFrequency());
+          .withFrequency(table.getFrequency(id))
+          .withProbability(table.getFrequency(id) / trainingSet.getTotalValueFrequency());
 
-      final ImmutableMap<V, Double> associationMap = trainingSet.getValueToValueFrequency().get(
-          frequencyEntry.getKey());
+      final int rowStart = table.getRowStart(id);
+      final int rowEnd = table.getRowEnd(id);
 
-      if (associationMap == null || associationMap.isEmpty()) {
+      if (rowStart == rowEnd) {
         continue;
       }
 
-      double totalAssociations = 0.0;
-
-      for (Double associationFrequency : associationMap.values()) {
-        totalAssociations += associationFrequency;
-      }
+      final double totalAssociations = table.getRowTotal(id);
 
       associationStatistics
           .withAssociationFrequency(totalAssociations);
 
       // Calculate P(associatedValue : value)
-      for (Map.Entry<V, Double> associationEntry : associationMap.entrySet()) {
+      for (int index = rowStart; index < rowEnd; index++) {
         associationStatistics.getAssociatedValueProbabilities()
             .put(
-                associationEntry.getKey(),
-                associationEntry.getValue() / totalAssociations);
+                dictionary.getValue(table.getColumn(index)),
+                table.getCount(index) / totalAssociations);
       }
     }
 
+    Metrics.endPhase(probabilities, BuildPhase.ASSOCIATION_PROBABILITIES, table.size());
+
+    final Timing likelihoods = Metrics.beginPhase(BuildPhase.LIKELIHOODS);
+
     calculateLikelihoods(result);
 
-    return new FrequencyModel<>(
-        result,
-        trainingSet.getTotalValueFrequency()
+    Metrics.endPhase(likelihoods, BuildPhase.LIKELIHOODS, table.size());
+
+    return result;
+  }
+
+  // Builds the model and prunes its associations; the model keeps the compaction report
+  public static <K extends Comparable<K>, V> FrequencyModel<V> build(
+      final TrainingSet<K, V> trainingSet,
+      final CompactionRules compactionRules
+  ) {
+    checkNotNull(compactionRules, "compactionRules");
+
+    final FrequencyModel<V> frequencyModel = build(trainingSet);
+
+    frequencyModel.compact(compactionRules, trainingSet.getCooccurrenceTable());
+
+    return frequencyModel;
+  }
+
+  public static <K extends Comparable<K>, V> UpdatableFrequencyModel<V> buildUpdatable(
+      final TrainingSet<K, V> trainingSet
+  ) {
+    final FrequencyModel<V> frequencyModel = build(trainingSet);
+
+    return new UpdatableFrequencyModel<>(
+        frequencyModel.getAssociationStatisticsMap(),
+        new IncrementalFrequencies<>(
+            FrequencyCounter.of(
+                trainingSet.getCooccurrenceTable(),
+                trainingSet.getTotalValueFrequency(),
+                trainingSet.isStrictAssociation(),
+                trainingSet.getWideRowStrategy()),
+            trainingSet.getDecay())
     );
   }
 
-  private static <V> void calculateLikelihoods(
-      final HashMap<V, AssociationStatistics<V>> associationStatistics) {
-    for (Map.Entry<V, AssociationStatistics<V>> statisticsEntry : associationStatistics
-        .entrySet()) {
-
-      final List<Double> allOtherProbabilities = associationStatistics
-          .entrySet()
-          .stream()
-          .filter(entry -> !entry.getKey().equals(statisticsEntry.getKey()))
-          .map(entry -> entry.getValue().getProbability())
-          .collect(Collectors.toList());
-
-      statisticsEntry
-          .getValue()
-          .withLikelihood(
-              statisticsEntry.getValue().getProbability() /
-                  ProbabilityTools.independentUnion(allOtherProbabilities)
-          );
+  // L(V) = P(V) / P(union of every other value), with all leave-one-out unions taken from one
+  // shared product so the pass is linear in the number of values
+  public static <V> void calculateLikelihoods(
+      final Map<V, ? extends AssociationStatistics<V>> associationStatistics) {
+    final List<AssociationStatistics<V>> statistics = new ArrayList<>(
+        associationStatistics.values());
+
+    final double[] probabilities = new double[statistics.size()];
+
+    for (int index = 0; index < probabilities.length; index++) {
+      probabilities[index] = statistics.get(index).getProbability();
+    }
+
+    final double[] otherProbabilityUnions = IndependentUnions.leaveOneOut(probabilities);
+
+    for (int index = 0; index < probabilities.length; index++) {
+      statistics.get(index)
+          .withLikelihood(probabilities[index] / otherProbabilityUnions[index]);
     }
 
   }
@@ -0,0 +1,116 @@
+package org.granite.classification.frequency;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.BitSet;
+import java.util.Map;
+import org.granite.classification.model.AssociationStatistics;
+import org.granite.classification.model.FrequencyCounter;
+import org.granite.classification.model.IncrementalFrequencies;
+import org.granite.classification.model.TrainingRow;
+
+/**
+ * Frequency model that accepts additional training rows. Statistics of values touched by new rows
+ * are recomputed the next time they are read; value probabilities follow the global total on
+ * every read. Likelihoods are only recomputed by {@link #refresh()}.
+ */
+public class UpdatableFrequencyModel<V> extends FrequencyModel<V> {
+
+  private final IncrementalFrequencies<V> incrementalFrequencies;
+  private double likelihoodTotalValueFrequency;
+  private volatile long modificationStamp;
+
+  UpdatableFrequencyModel(
+      final Map<V, AssociationStatistics<V>> associationStatisticsMap,
+      final IncrementalFrequencies<V> incrementalFrequencies) {
+    super(
+        associationStatisticsMap,
+        incrementalFrequencies.getFrequencyCounter().getTotalValueFrequency());
+    this.incrementalFrequencies = checkNotNull(incrementalFrequencies, "incrementalFrequencies");
+    this.likelihoodTotalValueFrequency = getTotalValueFrequency();
+  }
+
+  public synchronized <K extends Comparable<K>> void update(
+      final Iterable<TrainingRow<K, V>> trainingRows) {
+    checkNotNull(trainingRows, "trainingRows");
+
+    for (TrainingRow<K, V> trainingRow : trainingRows) {
+      incrementalFrequencies.add(trainingRow);
+    }
+
+    setTotalValueFrequency(
+        incrementalFrequencies.getFrequencyCounter().getTotalValueFrequency());
+    modificationStamp++;
+  }
+
+  @Override
+  public boolean isUpdatable() {
+    return true;
+  }
+
+  @Override
+  public long getModificationStamp() {
+    return modificationStamp;
+  }
+
+  @Override
+  public synchronized AssociationStatistics<V> getAssociationStatistics(final V value) {
+    checkNotNull(value, "value");
+
+    final FrequencyCounter<V> frequencyCounter = incrementalFrequencies.getFrequencyCounter();
+    final int id = frequencyCounter.getId(value);
+
+    if (id < 0) {
+      return null;
+    }
+
+    final AssociationStatistics<V> associationStatistics = super.getAssociationStatisticsMap()
+        .computeIfAbsent(value, AssociationStatistics::new);
+
+    if (incrementalFrequencies.isStale(id)) {
+      incrementalFrequencies.refreshFrequencyStatistics(id, associationStatistics);
+      incrementalFrequencies.markRefreshed(id);
+    }
+
+    return associationStatistics
+        .withProbability(frequencyCounter.getFrequency(id) / getTotalValueFrequency());
+  }
+
+  // Brings every statistic, including likelihoods, up to date before exposing the map
+  @Override
+  public synchronized Map<V, AssociationStatistics<V>> getAssociationStatisticsMap() {
+    refresh();
+
+    return super.getAssociationStatisticsMap();
+  }
+
+  public synchronized void refresh() {
+    final BitSet changed = incrementalFrequencies.getChangedSinceFullRefresh();
+
+    if (changed.isEmpty() && likelihoodTotalValueFrequency == getTotalValueFrequency()) {
+      return;
+    }
+
+    final FrequencyCounter<V> frequencyCounter = incrementalFrequencies.getFrequencyCounter();
+    final Map<V, AssociationStatistics<V>> associationStatisticsMap = super
+        .getAssociationStatisticsMap();
+
+    for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+      incrementalFrequencies.refreshFrequencyStatistics(
+          id,
+          associationStatisticsMap.computeIfAbsent(
+              frequencyCounter.getValue(id),
+              AssociationStatistics::new));
+    }
+
+    for (int id = 0; id < frequencyCounter.size(); id++) {
+      associationStatisticsMap.get(frequencyCounter.getValue(id))
+          .withProbability(frequencyCounter.getFrequency(id) / getTotalValueFrequency());
+    }
+
+    FrequencyModelBuilder.calculateLikelihoods(associationStatisticsMap);
+
+    incrementalFrequencies.markFullyRefreshed();
+    likelihoodTotalValueFrequency = getTotalValueFrequency();
+  }
+}
@@ -0,0 +1,21 @@
+package org.granite.classification.metrics;
+
+/**
+ * Timed phases of building a training set and the models built from it.
+ */
+public enum BuildPhase {
+
+  // TrainingSet.Builder checking every row before counting
+  VALIDATE_TRAINING_ROWS,
+
+  // Counting value and pair frequencies. Streaming builds validate rows in this phase as well.
+  FIND_VALUE_FREQUENCIES,
+
+  // Probability and P(associatedValue : value) of every value
+  ASSOCIATION_PROBABILITIES,
+
+  LIKELIHOODS,
+
+  // P(value : associatedValue) of a Bayes model
+  POSTERIORS
+}
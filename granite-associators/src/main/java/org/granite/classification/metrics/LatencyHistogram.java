@@ -0,0 +1,113 @@
+package org.granite.classification.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of durations in nanoseconds. Each power of two is split into eight
+ * buckets, so recorded values keep about 12.5% precision across the whole long range with a
+ * fixed 488 counters. Recording never allocates or blocks.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAccumulator maximumNanos = new LongAccumulator(Math::max, 0L);
+
+  public void record(final long nanos) {
+    checkArgument(nanos >= 0L, "nanos must be >= 0");
+
+    counts.incrementAndGet(bucket(nanos));
+    count.increment();
+    totalNanos.add(nanos);
+    maximumNanos.accumulate(nanos);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getTotalNanos() {
+    return totalNanos.sum();
+  }
+
+  public long getMaximumNanos() {
+    return maximumNanos.get();
+  }
+
+  public double getMeanNanos() {
+    final long recorded = getCount();
+
+    return recorded == 0L ? 0.0 : (double) getTotalNanos() / recorded;
+  }
+
+  // Upper bound of the bucket holding the given percentile, in [0, 1], or zero when nothing was
+  // recorded. Never above the largest recorded value.
+  public long getPercentileNanos(final double percentile) {
+    checkArgument(percentile >= 0.0 && percentile <= 1.0, "percentile is not in [0, 1]");
+
+    long total = 0L;
+
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      total += counts.get(bucket);
+    }
+
+    if (total == 0L) {
+      return 0L;
+    }
+
+    final long rank = Math.max(1L, (long) Math.ceil(percentile * total));
+    long seen = 0L;
+
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      seen += counts.get(bucket);
+
+      if (seen >= rank) {
+        return Math.min(upperBound(bucket), getMaximumNanos());
+      }
+    }
+
+    return getMaximumNanos();
+  }
+
+  public void reset() {
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      counts.set(bucket, 0L);
+    }
+
+    count.reset();
+    totalNanos.reset();
+    maximumNanos.reset();
+  }
+
+  // Values below 16 get a bucket each; above that, the top four significant bits pick the bucket
+  static int bucket(final long nanos) {
+    if (nanos < 2 * SUB_BUCKETS) {
+      return (int) nanos;
+    }
+
+    final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+    final int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long upperBound(final int bucket) {
+    if (bucket < 2 * SUB_BUCKETS) {
+      return bucket;
+    }
+
+    final int shift = bucket / SUB_BUCKETS - 1;
+    final long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+
+    return lowerBound + (1L << shift) - 1L;
+  }
+}
@@ -0,0 +1,72 @@
+package org.granite.classification.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * The listener measurements are reported to. The first {@link MetricsListener} registered under
+ * META-INF/services is installed when the class loads, otherwise a listener that does nothing.
+ * While nothing is installed scoring skips timing and miss checks entirely.
+ */
+public class Metrics {
+
+  public static final MetricsListener NO_OP = new MetricsListener() {
+
+    @Override
+    public Object beginScoringQuery() {
+      return null;
+    }
+  };
+
+  private static volatile MetricsListener listener = loadListener();
+
+  private Metrics() {
+
+  }
+
+  public static MetricsListener getListener() {
+    return listener;
+  }
+
+  public static void setListener(final MetricsListener listener) {
+    Metrics.listener = checkNotNull(listener, "listener");
+  }
+
+  public static void clearListener() {
+    listener = NO_OP;
+  }
+
+  public static boolean isEnabled() {
+    return listener != NO_OP;
+  }
+
+  public static Timing beginPhase(final BuildPhase phase) {
+    final MetricsListener current = listener;
+
+    return new Timing(current, current.beginPhase(phase), System.nanoTime());
+  }
+
+  public static void endPhase(final Timing timing, final BuildPhase phase, final long items) {
+    timing.getListener().onPhase(timing.getToken(), phase, items, timing.elapsedNanos());
+  }
+
+  public static Timing beginModelBuild() {
+    final MetricsListener current = listener;
+
+    return new Timing(current, current.beginModelBuild(), System.nanoTime());
+  }
+
+  // Sizing a model walks all of it, so callers only size it when the timing is enabled
+  public static void endModelBuild(final Timing timing, final ModelSize modelSize) {
+    timing.getListener().onModelBuilt(timing.getToken(), modelSize, timing.elapsedNanos());
+  }
+
+  private static MetricsListener loadListener() {
+    final Iterator<MetricsListener> listeners =
+        ServiceLoader.load(MetricsListener.class).iterator();
+
+    return listeners.hasNext() ? listeners.next() : NO_OP;
+  }
+}
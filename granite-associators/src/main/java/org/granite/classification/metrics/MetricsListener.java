@@ -0,0 +1,69 @@
+package org.granite.classification.metrics;
+
+/**
+ * Receives build and scoring measurements, for forwarding to a metrics system or profiler.
+ * Every method defaults to doing nothing so implementations only override what they report.
+ * Methods may be called concurrently from scoring threads and must not throw.
+ *
+ * <p>Each measurement starts with a begin call made before the work, whose result is handed
+ * back as the token when the measurement is reported on the same thread. A listener can start
+ * an event or span there and finish it when the work is done.
+ */
+public interface MetricsListener {
+
+  // Token for a sampled scoring query that carries nothing from begin to report
+  Object SAMPLED = new Object();
+
+  // Called as a phase starts. Phases are always reported, with null when no token is needed.
+  default Object beginPhase(final BuildPhase phase) {
+    return null;
+  }
+
+  // Items are the rows processed by training set phases and the values processed by model
+  // phases
+  default void onPhase(
+      final Object token,
+      final BuildPhase phase,
+      final long items,
+      final long elapsedNanos) {
+
+  }
+
+  // Called as a model build starts. Builds are always reported, with null when no token is
+  // needed.
+  default Object beginModelBuild() {
+    return null;
+  }
+
+  // Called once per model built
+  default void onModelBuilt(
+      final Object token,
+      final ModelSize modelSize,
+      final long elapsedNanos) {
+
+  }
+
+  // Called before each scoring query. A null token leaves the query untimed and its misses
+  // unchecked, so listeners can sample or switch scoring off cheaply.
+  default Object beginScoringQuery() {
+    return SAMPLED;
+  }
+
+  // One ensemble probability of one value
+  default void onScoringQuery(
+      final Object token,
+      final int givenAssociations,
+      final long elapsedNanos) {
+
+  }
+
+  // A scored value the model does not contain
+  default void onUnknownValue() {
+
+  }
+
+  // A given association the model does not contain
+  default void onUnknownAssociation() {
+
+  }
+}
@@ -0,0 +1,71 @@
+package org.granite.classification.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import org.granite.classification.model.AssociationStatistics;
+import org.granite.classification.model.CompactionReport;
+
+/**
+ * Size of a built model. Memory is estimated from the number of association map entries, the
+ * same way compaction estimates what it saves.
+ */
+public class ModelSize {
+
+  private final Class<?> modelType;
+  private final long values;
+  private final long pairs;
+  private final long estimatedBytes;
+
+  public ModelSize(
+      final Class<?> modelType,
+      final long values,
+      final long pairs,
+      final long estimatedBytes) {
+    this.modelType = checkNotNull(modelType, "modelType");
+    this.values = values;
+    this.pairs = pairs;
+    this.estimatedBytes = estimatedBytes;
+  }
+
+  // Counts the associations of every value. Models keeping several maps per value, such as
+  // probabilities and posteriors, hold entriesPerPair map entries for each association.
+  public static <V> ModelSize of(
+      final Class<?> modelType,
+      final Map<V, ? extends AssociationStatistics<V>> associationStatisticsMap,
+      final int entriesPerPair) {
+    checkNotNull(associationStatisticsMap, "associationStatisticsMap");
+    checkArgument(entriesPerPair >= 1, "entriesPerPair must be >= 1");
+
+    long pairs = 0L;
+
+    for (AssociationStatistics<V> statistics : associationStatisticsMap.values()) {
+      pairs += statistics.getAssociatedValueProbabilities().size();
+    }
+
+    final long entries = associationStatisticsMap.size() + pairs * entriesPerPair;
+
+    return new ModelSize(
+        modelType,
+        associationStatisticsMap.size(),
+        pairs,
+        entries * CompactionReport.ESTIMATED_BYTES_PER_ENTRY);
+  }
+
+  public Class<?> getModelType() {
+    return modelType;
+  }
+
+  public long getValues() {
+    return values;
+  }
+
+  public long getPairs() {
+    return pairs;
+  }
+
+  public long getEstimatedBytes() {
+    return estimatedBytes;
+  }
+}
@@ -0,0 +1,88 @@
+package org.granite.classification.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener that keeps everything in memory: a histogram per build phase, the size of the last
+ * model built, scoring latencies and miss counters. Useful to poll from a metrics reporter or
+ * to inspect in tests.
+ */
+public class RecordingMetricsListener implements MetricsListener {
+
+  private final Map<BuildPhase, LatencyHistogram> phaseHistograms =
+      new EnumMap<>(BuildPhase.class);
+  private final LatencyHistogram scoringHistogram = new LatencyHistogram();
+  private final LongAdder unknownValues = new LongAdder();
+  private final LongAdder unknownAssociations = new LongAdder();
+  private volatile ModelSize lastModelSize;
+
+  public RecordingMetricsListener() {
+    for (BuildPhase phase : BuildPhase.values()) {
+      phaseHistograms.put(phase, new LatencyHistogram());
+    }
+  }
+
+  @Override
+  public void onPhase(
+      final Object token,
+      final BuildPhase phase,
+      final long items,
+      final long elapsedNanos) {
+    phaseHistograms.get(phase).record(elapsedNanos);
+  }
+
+  @Override
+  public void onModelBuilt(
+      final Object token,
+      final ModelSize modelSize,
+      final long elapsedNanos) {
+    lastModelSize = modelSize;
+  }
+
+  @Override
+  public void onScoringQuery(
+      final Object token,
+      final int givenAssociations,
+      final long elapsedNanos) {
+    scoringHistogram.record(elapsedNanos);
+  }
+
+  @Override
+  public void onUnknownValue() {
+    unknownValues.increment();
+  }
+
+  @Override
+  public void onUnknownAssociation() {
+    unknownAssociations.increment();
+  }
+
+  public LatencyHistogram getPhaseHistogram(final BuildPhase phase) {
+    return phaseHistograms.get(checkNotNull(phase, "phase"));
+  }
+
+  public LatencyHistogram getScoringHistogram() {
+    return scoringHistogram;
+  }
+
+  public long getScoringQueries() {
+    return scoringHistogram.getCount();
+  }
+
+  public long getUnknownValues() {
+    return unknownValues.sum();
+  }
+
+  public long getUnknownAssociations() {
+    return unknownAssociations.sum();
+  }
+
+  // Null until a model is built
+  public ModelSize getLastModelSize() {
+    return lastModelSize;
+  }
+}
@@ -0,0 +1,36 @@
+package org.granite.classification.metrics;
+
+/**
+ * A build phase or model build in progress: the listener it began on, the token that listener
+ * returned and when it started. Reported through {@link Metrics} to the same listener, even if
+ * another listener was installed in the meantime.
+ */
+public class Timing {
+
+  private final MetricsListener listener;
+  private final Object token;
+  private final long startNanos;
+
+  Timing(final MetricsListener listener, final Object token, final long startNanos) {
+    this.listener = listener;
+    this.token = token;
+    this.startNanos = startNanos;
+  }
+
+  // False while nothing is installed, so callers can skip work only needed for the report
+  public boolean isEnabled() {
+    return listener != Metrics.NO_OP;
+  }
+
+  MetricsListener getListener() {
+    return listener;
+  }
+
+  Object getToken() {
+    return token;
+  }
+
+  long elapsedNanos() {
+    return System.nanoTime() - startNanos;
+  }
+}
@@ -0,0 +1,255 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Counts value frequencies exactly and value-to-value frequencies approximately, in memory that
+ * does not grow with the number of distinct pairs. Pair counts go into a Count-Min sketch and
+ * each value keeps only the pairs with the highest estimated counts. Row totals, and with them
+ * P(associatedValue : value), stay exact.
+ */
+public class ApproximateFrequencyCounter<V> {
+
+  public static final int DEFAULT_SKETCH_DEPTH = 4;
+
+  private final boolean strictAssociation;
+  private final int pairsPerValue;
+  private final CountMinSketch sketch;
+  private final HashMap<V, Integer> ids = new HashMap<>();
+  private final ArrayList<V> values = new ArrayList<>();
+  private double[] valueFrequency = new double[16];
+  private double[] rowTotals = new double[16];
+  // Heavy hitters of each value: associated ids and their estimated counts when last seen
+  private int[][] topColumns = new int[16][];
+  private double[][] topEstimates = new double[16][];
+  private int[] topSizes = new int[16];
+  private double totalValueFrequency = 0.0;
+
+  public ApproximateFrequencyCounter(
+      final boolean strictAssociation,
+      final long sketchBytes,
+      final int pairsPerValue) {
+    checkArgument(pairsPerValue > 0, "pairsPerValue must be > 0");
+
+    this.strictAssociation = strictAssociation;
+    this.pairsPerValue = pairsPerValue;
+    this.sketch = CountMinSketch.withMemoryBudget(sketchBytes, DEFAULT_SKETCH_DEPTH);
+  }
+
+  public boolean isStrictAssociation() {
+    return strictAssociation;
+  }
+
+  public double getTotalValueFrequency() {
+    return totalValueFrequency;
+  }
+
+  public int size() {
+    return values.size();
+  }
+
+  // Any estimated pair count is at most this much above the true count, with the confidence
+  // of the sketch
+  public double getErrorBound() {
+    return sketch.getErrorBound();
+  }
+
+  public double getConfidence() {
+    return sketch.getConfidence();
+  }
+
+  // Memory held for pairs: the sketch plus the kept heavy hitters
+  public long estimatePairBytes() {
+    return sketch.getByteSize()
+        + (long) values.size() * pairsPerValue * (Integer.BYTES + Double.BYTES);
+  }
+
+  public CountEstimate estimatePairCount(final V value, final V associatedValue) {
+    checkNotNull(value, "value");
+    checkNotNull(associatedValue, "associatedValue");
+
+    final Integer id = ids.get(value);
+    final Integer associatedId = ids.get(associatedValue);
+
+    if (id == null || associatedId == null) {
+      return new CountEstimate(0.0, 0.0, 1.0);
+    }
+
+    // A value is counted with itself once per row it appears in, which is known exactly
+    if (id.equals(associatedId)) {
+      return new CountEstimate(strictAssociation ? 0.0 : valueFrequency[id], 0.0, 1.0);
+    }
+
+    return new CountEstimate(
+        sketch.estimate(unorderedPairKey(id, associatedId)),
+        getErrorBound(),
+        getConfidence());
+  }
+
+  public void add(final List<V> rowValues) {
+    checkNotNull(rowValues, "rowValues");
+
+    final int[] rowIds = new int[rowValues.size()];
+
+    for (int index = 0; index < rowIds.length; index++) {
+      rowIds[index] = intern(rowValues.get(index));
+    }
+
+    // Every value is associated with the rest of the row, and with itself without strict
+    // association, so its row total grows by the row width
+    final double associations = strictAssociation ? rowIds.length - 1 : rowIds.length;
+
+    for (int outerIndex = 0; outerIndex < rowIds.length; outerIndex++) {
+      final int outerId = rowIds[outerIndex];
+
+      valueFrequency[outerId] += 1.0;
+      rowTotals[outerId] += associations;
+      totalValueFrequency += 1.0;
+
+      // Co-occurrence is symmetric, so each unordered pair is counted once
+      for (int innerIndex = outerIndex + 1; innerIndex < rowIds.length; innerIndex++) {
+        final int innerId = rowIds[innerIndex];
+        final long pairKey = unorderedPairKey(outerId, innerId);
+
+        sketch.add(pairKey, 1.0);
+
+        final double estimate = sketch.estimate(pairKey);
+
+        offer(outerId, innerId, estimate);
+        offer(innerId, outerId, estimate);
+      }
+    }
+  }
+
+  // Table of the kept pairs with their final estimates. A pair kept by either of its values is
+  // kept in both rows so the table stays symmetric. Row totals are the exact totals.
+  public CooccurrenceTable<V> toTable() {
+    final int valueCount = values.size();
+    final LongDoubleHashMap pairs = new LongDoubleHashMap();
+
+    for (int id = 0; id < valueCount; id++) {
+      if (!strictAssociation) {
+        pairs.put(LongDoubleHashMap.pairKey(id, id), valueFrequency[id]);
+      }
+
+      for (int index = 0; index < topSizes[id]; index++) {
+        final int associatedId = topColumns[id][index];
+        final double estimate = sketch.estimate(unorderedPairKey(id, associatedId));
+
+        pairs.put(LongDoubleHashMap.pairKey(id, associatedId), estimate);
+        pairs.put(LongDoubleHashMap.pairKey(associatedId, id), estimate);
+      }
+    }
+
+    final int[] rowOffsets = new int[valueCount + 1];
+
+    pairs.forEach((pairKey, count) -> rowOffsets[LongDoubleHashMap.outerId(pairKey) + 1]++);
+
+    for (int id = 0; id < valueCount; id++) {
+      rowOffsets[id + 1] += rowOffsets[id];
+    }
+
+    final int[] columns = new int[pairs.size()];
+    final int[] rowFill = Arrays.copyOf(rowOffsets, valueCount);
+
+    pairs.forEach((pairKey, count) ->
+        columns[rowFill[LongDoubleHashMap.outerId(pairKey)]++] =
+            LongDoubleHashMap.innerId(pairKey));
+
+    final double[] counts = new double[columns.length];
+
+    for (int id = 0; id < valueCount; id++) {
+      Arrays.sort(columns, rowOffsets[id], rowOffsets[id + 1]);
+
+      for (int index = rowOffsets[id]; index < rowOffsets[id + 1]; index++) {
+        counts[index] = pairs.get(LongDoubleHashMap.pairKey(id, columns[index]));
+      }
+    }
+
+    return new CooccurrenceTable<>(
+        new ValueDictionary<>(values),
+        Arrays.copyOf(valueFrequency, valueCount),
+        rowOffsets,
+        columns,
+        counts,
+        Arrays.copyOf(rowTotals, valueCount)
+    );
+  }
+
+  // Keeps the associated id among the value's heavy hitters when it is already there, there is
+  // room, or its estimate beats the lowest kept estimate
+  private void offer(final int id, final int associatedId, final double estimate) {
+    int[] columns = topColumns[id];
+    double[] estimates = topEstimates[id];
+    final int size = topSizes[id];
+
+    if (columns == null) {
+      columns = new int[Math.min(pairsPerValue, 4)];
+      estimates = new double[columns.length];
+      topColumns[id] = columns;
+      topEstimates[id] = estimates;
+    }
+
+    int minimumIndex = -1;
+
+    for (int index = 0; index < size; index++) {
+      if (columns[index] == associatedId) {
+        estimates[index] = estimate;
+        return;
+      }
+
+      if (minimumIndex < 0 || estimates[index] < estimates[minimumIndex]) {
+        minimumIndex = index;
+      }
+    }
+
+    if (size < pairsPerValue) {
+      if (size == columns.length) {
+        columns = Arrays.copyOf(columns, Math.min(pairsPerValue, size << 1));
+        estimates = Arrays.copyOf(estimates, columns.length);
+        topColumns[id] = columns;
+        topEstimates[id] = estimates;
+      }
+
+      columns[size] = associatedId;
+      estimates[size] = estimate;
+      topSizes[id]++;
+    } else if (estimate > estimates[minimumIndex]) {
+      columns[minimumIndex] = associatedId;
+      estimates[minimumIndex] = estimate;
+    }
+  }
+
+  private static long unorderedPairKey(final int firstId, final int secondId) {
+    return LongDoubleHashMap.pairKey(Math.min(firstId, secondId), Math.max(firstId, secondId));
+  }
+
+  private int intern(final V value) {
+    final Integer existing = ids.get(value);
+
+    if (existing != null) {
+      return existing;
+    }
+
+    final int id = values.size();
+
+    ids.put(value, id);
+    values.add(value);
+
+    if (id == valueFrequency.length) {
+      valueFrequency = Arrays.copyOf(valueFrequency, id << 1);
+      rowTotals = Arrays.copyOf(rowTotals, id << 1);
+      topColumns = Arrays.copyOf(topColumns, id << 1);
+      topEstimates = Arrays.copyOf(topEstimates, id << 1);
+      topSizes = Arrays.copyOf(topSizes, id << 1);
+    }
+
+    return id;
+  }
+}
@@ -0,0 +1,324 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import org.granite.base.KeyValue;
+
+/**
+ * Transposed snapshot of a model: for every association, the values it supports and their
+ * supporting probability, sorted from most to least probable. Answers top-K queries over the
+ * whole vocabulary in time proportional to the posting lists of the given associations.
+ */
+public class AssociationIndex<V> {
+
+  private final ValueDictionary<V> dictionary;
+  private final int[] postingOffsets;
+  private final int[] postingValueIds;
+  private final double[] postingProbabilities;
+
+  private AssociationIndex(
+      final ValueDictionary<V> dictionary,
+      final int[] postingOffsets,
+      final int[] postingValueIds,
+      final double[] postingProbabilities) {
+    this.dictionary = dictionary;
+    this.postingOffsets = postingOffsets;
+    this.postingValueIds = postingValueIds;
+    this.postingProbabilities = postingProbabilities;
+  }
+
+  public static <V, S extends AssociationStatistics<V>> AssociationIndex<V> of(
+      final AssociationModel<V, S> model) {
+    checkNotNull(model, "model");
+
+    final Map<V, S> associationStatisticsMap = model.getAssociationStatisticsMap();
+    final ValueDictionary<V> dictionary = new ValueDictionary<>(
+        new ArrayList<>(associationStatisticsMap.keySet()));
+
+    // Supporting probability of each candidate value, by association. Compaction prunes every
+    // row on its own, so a pair may be left in either row: a Bayes model scores a value from
+    // the value's row and a frequency model from the association's row.
+    final List<Map<Integer, Double>> postingsByAssociation = new ArrayList<>(dictionary.size());
+
+    for (int id = 0; id < dictionary.size(); id++) {
+      postingsByAssociation.add(new HashMap<>());
+    }
+
+    for (int id = 0; id < dictionary.size(); id++) {
+      final V value = dictionary.getValue(id);
+
+      for (V rowValue : associationStatisticsMap.get(value)
+          .getAssociatedValueProbabilities().keySet()) {
+        final int rowId = dictionary.getId(rowValue);
+
+        if (rowId == ValueDictionary.UNKNOWN_ID) {
+          continue;
+        }
+
+        addPosting(model, associationStatisticsMap, dictionary, postingsByAssociation, id, rowId);
+        addPosting(model, associationStatisticsMap, dictionary, postingsByAssociation, rowId, id);
+      }
+    }
+
+    final int[] postingOffsets = new int[dictionary.size() + 1];
+    final List<int[]> valueIdsByAssociation = new ArrayList<>(dictionary.size());
+    final List<double[]> probabilitiesByAssociation = new ArrayList<>(dictionary.size());
+
+    for (int associatedId = 0; associatedId < dictionary.size(); associatedId++) {
+      final List<KeyValue<Integer, Double>> postings = new ArrayList<>();
+
+      for (Map.Entry<Integer, Double> posting : postingsByAssociation.get(associatedId)
+          .entrySet()) {
+        if (posting.getValue() > 0.0) {
+          postings.add(new KeyValue<>(posting.getKey(), posting.getValue()));
+        }
+      }
+
+      postings.sort(Comparator
+          .comparing((KeyValue<Integer, Double> posting) -> posting.getValue())
+          .reversed()
+          .thenComparing(KeyValue::getKey));
+
+      final int[] valueIds = new int[postings.size()];
+      final double[] probabilities = new double[postings.size()];
+
+      for (int index = 0; index < valueIds.length; index++) {
+        valueIds[index] = postings.get(index).getKey();
+        probabilities[index] = postings.get(index).getValue();
+      }
+
+      valueIdsByAssociation.add(valueIds);
+      probabilitiesByAssociation.add(probabilities);
+      postingOffsets[associatedId + 1] = postingOffsets[associatedId] + valueIds.length;
+    }
+
+    final int[] postingValueIds = new int[postingOffsets[dictionary.size()]];
+    final double[] postingProbabilities = new double[postingValueIds.length];
+
+    for (int associatedId = 0; associatedId < dictionary.size(); associatedId++) {
+      final int[] valueIds = valueIdsByAssociation.get(associatedId);
+
+      System.arraycopy(valueIds, 0, postingValueIds, postingOffsets[associatedId],
+          valueIds.length);
+      System.arraycopy(probabilitiesByAssociation.get(associatedId), 0, postingProbabilities,
+          postingOffsets[associatedId], valueIds.length);
+    }
+
+    return new AssociationIndex<>(
+        dictionary,
+        postingOffsets,
+        postingValueIds,
+        postingProbabilities);
+  }
+
+  // Records the probability of the value given the association, unless the pair was seen
+  // before. Zero probabilities are kept so the pair is not computed again.
+  private static <V, S extends AssociationStatistics<V>> void addPosting(
+      final AssociationModel<V, S> model,
+      final Map<V, S> associationStatisticsMap,
+      final ValueDictionary<V> dictionary,
+      final List<Map<Integer, Double>> postingsByAssociation,
+      final int valueId,
+      final int associatedId) {
+    final Map<Integer, Double> postings = postingsByAssociation.get(associatedId);
+
+    if (postings.containsKey(valueId)) {
+      return;
+    }
+
+    final V value = dictionary.getValue(valueId);
+    final V associatedValue = dictionary.getValue(associatedId);
+
+    postings.put(valueId, model.supportingProbability(
+        value,
+        associationStatisticsMap.get(value),
+        associatedValue,
+        associationStatisticsMap.get(associatedValue)));
+  }
+
+  public ValueDictionary<V> getDictionary() {
+    return dictionary;
+  }
+
+  public int getPostingCount() {
+    return postingValueIds.length;
+  }
+
+  // The k values with the highest mean probability given the associations, most probable first.
+  // Scores equal meanProbability; values no association supports score zero and are left out.
+  public List<KeyValue<V, Double>> topK(final List<V> givenAssociations, final int k) {
+    checkNotNull(givenAssociations, "givenAssociations");
+    checkArgument(k >= 0, "k must be >= 0");
+
+    // Repeated associations count once, as they do in supportingProbabilities
+    final ImmutableSet<V> associations = ImmutableSet.copyOf(givenAssociations);
+
+    if (k == 0 || associations.isEmpty()) {
+      return ImmutableList.of();
+    }
+
+    // Known associations with at least one posting, most influential first
+    final List<Integer> associationIds = new ArrayList<>(associations.size());
+
+    for (V associatedValue : associations) {
+      final int associatedId = dictionary.getId(associatedValue);
+
+      if (associatedId != ValueDictionary.UNKNOWN_ID
+          && postingOffsets[associatedId] < postingOffsets[associatedId + 1]) {
+        associationIds.add(associatedId);
+      }
+    }
+
+    associationIds.sort(Comparator
+        .comparingDouble((Integer associatedId) -> maximumProbability(associatedId))
+        .reversed());
+
+    // remainingBounds[i] is the most any value can gain from lists i and later
+    final double[] remainingBounds = new double[associationIds.size() + 1];
+
+    for (int index = associationIds.size() - 1; index >= 0; index--) {
+      remainingBounds[index] =
+          remainingBounds[index + 1] + maximumProbability(associationIds.get(index));
+    }
+
+    final LongDoubleHashMap accumulators = new LongDoubleHashMap();
+
+    // Only used once k values are accumulated, so k is within the dictionary by then
+    final double[] kthBestHeap = new double[Math.min(k, dictionary.size())];
+    boolean acceptingNewValues = true;
+
+    for (int index = 0; index < associationIds.size(); index++) {
+      final int associatedId = associationIds.get(index);
+
+      for (int posting = postingOffsets[associatedId];
+          posting < postingOffsets[associatedId + 1]; posting++) {
+
+        final long valueId = postingValueIds[posting];
+
+        if (acceptingNewValues || accumulators.containsKey(valueId)) {
+          accumulators.addTo(valueId, postingProbabilities[posting]);
+        }
+      }
+
+      // A value not yet accumulated can score at most the remaining bound. Once that is below
+      // the current k-th best score no new value can reach the top k, so only the existing
+      // accumulators need to be completed.
+      if (acceptingNewValues && accumulators.size() >= k
+          && remainingBounds[index + 1] < kthBestScore(accumulators, k, kthBestHeap)) {
+        acceptingNewValues = false;
+      }
+    }
+
+    final PriorityQueue<KeyValue<Integer, Double>> best = selectBest(accumulators, k);
+    final List<KeyValue<V, Double>> result = new ArrayList<>(best.size());
+
+    while (!best.isEmpty()) {
+      final KeyValue<Integer, Double> entry = best.poll();
+
+      result.add(new KeyValue<>(
+          dictionary.getValue(entry.getKey()),
+          entry.getValue() / associations.size()));
+    }
+
+    // The queue yields the lowest of the best first
+    return ImmutableList.copyOf(result).reverse();
+  }
+
+  private double maximumProbability(final int associatedId) {
+    return postingOffsets[associatedId] < postingOffsets[associatedId + 1]
+        ? postingProbabilities[postingOffsets[associatedId]]
+        : 0.0;
+  }
+
+  // Keeps the k best scores in a min-heap, so this is O(n log k) rather than a full sort of the
+  // accumulators after every posting list
+  private static double kthBestScore(
+      final LongDoubleHashMap accumulators,
+      final int k,
+      final double[] heap) {
+    final int[] size = new int[1];
+
+    accumulators.forEach((valueId, score) -> {
+      if (size[0] < k) {
+        siftUp(heap, size[0]++, score);
+      } else if (score > heap[0]) {
+        siftDown(heap, k, score);
+      }
+    });
+
+    return heap[0];
+  }
+
+  private static void siftUp(final double[] heap, final int index, final double score) {
+    int child = index;
+
+    while (child > 0) {
+      final int parent = (child - 1) >>> 1;
+
+      if (heap[parent] <= score) {
+        break;
+      }
+
+      heap[child] = heap[parent];
+      child = parent;
+    }
+
+    heap[child] = score;
+  }
+
+  // Replaces the root with the score and restores the heap order
+  private static void siftDown(final double[] heap, final int size, final double score) {
+    int parent = 0;
+
+    while (true) {
+      int child = 2 * parent + 1;
+
+      if (child >= size) {
+        break;
+      }
+
+      if (child + 1 < size && heap[child + 1] < heap[child]) {
+        child++;
+      }
+
+      if (score <= heap[child]) {
+        break;
+      }
+
+      heap[parent] = heap[child];
+      parent = child;
+    }
+
+    heap[parent] = score;
+  }
+
+  // Min-heap of the k best (id, score) pairs, higher ids losing ties
+  private static PriorityQueue<KeyValue<Integer, Double>> selectBest(
+      final LongDoubleHashMap accumulators,
+      final int k) {
+    final Comparator<KeyValue<Integer, Double>> worstFirst = Comparator
+        .comparing((KeyValue<Integer, Double> entry) -> entry.getValue())
+        .thenComparing(KeyValue::getKey, Comparator.reverseOrder());
+
+    final PriorityQueue<KeyValue<Integer, Double>> best = new PriorityQueue<>(k + 1, worstFirst);
+
+    accumulators.forEach((valueId, score) -> {
+      best.add(new KeyValue<>((int) valueId, score));
+
+      if (best.size() > k) {
+        best.poll();
+      }
+    });
+
+    return best;
+  }
+}
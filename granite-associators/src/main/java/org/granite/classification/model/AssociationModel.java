@@ -1,22 +1,37 @@
 package org.granite.classification.model;
 
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 import org.granite.base.KeyValue;
-import org.granite.math.PercentileTools;
+import org.granite.classification.metrics.Metrics;
+import org.granite.classification.metrics.MetricsListener;
 import org.granite.math.StatsTools;
 
 public abstract class AssociationModel<V, S extends AssociationStatistics<V>> {
 
-  private final double totalValueFrequency;
+  private static final ThreadLocal<double[]> SCRATCH_BUFFER =
+      ThreadLocal.withInitial(() -> new double[16]);
+
+  // Longest association list checked for repeats in place rather than with a set
+  private static final int IN_PLACE_DISTINCT_LIMIT = 16;
+
+  private double totalValueFrequency;
   private final Map<V, S> associationStatisticsMap;
+  private CompactionReport compactionReport;
 
   public AssociationModel(
       final double totalValueFrequency,
@@ -30,13 +45,49 @@ public abstract class AssociationModel<V, S extends AssociationStatistics<V>> {
     return totalValueFrequency;
   }
 
+  protected void setTotalValueFrequency(final double totalValueFrequency) {
+    this.totalValueFrequency = totalValueFrequency;
+  }
+
   public Map<V, S> getAssociationStatisticsMap() {
     return associationStatisticsMap;
   }
 
+  // Whether the model can be changed in place after it is built
+  public boolean isUpdatable() {
+    return false;
+  }
+
+  // Changes whenever the model is updated in place, so cached scores can tell they are stale.
+  // Models that are never updated stay at zero.
+  public long getModificationStamp() {
+    return 0L;
+  }
+
+  // Statistics of a single value, or null when the value is unknown. Scoring reads statistics
+  // through here so updatable models can refresh them lazily.
+  public S getAssociationStatistics(final V value) {
+    checkNotNull(value, "value");
+
+    return associationStatisticsMap.get(value);
+  }
+
   public abstract Map<V, Double> supportingProbabilities(final V value,
       final List<V> givenAssociations);
 
+  // Probability of the value supported by one association, for statistics the caller already
+  // resolved. The association statistics are null when the association is unknown.
+  public double supportingProbability(
+      final V value,
+      final S valueStatistics,
+      final V associatedValue,
+      final S associatedValueStatistics) {
+    final Double probability = supportingProbabilities(value, ImmutableList.of(associatedValue))
+        .get(associatedValue);
+
+    return probability == null ? 0.0 : probability;
+  }
+
   public double meanProbability(
       final V value,
       final List<V> givenAssociations) {
@@ -52,35 +103,13 @@ public abstract class AssociationModel<V, S extends AssociationStatistics<V>> {
   public double medianProbability(
       final V value,
       final List<V> givenAssociations) {
-    return ensembleProbability(
-        value,
-        givenAssociations,
-        probabilities ->
-            PercentileTools.median(
-                probabilities
-                    .stream()
-                    .sorted()
-                    .collect(Collectors.toList())
-            )
-
-    );
+    return ensembleProbability(value, givenAssociations, ProbabilityEnsembles.MEDIAN);
   }
 
   public Map<V, Double> medianProbability(
       final List<V> value,
       final List<V> givenAssociations) {
-    return ensembleProbability(
-        value,
-        givenAssociations,
-        probabilities ->
-            PercentileTools.median(
-                probabilities
-                    .stream()
-                    .sorted()
-                    .collect(Collectors.toList())
-            )
-
-    );
+    return ensembleProbability(value, givenAssociations, ProbabilityEnsembles.MEDIAN);
   }
 
   public double ensembleProbability(
@@ -91,6 +120,26 @@ public abstract class AssociationModel<V, S extends AssociationStatistics<V>> {
     checkNotNull(givenAssociations, "givenAssociations");
     checkNotNull(ensembleFunction, "ensembleFunction");
 
+    final MetricsListener metricsListener = Metrics.getListener();
+    final Object token = metricsListener.beginScoringQuery();
+
+    if (token == null) {
+      return computeEnsembleProbability(value, givenAssociations, ensembleFunction);
+    }
+
+    final long startNanos = System.nanoTime();
+    final double probability =
+        computeEnsembleProbability(value, givenAssociations, ensembleFunction);
+
+    recordScoringQuery(metricsListener, token, value, givenAssociations, startNanos);
+
+    return probability;
+  }
+
+  private double computeEnsembleProbability(
+      final V value,
+      final List<V> givenAssociations,
+      final Function<Collection<Double>, Double> ensembleFunction) {
     final Map<V, Double> results = supportingProbabilities(value, givenAssociations);
 
     if (results == null || results.isEmpty()) {
@@ -100,6 +149,43 @@ public abstract class AssociationModel<V, S extends AssociationStatistics<V>> {
     return ensembleFunction.apply(results.values());
   }
 
+  // Primitive ensemble over a per-thread scratch buffer. Each distinct association contributes
+  // one probability, as in the buffer overload of supportingProbabilities.
+  public double ensembleProbability(
+      final V value,
+      final List<V> givenAssociations,
+      final ProbabilityEnsemble ensemble) {
+    checkNotNull(givenAssociations, "givenAssociations");
+
+    return ensembleProbability(value, givenAssociations, ensemble,
+        scratchBuffer(givenAssociations.size()));
+  }
+
+  public double ensembleProbability(
+      final V value,
+      final List<V> givenAssociations,
+      final ProbabilityEnsemble ensemble,
+      final double[] probabilities) {
+    checkNotNull(ensemble, "ensemble");
+
+    final MetricsListener metricsListener = Metrics.getListener();
+    final Object token = metricsListener.beginScoringQuery();
+
+    if (token == null) {
+      final int length = supportingProbabilities(value, givenAssociations, probabilities);
+
+      return length == 0 ? 0.0 : ensemble.apply(probabilities, length);
+    }
+
+    final long startNanos = System.nanoTime();
+    final int length = supportingProbabilities(value, givenAssociations, probabilities);
+    final double probability = length == 0 ? 0.0 : ensemble.apply(probabilities, length);
+
+    recordScoringQuery(metricsListener, token, value, givenAssociations, startNanos);
+
+    return probability;
+  }
+
   public Map<V, Double> ensembleProbability(
       final List<V> values,
       final List<V> givenAssociations,
@@ -117,6 +203,23 @@ public abstract class AssociationModel<V, S extends AssociationStatistics<V>> {
 
   }
 
+  public Map<V, Double> ensembleProbability(
+      final List<V> values,
+      final List<V> givenAssociations,
+      final ProbabilityEnsemble ensemble) {
+    checkNotNull(values, "values");
+    checkNotNull(givenAssociations, "givenAssociations");
+
+    final double[] probabilities = new double[givenAssociations.size()];
+    final HashMap<V, Double> result = new HashMap<>();
+
+    for (V value : values) {
+      result.put(value, ensembleProbability(value, givenAssociations, ensemble, probabilities));
+    }
+
+    return result;
+  }
+
   public Map<V, Map<V, Double>> supportingProbabilities(final List<V> values,
       final List<V> givenAssociations) {
     checkNotNull(values, "values");
@@ -132,6 +235,161 @@ public abstract class AssociationModel<V, S extends AssociationStatistics<V>> {
 
   }
 
+  // Whether supportingProbability reads the association statistics. Callers may pass null
+  // statistics for the association when it does not.
+  protected boolean usesAssociationStatistics() {
+    return true;
+  }
+
+  // Writes the probability of the value supported by each given association into the caller's
+  // buffer, in the order given, and returns how many were written. Nothing is written when the
+  // value is unknown. Repeated associations count once, as in the map based overload, and for
+  // short association lists with a reused buffer the steady state allocates nothing.
+  public int supportingProbabilities(
+      final V value,
+      final List<V> givenAssociations,
+      final double[] probabilities) {
+    checkNotNull(value, "value");
+    checkNotNull(givenAssociations, "givenAssociations");
+    checkNotNull(probabilities, "probabilities");
+    checkArgument(probabilities.length >= givenAssociations.size(),
+        "Buffer holds %s probabilities but %s associations were given",
+        probabilities.length, givenAssociations.size());
+
+    final S valueStatistics = getAssociationStatistics(value);
+
+    if (valueStatistics == null) {
+      return 0;
+    }
+
+    final boolean usesAssociationStatistics = usesAssociationStatistics();
+    final Set<V> seen = repeatTracker(givenAssociations);
+    int length = 0;
+
+    for (int index = 0; index < givenAssociations.size(); index++) {
+      final V associatedValue = checkNotNull(givenAssociations.get(index),
+          "givenAssociations cannot contain a null");
+
+      if (isRepeated(givenAssociations, index, seen)) {
+        continue;
+      }
+
+      probabilities[length++] = supportingProbability(
+          value,
+          valueStatistics,
+          associatedValue,
+          usesAssociationStatistics ? getAssociationStatistics(associatedValue) : null);
+    }
+
+    return length;
+  }
+
+  // Set that finds repeated associations in a long list, or null when the list is short enough
+  // to scan in place
+  protected static <V> Set<V> repeatTracker(final List<V> givenAssociations) {
+    return givenAssociations.size() > IN_PLACE_DISTINCT_LIMIT ? new HashSet<>() : null;
+  }
+
+  // Whether the association at the index already appeared earlier in the list
+  protected static <V> boolean isRepeated(
+      final List<V> givenAssociations,
+      final int index,
+      final Set<V> repeatTracker) {
+    final V associatedValue = givenAssociations.get(index);
+
+    if (repeatTracker != null) {
+      return !repeatTracker.add(associatedValue);
+    }
+
+    for (int before = 0; before < index; before++) {
+      if (associatedValue.equals(givenAssociations.get(before))) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+
+  // Scores many queries at once. result[query][candidate] is the ensemble probability of the
+  // candidate, the same as ensembleProbability. The statistics of every value are resolved once
+  // per batch and queries with the same associations share the resolved association statistics.
+  public double[][] ensembleProbabilities(
+      final List<ScoringQuery<V>> queries,
+      final Function<Collection<Double>, Double> ensembleFunction) {
+    checkNotNull(queries, "queries");
+    checkNotNull(ensembleFunction, "ensembleFunction");
+
+    final double[][] result = new double[queries.size()][];
+    final HashMap<V, S> resolvedStatistics = new HashMap<>();
+    final LinkedHashMap<List<V>, List<Integer>> queriesByAssociations = new LinkedHashMap<>();
+
+    for (int queryIndex = 0; queryIndex < queries.size(); queryIndex++) {
+      queriesByAssociations
+          .computeIfAbsent(
+              checkNotNull(queries.get(queryIndex), "queries cannot contain a null")
+                  .getGivenAssociations(),
+              key -> new ArrayList<>())
+          .add(queryIndex);
+    }
+
+    final ArrayList<Double> probabilities = new ArrayList<>();
+    final MetricsListener metricsListener = Metrics.getListener();
+
+    for (Map.Entry<List<V>, List<Integer>> group : queriesByAssociations.entrySet()) {
+
+      // Repeated associations count once, as they do in supportingProbabilities
+      final List<V> associations = ImmutableSet.copyOf(group.getKey()).asList();
+      final List<S> associationStatistics = new ArrayList<>(associations.size());
+
+      for (V associatedValue : associations) {
+        associationStatistics.add(usesAssociationStatistics()
+            ? resolve(resolvedStatistics, associatedValue)
+            : null);
+      }
+
+      for (int queryIndex : group.getValue()) {
+        final List<V> candidateValues = queries.get(queryIndex).getCandidateValues();
+        final double[] scores = new double[candidateValues.size()];
+
+        for (int candidateIndex = 0; candidateIndex < scores.length; candidateIndex++) {
+          final V value = candidateValues.get(candidateIndex);
+          final Object token = metricsListener.beginScoringQuery();
+          final long startNanos = token != null ? System.nanoTime() : 0L;
+          final S valueStatistics = resolve(resolvedStatistics, value);
+
+          if (valueStatistics == null || associations.isEmpty()) {
+            if (token != null) {
+              recordScoringQuery(metricsListener, token, value, group.getKey(), startNanos);
+            }
+
+            continue;
+          }
+
+          probabilities.clear();
+
+          for (int index = 0; index < associations.size(); index++) {
+            probabilities.add(supportingProbability(
+                value,
+                valueStatistics,
+                associations.get(index),
+                associationStatistics.get(index)));
+          }
+
+          scores[candidateIndex] = ensembleFunction.apply(probabilities);
+
+          if (token != null) {
+            recordScoringQuery(metricsListener, token, value, group.getKey(), startNanos);
+          }
+        }
+
+        result[queryIndex] = scores;
+      }
+    }
+
+    return result;
+  }
+
   public KeyValue<V, Double> mostProbable(
       final List<V> values,
       final List<V> givenAssociations,
@@ -157,4 +415,171 @@ public abstract class AssociationModel<V, S extends AssociationStatistics<V>> {
 
   }
 
+  public KeyValue<V, Double> mostProbable(
+      final List<V> values,
+      final List<V> givenAssociations,
+      final ProbabilityEnsemble ensemble) {
+    checkNotNull(values, "values");
+    checkNotNull(givenAssociations, "givenAssociations");
+
+    final double[] probabilities = new double[givenAssociations.size()];
+
+    V highestValue = null;
+    double highestProbability = -1.0;
+
+    for (V value : values) {
+      final double probability =
+          ensembleProbability(value, givenAssociations, ensemble, probabilities);
+
+      if (probability > highestProbability) {
+        highestProbability = probability;
+        highestValue = value;
+      }
+    }
+
+    return new KeyValue<>(highestValue, highestProbability);
+  }
+
+  // Drops the associations of every value that the rules do not keep. Probabilities that remain
+  // are left exactly as they were; only values derived from whole rows, such as association
+  // likelihoods, change. The statistics are changed in place, so this is only for builders
+  // pruning a model before it is returned to anyone. Pair counts are read from the table the
+  // model was built from, as decayed, sampled and approximate counts are not whole numbers that
+  // could be recovered from the probabilities.
+  protected final CompactionReport pruneAssociations(
+      final CompactionRules rules,
+      final CooccurrenceTable<V> table) {
+    checkNotNull(rules, "rules");
+    checkNotNull(table, "table");
+
+    final Map<V, S> statisticsMap = getAssociationStatisticsMap();
+    final ValueDictionary<V> dictionary = table.getDictionary();
+    final List<KeyValue<V, Double>> candidates = new ArrayList<>();
+    final List<V> removed = new ArrayList<>();
+
+    long associationsBefore = 0L;
+    long associationsAfter = 0L;
+    long entriesRemoved = 0L;
+
+    for (Map.Entry<V, S> entry : statisticsMap.entrySet()) {
+      final V value = entry.getKey();
+      final S valueStatistics = entry.getValue();
+      final Map<V, Double> associatedValueProbabilities =
+          valueStatistics.getAssociatedValueProbabilities();
+      final int id = dictionary.getId(value);
+
+      candidates.clear();
+      removed.clear();
+
+      for (Map.Entry<V, Double> association : associatedValueProbabilities.entrySet()) {
+        final double pairCount =
+            table.getCount(id, dictionary.getId(association.getKey()));
+        final double posterior =
+            associationPosterior(value, valueStatistics, association.getKey());
+
+        if (pairCount >= rules.getMinimumPairCount()
+            && posterior >= rules.getMinimumPosterior()) {
+          candidates.add(new KeyValue<>(association.getKey(), posterior));
+        } else {
+          removed.add(association.getKey());
+        }
+      }
+
+      if (candidates.size() > rules.getMaximumAssociationsPerValue()) {
+        candidates.sort(Comparator
+            .comparing((KeyValue<V, Double> candidate) -> candidate.getValue())
+            .reversed());
+
+        for (KeyValue<V, Double> candidate : candidates
+            .subList(rules.getMaximumAssociationsPerValue(), candidates.size())) {
+          removed.add(candidate.getKey());
+        }
+      }
+
+      associationsBefore += associatedValueProbabilities.size();
+
+      for (V associatedValue : removed) {
+        entriesRemoved += removeAssociation(valueStatistics, associatedValue);
+      }
+
+      associationsAfter += associatedValueProbabilities.size();
+    }
+
+    compactionReport = new CompactionReport(associationsBefore, associationsAfter, entriesRemoved);
+
+    return compactionReport;
+  }
+
+  // Report of the last compaction, or null when the model was never compacted
+  public CompactionReport getCompactionReport() {
+    return compactionReport;
+  }
+
+  // Probability that the association of a value contributes to scoring, used to rank and filter
+  // associations during compaction. The value's row entry for A is what scores A given the value.
+  protected double associationPosterior(
+      final V value,
+      final S valueStatistics,
+      final V associatedValue) {
+    return supportingProbability(
+        associatedValue,
+        getAssociationStatistics(associatedValue),
+        value,
+        valueStatistics);
+  }
+
+  // Removes one association from the value's statistics and returns the map entries removed
+  protected int removeAssociation(final S valueStatistics, final V associatedValue) {
+    return valueStatistics.getAssociatedValueProbabilities().remove(associatedValue) == null
+        ? 0
+        : 1;
+  }
+
+  // Reports the latency first so the miss lookups are not part of it. Associations are only
+  // checked for known values, as unknown values are not scored at all.
+  private void recordScoringQuery(
+      final MetricsListener listener,
+      final Object token,
+      final V value,
+      final List<V> givenAssociations,
+      final long startNanos) {
+    listener.onScoringQuery(token, givenAssociations.size(), System.nanoTime() - startNanos);
+
+    if (getAssociationStatistics(value) == null) {
+      listener.onUnknownValue();
+      return;
+    }
+
+    for (V associatedValue : givenAssociations) {
+      if (getAssociationStatistics(associatedValue) == null) {
+        listener.onUnknownAssociation();
+      }
+    }
+  }
+
+  private static double[] scratchBuffer(final int length) {
+    double[] buffer = SCRATCH_BUFFER.get();
+
+    if (buffer.length < length) {
+      buffer = new double[Math.max(length, buffer.length << 1)];
+      SCRATCH_BUFFER.set(buffer);
+    }
+
+    return buffer;
+  }
+
+  private S resolve(final Map<V, S> resolvedStatistics, final V value) {
+    checkNotNull(value, "values cannot contain a null");
+
+    if (resolvedStatistics.containsKey(value)) {
+      return resolvedStatistics.get(value);
+    }
+
+    final S statistics = getAssociationStatistics(value);
+
+    resolvedStatistics.put(value, statistics);
+
+    return statistics;
+  }
+
 }
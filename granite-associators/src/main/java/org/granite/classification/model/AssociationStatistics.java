@@ -2,7 +2,6 @@ package org.granite.classification.model;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.HashMap;
 import java.util.Map;
 
 public class AssociationStatistics<V> {
@@ -12,7 +11,7 @@ public class AssociationStatistics<V> {
   private double likelihood;
   private double frequency;
   private double associationFrequency;
-  private Map<V, Double> associatedValueProbabilities = new HashMap<>();
+  private StampedHashMap<V, Double> associatedValueProbabilities = new StampedHashMap<>();
 
   public AssociationStatistics(final V value) {
     this.value = value;
@@ -84,4 +83,10 @@ public class AssociationStatistics<V> {
     return associatedValueProbabilities;
   }
 
+  // Changes whenever the associated value probabilities may have been modified, so values
+  // derived from them can tell when they are stale
+  public long getAssociatedValueProbabilitiesStamp() {
+    return associatedValueProbabilities.getStamp();
+  }
+
 }
@@ -0,0 +1,218 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.granite.base.KeyValue;
+
+/**
+ * Caches ensemble probabilities of a model for skewed traffic where the same value and
+ * associations are scored over and over. Keys are the value and the set of given associations,
+ * so order and repeats do not matter and every score is taken over the distinct associations.
+ * The cache is bounded by entry count with least recently used eviction.
+ *
+ * <p>Results are cached per model and modification stamp. When the supplier returns a different
+ * model, for example after a {@link ModelHolder} swap, or an updatable model was updated in
+ * place, the cache is dropped and refilled from the model as it is now.
+ */
+public class CachingEnsembleScorer<V> {
+
+  private static class ScoringKey<V> {
+
+    private final V value;
+    private final ImmutableSet<V> associations;
+
+    private ScoringKey(final V value, final ImmutableSet<V> associations) {
+      this.value = value;
+      this.associations = associations;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+
+      if (!(obj instanceof ScoringKey)) {
+        return false;
+      }
+
+      final ScoringKey<?> other = (ScoringKey<?>) obj;
+
+      return value.equals(other.value) && associations.equals(other.associations);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * value.hashCode() + associations.hashCode();
+    }
+  }
+
+  // The model a cache was filled from, and its modification stamp at the time
+  private static class CacheState<V> {
+
+    private final AssociationModel<V, ?> model;
+    private final long modificationStamp;
+    private final Cache<ScoringKey<V>, Double> cache;
+
+    private CacheState(
+        final AssociationModel<V, ?> model,
+        final long modificationStamp,
+        final long maximumSize) {
+      this.model = model;
+      this.modificationStamp = modificationStamp;
+      this.cache = CacheBuilder.newBuilder()
+          .maximumSize(maximumSize)
+          .build();
+    }
+  }
+
+  private final Supplier<? extends AssociationModel<V, ?>> modelSupplier;
+  private final ProbabilityEnsemble ensemble;
+  private final long maximumSize;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+  private volatile CacheState<V> state;
+
+  public CachingEnsembleScorer(
+      final Supplier<? extends AssociationModel<V, ?>> modelSupplier,
+      final ProbabilityEnsemble ensemble,
+      final long maximumSize) {
+    checkArgument(maximumSize > 0L, "maximumSize must be > 0");
+
+    this.modelSupplier = checkNotNull(modelSupplier, "modelSupplier");
+    this.ensemble = checkNotNull(ensemble, "ensemble");
+    this.maximumSize = maximumSize;
+    final AssociationModel<V, ?> model =
+        checkNotNull(modelSupplier.get(), "modelSupplier returned null");
+
+    this.state = new CacheState<>(model, model.getModificationStamp(), maximumSize);
+  }
+
+  public static <V> CachingEnsembleScorer<V> of(
+      final AssociationModel<V, ?> model,
+      final ProbabilityEnsemble ensemble,
+      final long maximumSize) {
+    checkNotNull(model, "model");
+
+    return new CachingEnsembleScorer<>(() -> model, ensemble, maximumSize);
+  }
+
+  // Scores the holder's current model. Swaps drop the cache as soon as they are published
+  // rather than on the next lookup, so the old model can be collected.
+  public static <V, M extends AssociationModel<V, ?>> CachingEnsembleScorer<V> of(
+      final ModelHolder<V, M> modelHolder,
+      final ProbabilityEnsemble ensemble,
+      final long maximumSize) {
+    checkNotNull(modelHolder, "modelHolder");
+
+    final CachingEnsembleScorer<V> scorer =
+        new CachingEnsembleScorer<>(modelHolder::get, ensemble, maximumSize);
+
+    modelHolder.addSwapListener(scorer::currentState);
+
+    return scorer;
+  }
+
+  public double ensembleProbability(final V value, final List<V> givenAssociations) {
+    checkNotNull(value, "value");
+    checkNotNull(givenAssociations, "givenAssociations");
+
+    final CacheState<V> current = currentState(modelSupplier.get());
+    final ScoringKey<V> key = new ScoringKey<>(value, ImmutableSet.copyOf(givenAssociations));
+    final Double cached = current.cache.getIfPresent(key);
+
+    if (cached != null) {
+      hits.increment();
+      return cached;
+    }
+
+    misses.increment();
+
+    // Concurrent misses on one key may both score it; the results are the same
+    final double probability =
+        current.model.ensembleProbability(value, key.associations.asList(), ensemble);
+
+    current.cache.put(key, probability);
+
+    return probability;
+  }
+
+  // Ties keep the earlier value, as in AssociationModel.mostProbable
+  public KeyValue<V, Double> mostProbable(final List<V> values, final List<V> givenAssociations) {
+    checkNotNull(values, "values");
+
+    V highestValue = null;
+    double highestProbability = -1.0;
+
+    for (V value : values) {
+      final double probability = ensembleProbability(value, givenAssociations);
+
+      if (probability > highestProbability) {
+        highestProbability = probability;
+        highestValue = value;
+      }
+    }
+
+    return new KeyValue<>(highestValue, highestProbability);
+  }
+
+  public void invalidateAll() {
+    state.cache.invalidateAll();
+    invalidations.increment();
+  }
+
+  public long size() {
+    return state.cache.size();
+  }
+
+  public long getMaximumSize() {
+    return maximumSize;
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public double getHitRate() {
+    final long requests = getHitCount() + getMissCount();
+
+    return requests == 0L ? 0.0 : (double) getHitCount() / requests;
+  }
+
+  // Times the cache was dropped, by a model change or invalidateAll
+  public long getInvalidationCount() {
+    return invalidations.sum();
+  }
+
+  // The stamp is read before scoring, so a score taken during an update is at worst cached
+  // under the old stamp and dropped with it
+  private CacheState<V> currentState(final AssociationModel<V, ?> model) {
+    final long modificationStamp = model.getModificationStamp();
+    final CacheState<V> current = state;
+
+    if (current.model == model && current.modificationStamp == modificationStamp) {
+      return current;
+    }
+
+    synchronized (this) {
+      if (state.model != model || state.modificationStamp != modificationStamp) {
+        state = new CacheState<>(model, modificationStamp, maximumSize);
+        invalidations.increment();
+      }
+
+      return state;
+    }
+  }
+}
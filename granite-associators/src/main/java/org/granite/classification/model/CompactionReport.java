@@ -0,0 +1,45 @@
+package org.granite.classification.model;
+
+/**
+ * Outcome of compacting a model. Memory is estimated from the number of removed map entries.
+ */
+public class CompactionReport {
+
+  // HashMap node, boxed Double and table slot of one association entry
+  public static final long ESTIMATED_BYTES_PER_ENTRY = 56L;
+
+  private final long associationsBefore;
+  private final long associationsAfter;
+  private final long entriesRemoved;
+
+  public CompactionReport(
+      final long associationsBefore,
+      final long associationsAfter,
+      final long entriesRemoved) {
+    this.associationsBefore = associationsBefore;
+    this.associationsAfter = associationsAfter;
+    this.entriesRemoved = entriesRemoved;
+  }
+
+  public long getAssociationsBefore() {
+    return associationsBefore;
+  }
+
+  public long getAssociationsAfter() {
+    return associationsAfter;
+  }
+
+  public long getAssociationsRemoved() {
+    return associationsBefore - associationsAfter;
+  }
+
+  // Map entries removed, more than the associations removed when a model keeps several maps
+  // per value
+  public long getEntriesRemoved() {
+    return entriesRemoved;
+  }
+
+  public long getEstimatedBytesSaved() {
+    return entriesRemoved * ESTIMATED_BYTES_PER_ENTRY;
+  }
+}
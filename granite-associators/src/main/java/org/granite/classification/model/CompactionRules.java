@@ -0,0 +1,45 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Which associations of each value survive model compaction. An association is kept when its
+ * pair count and its posterior reach the minimums and it is among the most probable
+ * associations of the value.
+ */
+public class CompactionRules {
+
+  private double minimumPairCount = 0.0;
+  private double minimumPosterior = 0.0;
+  private int maximumAssociationsPerValue = Integer.MAX_VALUE;
+
+  public double getMinimumPairCount() {
+    return minimumPairCount;
+  }
+
+  public CompactionRules withMinimumPairCount(final double minimumPairCount) {
+    checkArgument(minimumPairCount >= 0.0, "minimumPairCount must be >= 0");
+    this.minimumPairCount = minimumPairCount;
+    return this;
+  }
+
+  public double getMinimumPosterior() {
+    return minimumPosterior;
+  }
+
+  public CompactionRules withMinimumPosterior(final double minimumPosterior) {
+    checkArgument(minimumPosterior >= 0.0, "minimumPosterior must be >= 0");
+    this.minimumPosterior = minimumPosterior;
+    return this;
+  }
+
+  public int getMaximumAssociationsPerValue() {
+    return maximumAssociationsPerValue;
+  }
+
+  public CompactionRules withMaximumAssociationsPerValue(final int maximumAssociationsPerValue) {
+    checkArgument(maximumAssociationsPerValue >= 0, "maximumAssociationsPerValue must be >= 0");
+    this.maximumAssociationsPerValue = maximumAssociationsPerValue;
+    return this;
+  }
+}
@@ -0,0 +1,200 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Value and value-to-value frequencies keyed by dictionary id. Pair counts are held in compressed
+ * sparse row form: the associations of value {@code id} occupy {@code [getRowStart(id),
+ * getRowEnd(id))} of the column and count arrays, sorted by column id.
+ */
+public class CooccurrenceTable<V> {
+
+  private final ValueDictionary<V> dictionary;
+  private final double[] valueFrequency;
+  private final int[] rowOffsets;
+  private final int[] columns;
+  private final double[] counts;
+  // Totals as counted, which exceed the row sums when the rows hold only part of each value's
+  // associations. Null when the row sums are the totals.
+  private final double[] rowTotals;
+
+  CooccurrenceTable(
+      final ValueDictionary<V> dictionary,
+      final double[] valueFrequency,
+      final int[] rowOffsets,
+      final int[] columns,
+      final double[] counts
+  ) {
+    this(dictionary, valueFrequency, rowOffsets, columns, counts, null);
+  }
+
+  CooccurrenceTable(
+      final ValueDictionary<V> dictionary,
+      final double[] valueFrequency,
+      final int[] rowOffsets,
+      final int[] columns,
+      final double[] counts,
+      final double[] rowTotals
+  ) {
+    this.dictionary = checkNotNull(dictionary, "dictionary");
+    this.valueFrequency = checkNotNull(valueFrequency, "valueFrequency");
+    this.rowOffsets = checkNotNull(rowOffsets, "rowOffsets");
+    this.columns = checkNotNull(columns, "columns");
+    this.counts = checkNotNull(counts, "counts");
+    this.rowTotals = rowTotals;
+
+    checkArgument(valueFrequency.length == dictionary.size(),
+        "valueFrequency must have one entry per dictionary value");
+    checkArgument(rowOffsets.length == dictionary.size() + 1,
+        "rowOffsets must have one entry per dictionary value plus one");
+    checkArgument(columns.length == counts.length,
+        "columns and counts must be the same length");
+    checkArgument(rowOffsets[dictionary.size()] == columns.length,
+        "rowOffsets must end at the number of pairs");
+    checkArgument(rowTotals == null || rowTotals.length == dictionary.size(),
+        "rowTotals must have one entry per dictionary value");
+  }
+
+  // Table from arrays read back from storage. Unlike the constructor this checks every row.
+  public static <V> CooccurrenceTable<V> of(
+      final List<V> values,
+      final double[] valueFrequency,
+      final int[] rowOffsets,
+      final int[] columns,
+      final double[] counts) {
+    return of(values, valueFrequency, rowOffsets, columns, counts, null);
+  }
+
+  // As above, with the row totals kept alongside the rows, or null when the row sums are the
+  // totals
+  public static <V> CooccurrenceTable<V> of(
+      final List<V> values,
+      final double[] valueFrequency,
+      final int[] rowOffsets,
+      final int[] columns,
+      final double[] counts,
+      final double[] rowTotals) {
+    final CooccurrenceTable<V> table = new CooccurrenceTable<>(
+        new ValueDictionary<>(values),
+        valueFrequency,
+        rowOffsets,
+        columns,
+        counts,
+        rowTotals);
+
+    checkArgument(rowOffsets[0] == 0, "rowOffsets must start at zero");
+
+    for (int id = 0; id < table.size(); id++) {
+      checkArgument(rowOffsets[id] <= rowOffsets[id + 1], "rowOffsets must not decrease");
+
+      for (int index = rowOffsets[id]; index < rowOffsets[id + 1]; index++) {
+        checkElementIndex(columns[index], table.size(), "column");
+        checkArgument(index == rowOffsets[id] || columns[index - 1] < columns[index],
+            "columns must be strictly increasing within a row");
+      }
+    }
+
+    return table;
+  }
+
+  public ValueDictionary<V> getDictionary() {
+    return dictionary;
+  }
+
+  public int size() {
+    return dictionary.size();
+  }
+
+  public int getPairCount() {
+    return columns.length;
+  }
+
+  public double getFrequency(final int id) {
+    return valueFrequency[checkElementIndex(id, valueFrequency.length, "id")];
+  }
+
+  public int getRowStart(final int id) {
+    return rowOffsets[checkElementIndex(id, dictionary.size(), "id")];
+  }
+
+  public int getRowEnd(final int id) {
+    return rowOffsets[checkElementIndex(id, dictionary.size(), "id") + 1];
+  }
+
+  public int getColumn(final int index) {
+    return columns[index];
+  }
+
+  public double getCount(final int index) {
+    return counts[index];
+  }
+
+  public double getCount(final int rowId, final int columnId) {
+    final int index = Arrays.binarySearch(
+        columns,
+        getRowStart(rowId),
+        getRowEnd(rowId),
+        columnId);
+
+    return index < 0 ? 0.0 : counts[index];
+  }
+
+  public double getRowTotal(final int id) {
+    if (rowTotals != null) {
+      return rowTotals[checkElementIndex(id, rowTotals.length, "id")];
+    }
+
+    double total = 0.0;
+
+    for (int index = getRowStart(id); index < getRowEnd(id); index++) {
+      total += counts[index];
+    }
+
+    return total;
+  }
+
+  // Approximate heap footprint of the primitive arrays, excluding the dictionary
+  public long estimateArrayBytes() {
+    return (long) valueFrequency.length * Double.BYTES
+        + (long) rowOffsets.length * Integer.BYTES
+        + (long) columns.length * Integer.BYTES
+        + (long) counts.length * Double.BYTES
+        + (rowTotals == null ? 0L : (long) rowTotals.length * Double.BYTES);
+  }
+
+  public ImmutableMap<V, Double> toValueFrequencyMap() {
+    final ImmutableMap.Builder<V, Double> builder = ImmutableMap.builder();
+
+    for (int id = 0; id < size(); id++) {
+      builder.put(dictionary.getValue(id), valueFrequency[id]);
+    }
+
+    return builder.build();
+  }
+
+  public ImmutableMap<V, ImmutableMap<V, Double>> toValueToValueFrequencyMap() {
+    final ImmutableMap.Builder<V, ImmutableMap<V, Double>> builder = ImmutableMap.builder();
+
+    for (int id = 0; id < size(); id++) {
+      if (rowOffsets[id] == rowOffsets[id + 1]) {
+        continue;
+      }
+
+      final ImmutableMap.Builder<V, Double> rowBuilder = ImmutableMap.builder();
+
+      for (int index = rowOffsets[id]; index < rowOffsets[id + 1]; index++) {
+        rowBuilder.put(dictionary.getValue(columns[index]), counts[index]);
+      }
+
+      builder.put(dictionary.getValue(id), rowBuilder.build());
+    }
+
+    return builder.build();
+  }
+}
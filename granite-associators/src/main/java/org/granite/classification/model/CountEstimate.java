@@ -0,0 +1,34 @@
+package org.granite.classification.model;
+
+/**
+ * Approximate count together with how far it may be off. The true count lies in
+ * [estimate - errorBound, estimate] with the given confidence.
+ */
+public class CountEstimate {
+
+  private final double estimate;
+  private final double errorBound;
+  private final double confidence;
+
+  public CountEstimate(final double estimate, final double errorBound, final double confidence) {
+    this.estimate = estimate;
+    this.errorBound = errorBound;
+    this.confidence = confidence;
+  }
+
+  public double getEstimate() {
+    return estimate;
+  }
+
+  public double getErrorBound() {
+    return errorBound;
+  }
+
+  public double getConfidence() {
+    return confidence;
+  }
+
+  public double getLowerBound() {
+    return Math.max(0.0, estimate - errorBound);
+  }
+}
@@ -0,0 +1,98 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Count-Min sketch of non-negative counts keyed by long. Estimates never undercount; with
+ * probability {@link #getConfidence()} an estimate overcounts by at most
+ * {@link #getErrorBound()}, a fixed fraction of everything added so far.
+ */
+public class CountMinSketch {
+
+  private final int depth;
+  private final int widthMask;
+  private final double[] counts;
+  private double totalCount = 0.0;
+
+  public CountMinSketch(final int width, final int depth) {
+    checkArgument(width > 0 && Integer.bitCount(width) == 1, "width must be a power of two");
+    checkArgument(depth > 0, "depth must be > 0");
+    checkArgument((long) width * depth <= Integer.MAX_VALUE, "width * depth is too large");
+
+    this.depth = depth;
+    this.widthMask = width - 1;
+    this.counts = new double[width * depth];
+  }
+
+  // Widest sketch of the given depth that fits in the budget
+  public static CountMinSketch withMemoryBudget(final long bytes, final int depth) {
+    checkArgument(depth > 0, "depth must be > 0");
+    checkArgument(bytes >= (long) Double.BYTES * depth, "bytes is too small for the depth");
+
+    final long maximumWidth = Math.min(bytes / ((long) Double.BYTES * depth),
+        Integer.MAX_VALUE / depth);
+
+    return new CountMinSketch(Integer.highestOneBit((int) maximumWidth), depth);
+  }
+
+  public int getWidth() {
+    return widthMask + 1;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public double getTotalCount() {
+    return totalCount;
+  }
+
+  // ε = e / width
+  public double getRelativeError() {
+    return Math.E / getWidth();
+  }
+
+  // 1 - δ = 1 - e^-depth
+  public double getConfidence() {
+    return 1.0 - Math.exp(-depth);
+  }
+
+  public double getErrorBound() {
+    return getRelativeError() * totalCount;
+  }
+
+  public long getByteSize() {
+    return (long) counts.length * Double.BYTES;
+  }
+
+  public void add(final long key, final double count) {
+    checkArgument(count >= 0.0, "count must be >= 0");
+
+    for (int row = 0; row < depth; row++) {
+      counts[slot(key, row)] += count;
+    }
+
+    totalCount += count;
+  }
+
+  public double estimate(final long key) {
+    double estimate = Double.MAX_VALUE;
+
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, counts[slot(key, row)]);
+    }
+
+    return estimate;
+  }
+
+  // Independent hash per row from a 64 bit finalizer over the key and row
+  private int slot(final long key, final int row) {
+    long hash = key * 0x9E3779B97F4A7C15L + (row + 1) * 0xC2B2AE3D27D4EB4FL;
+
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    hash ^= hash >>> 33;
+
+    return row * (widthMask + 1) + ((int) hash & widthMask);
+  }
+}
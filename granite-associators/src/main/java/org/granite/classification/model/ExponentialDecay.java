@@ -0,0 +1,63 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.time.Duration;
+
+/**
+ * Exponential decay of counts with a fixed half-life, applied as forward decay. Rather than
+ * shrinking every stored count as time passes, a row at time t is counted with weight
+ * 2^((t - landmark) / halfLife). Stored counts are then the counts decayed as of the landmark
+ * scaled by one common factor, so ratios between them, and every probability derived from them,
+ * are already decayed without touching the values a row did not contain.
+ *
+ * <p>Weights grow with time, so counters move to a later landmark, rescaling what they have
+ * stored, once a row would be weighted more than 2^64.
+ */
+public class ExponentialDecay {
+
+  public static final double RESCALE_EXPONENT = 64.0;
+
+  private final Duration halfLife;
+  private final long landmark;
+
+  // Timestamps and the landmark are epoch milliseconds
+  public ExponentialDecay(final Duration halfLife, final long landmark) {
+    checkNotNull(halfLife, "halfLife");
+    checkArgument(halfLife.toMillis() > 0L, "halfLife must be at least a millisecond");
+
+    this.halfLife = halfLife;
+    this.landmark = landmark;
+  }
+
+  public Duration getHalfLife() {
+    return halfLife;
+  }
+
+  // Time the stored counts are decayed as of
+  public long getLandmark() {
+    return landmark;
+  }
+
+  public ExponentialDecay withLandmark(final long landmark) {
+    return new ExponentialDecay(halfLife, landmark);
+  }
+
+  public double weight(final long timestamp) {
+    return Math.pow(2.0, halfLives(timestamp));
+  }
+
+  // Factor that turns stored counts into counts decayed as of the given time
+  public double decayFactor(final long asOf) {
+    return Math.pow(2.0, -halfLives(asOf));
+  }
+
+  public boolean needsRescale(final long timestamp) {
+    return halfLives(timestamp) > RESCALE_EXPONENT;
+  }
+
+  private double halfLives(final long timestamp) {
+    return (double) (timestamp - landmark) / halfLife.toMillis();
+  }
+}
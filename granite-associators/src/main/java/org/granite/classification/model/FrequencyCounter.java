@@ -0,0 +1,436 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Mutable accumulator of value and value-to-value frequencies. Values are interned to dense ids
+ * as they are first seen and pairs are counted in a primitive map, so counting does not box.
+ */
+public class FrequencyCounter<V> {
+
+  private static final int[] NO_COLUMNS = new int[0];
+
+  private final boolean strictAssociation;
+  private final WideRowStrategy wideRowStrategy;
+  private final HashMap<V, Integer> ids = new HashMap<>();
+  private final ArrayList<V> values = new ArrayList<>();
+  private final LongDoubleHashMap pairFrequency = new LongDoubleHashMap();
+  private double[] valueFrequency = new double[16];
+  private double[] rowTotals = new double[16];
+  // Associated ids of each value in the order the pairs were first counted
+  private int[][] rowColumns = new int[16][];
+  private int[] rowSizes = new int[16];
+  private double totalValueFrequency = 0.0;
+  private long limitedRows = 0L;
+  private long truncatedValues = 0L;
+
+  public FrequencyCounter(final boolean strictAssociation) {
+    this(strictAssociation, WideRowStrategy.EXACT);
+  }
+
+  public FrequencyCounter(
+      final boolean strictAssociation,
+      final WideRowStrategy wideRowStrategy) {
+    this.strictAssociation = strictAssociation;
+    this.wideRowStrategy = checkNotNull(wideRowStrategy, "wideRowStrategy");
+  }
+
+  public static <V> FrequencyCounter<V> of(
+      final CooccurrenceTable<V> table,
+      final double totalValueFrequency,
+      final boolean strictAssociation) {
+    return of(table, totalValueFrequency, strictAssociation, WideRowStrategy.EXACT);
+  }
+
+  // Counter that resumes from the table, counting rows added later with the given strategy
+  public static <V> FrequencyCounter<V> of(
+      final CooccurrenceTable<V> table,
+      final double totalValueFrequency,
+      final boolean strictAssociation,
+      final WideRowStrategy wideRowStrategy) {
+    checkNotNull(table, "table");
+
+    final FrequencyCounter<V> result = new FrequencyCounter<>(strictAssociation, wideRowStrategy);
+
+    for (int id = 0; id < table.size(); id++) {
+      result.valueFrequency[result.intern(table.getDictionary().getValue(id))] =
+          table.getFrequency(id);
+    }
+
+    for (int id = 0; id < table.size(); id++) {
+      for (int index = table.getRowStart(id); index < table.getRowEnd(id); index++) {
+        result.addCount(id, table.getColumn(index), table.getCount(index));
+      }
+
+      // Approximate tables keep totals over more associations than their rows hold
+      result.rowTotals[id] = table.getRowTotal(id);
+    }
+
+    result.totalValueFrequency = totalValueFrequency;
+
+    return result;
+  }
+
+  public boolean isStrictAssociation() {
+    return strictAssociation;
+  }
+
+  public WideRowStrategy getWideRowStrategy() {
+    return wideRowStrategy;
+  }
+
+  public WideRowReport getWideRowReport() {
+    return new WideRowReport(limitedRows, truncatedValues);
+  }
+
+  public double getTotalValueFrequency() {
+    return totalValueFrequency;
+  }
+
+  public int size() {
+    return values.size();
+  }
+
+  public int getPairCount() {
+    return pairFrequency.size();
+  }
+
+  public int getId(final V value) {
+    checkNotNull(value, "value");
+
+    final Integer id = ids.get(value);
+
+    return id == null ? ValueDictionary.UNKNOWN_ID : id;
+  }
+
+  public V getValue(final int id) {
+    checkElementIndex(id, values.size(), "id");
+
+    return values.get(id);
+  }
+
+  public double getFrequency(final int id) {
+    checkElementIndex(id, values.size(), "id");
+
+    return valueFrequency[id];
+  }
+
+  public double getRowTotal(final int id) {
+    checkElementIndex(id, values.size(), "id");
+
+    return rowTotals[id];
+  }
+
+  public int getRowSize(final int id) {
+    checkElementIndex(id, values.size(), "id");
+
+    return rowSizes[id];
+  }
+
+  public int getColumn(final int id, final int index) {
+    checkElementIndex(index, getRowSize(id), "index");
+
+    return rowColumns[id][index];
+  }
+
+  public double getCount(final int outerId, final int innerId) {
+    return pairFrequency.get(LongDoubleHashMap.pairKey(outerId, innerId));
+  }
+
+  // Returns the ids of the row values in row order
+  public int[] add(final List<V> rowValues) {
+    return add(rowValues, 1.0);
+  }
+
+  // Counts the row as weight occurrences rather than one, as decayed counting does. Returns the
+  // ids of the values counted, which leaves out values a capped row dropped. A zero weight, which
+  // a decayed row far older than the landmark underflows to, counts nothing and interns no values
+  // that would otherwise have no frequency.
+  public int[] add(final List<V> rowValues, final double weight) {
+    checkNotNull(rowValues, "rowValues");
+    checkArgument(weight >= 0.0 && weight < Double.POSITIVE_INFINITY,
+        "weight must be finite and >= 0");
+
+    if (weight == 0.0) {
+      return new int[0];
+    }
+
+    final boolean limited = wideRowStrategy.isLimited(rowValues.size());
+    final int width = limited && wideRowStrategy.getMode() == WideRowStrategy.Mode.CAP
+        ? wideRowStrategy.getLimit()
+        : rowValues.size();
+
+    if (limited) {
+      limitedRows++;
+      truncatedValues += rowValues.size() - width;
+    }
+
+    final int[] rowIds = new int[width];
+
+    for (int index = 0; index < rowIds.length; index++) {
+      rowIds[index] = intern(rowValues.get(index));
+    }
+
+    if (limited && wideRowStrategy.getMode() == WideRowStrategy.Mode.WINDOW) {
+      addWindowPairs(rowIds, weight, wideRowStrategy.getLimit());
+      return rowIds;
+    }
+
+    if (limited && wideRowStrategy.getMode() == WideRowStrategy.Mode.SAMPLE) {
+      addSampledPairs(rowIds, weight, new SplittableRandom(
+          wideRowStrategy.getSeed() ^ rowValues.hashCode()));
+      return rowIds;
+    }
+
+    // Find value-to-value frequency (without strict association)
+    // eg. [1, 2, 3, 4]
+    // 4 -> {1:1, 2:1, 3:1, 4:1}
+    // 3 -> {1:1, 2:1, 3:1, 4:1}
+    // etc
+
+    // Find value-to-value frequency (with strict association)
+    // eg. [1, 2, 3, 4]
+    // 4 -> {1:1, 2:1, 3:1}
+    // 3 -> {1:1, 2:1, 4:1}
+    for (int outerIndex = 0; outerIndex < rowIds.length; outerIndex++) {
+      valueFrequency[rowIds[outerIndex]] += weight;
+      totalValueFrequency += weight;
+
+      for (int innerIndex = 0; innerIndex < rowIds.length; innerIndex++) {
+
+        if (strictAssociation && innerIndex == outerIndex) {
+          continue;
+        }
+
+        addPair(rowIds[outerIndex], rowIds[innerIndex], weight);
+      }
+    }
+
+    return rowIds;
+  }
+
+  private void addWindowPairs(final int[] rowIds, final double weight, final int radius) {
+    for (int outerIndex = 0; outerIndex < rowIds.length; outerIndex++) {
+      valueFrequency[rowIds[outerIndex]] += weight;
+      totalValueFrequency += weight;
+
+      final int innerEnd = Math.min(rowIds.length, outerIndex + radius + 1);
+
+      for (int innerIndex = Math.max(0, outerIndex - radius); innerIndex < innerEnd;
+          innerIndex++) {
+
+        if (strictAssociation && innerIndex == outerIndex) {
+          continue;
+        }
+
+        addPair(rowIds[outerIndex], rowIds[innerIndex], weight);
+      }
+    }
+  }
+
+  // Pairs each value with pairsPerValue distinct others, weighted by (width - 1) / partners so
+  // each row total is what exact counting gives. Pairs are sampled unordered and counted in both
+  // directions, keeping the table symmetric: the row is shuffled and each value is paired with
+  // the values a few randomly chosen distances away around the shuffled row. A distance of half
+  // an even row pairs each value once, any other distance twice, so an odd pairsPerValue on an
+  // odd row takes one partner more. Over the shuffles every pair is equally likely to be
+  // sampled, so pair counts stay unbiased.
+  private void addSampledPairs(
+      final int[] rowIds,
+      final double weight,
+      final SplittableRandom random) {
+    final int width = rowIds.length;
+    final int pairsPerValue = wideRowStrategy.getLimit();
+    final boolean pairsHalfway = width % 2 == 0 && pairsPerValue % 2 == 1;
+    final int distanceCount = pairsHalfway ? pairsPerValue / 2 : (pairsPerValue + 1) / 2;
+    final int partners = 2 * distanceCount + (pairsHalfway ? 1 : 0);
+    final double pairWeight = weight * (width - 1) / partners;
+    final int[] shuffled = rowIds.clone();
+    final int[] distances = new int[(width - 1) / 2];
+
+    for (int index = width - 1; index > 0; index--) {
+      final int swap = random.nextInt(index + 1);
+      final int id = shuffled[swap];
+
+      shuffled[swap] = shuffled[index];
+      shuffled[index] = id;
+    }
+
+    for (int index = 0; index < distances.length; index++) {
+      distances[index] = index + 1;
+    }
+
+    for (int index = 0; index < width; index++) {
+      valueFrequency[rowIds[index]] += weight;
+      totalValueFrequency += weight;
+
+      if (!strictAssociation) {
+        addPair(rowIds[index], rowIds[index], weight);
+      }
+    }
+
+    // Distances below half the row, drawn by a partial Fisher-Yates shuffle
+    for (int sample = 0; sample < distanceCount; sample++) {
+      final int swap = sample + random.nextInt(distances.length - sample);
+      final int distance = distances[swap];
+
+      distances[swap] = distances[sample];
+      distances[sample] = distance;
+
+      for (int index = 0; index < width; index++) {
+        addPairs(shuffled[index], shuffled[(index + distance) % width], pairWeight);
+      }
+    }
+
+    if (pairsHalfway) {
+      for (int index = 0; index < width / 2; index++) {
+        addPairs(shuffled[index], shuffled[index + width / 2], pairWeight);
+      }
+    }
+  }
+
+  private void addPairs(final int outerId, final int innerId, final double count) {
+    addPair(outerId, innerId, count);
+    addPair(innerId, outerId, count);
+  }
+
+  // Multiplies every count and total by the factor. Probabilities are unchanged.
+  public void scale(final double factor) {
+    checkArgument(factor > 0.0 && factor < Double.POSITIVE_INFINITY,
+        "factor must be finite and > 0");
+
+    for (int id = 0; id < values.size(); id++) {
+      valueFrequency[id] *= factor;
+      rowTotals[id] *= factor;
+    }
+
+    pairFrequency.scaleValues(factor);
+    totalValueFrequency *= factor;
+  }
+
+  // Folds the counts of another counter into this one. Values new to this counter are interned
+  // in the other counter's id order, so merging counters over consecutive row ranges from left
+  // to right assigns the same ids as counting all rows in one pass.
+  public void merge(final FrequencyCounter<V> other) {
+    checkNotNull(other, "other");
+    checkArgument(other.strictAssociation == strictAssociation,
+        "Cannot merge counters with different strict association settings");
+    checkArgument(other.wideRowStrategy.equals(wideRowStrategy),
+        "Cannot merge counters with different wide row strategies");
+
+    limitedRows += other.limitedRows;
+    truncatedValues += other.truncatedValues;
+
+    final int[] idMapping = new int[other.values.size()];
+
+    for (int otherId = 0; otherId < idMapping.length; otherId++) {
+      idMapping[otherId] = intern(other.values.get(otherId));
+      valueFrequency[idMapping[otherId]] += other.valueFrequency[otherId];
+    }
+
+    totalValueFrequency += other.totalValueFrequency;
+
+    for (int otherId = 0; otherId < idMapping.length; otherId++) {
+      // Totals are merged as counted, as they may exceed the row sums
+      rowTotals[idMapping[otherId]] += other.rowTotals[otherId];
+
+      for (int index = 0; index < other.rowSizes[otherId]; index++) {
+        final int otherColumn = other.rowColumns[otherId][index];
+
+        addCount(
+            idMapping[otherId],
+            idMapping[otherColumn],
+            other.getCount(otherId, otherColumn));
+      }
+    }
+  }
+
+  public CooccurrenceTable<V> toTable() {
+    final int valueCount = values.size();
+    final int[] rowOffsets = new int[valueCount + 1];
+    final int[] columns = new int[pairFrequency.size()];
+    final double[] counts = new double[pairFrequency.size()];
+
+    for (int id = 0; id < valueCount; id++) {
+      final int rowStart = rowOffsets[id];
+      final int rowEnd = rowStart + rowSizes[id];
+
+      if (rowSizes[id] > 0) {
+        System.arraycopy(rowColumns[id], 0, columns, rowStart, rowSizes[id]);
+        Arrays.sort(columns, rowStart, rowEnd);
+      }
+
+      for (int index = rowStart; index < rowEnd; index++) {
+        counts[index] = getCount(id, columns[index]);
+      }
+
+      rowOffsets[id + 1] = rowEnd;
+    }
+
+    // Totals are passed on as counted, as a counter resumed from an approximate table keeps
+    // totals over more associations than its rows hold
+    return new CooccurrenceTable<>(
+        new ValueDictionary<>(values),
+        Arrays.copyOf(valueFrequency, valueCount),
+        rowOffsets,
+        columns,
+        counts,
+        Arrays.copyOf(rowTotals, valueCount)
+    );
+  }
+
+  private void addPair(final int outerId, final int innerId, final double count) {
+    rowTotals[outerId] += count;
+    addCount(outerId, innerId, count);
+  }
+
+  // Adds to the pair count without touching the row total
+  private void addCount(final int outerId, final int innerId, final double count) {
+    if (!pairFrequency.addTo(LongDoubleHashMap.pairKey(outerId, innerId), count)) {
+      return;
+    }
+
+    int[] columns = rowColumns[outerId];
+
+    if (columns == null) {
+      columns = NO_COLUMNS;
+    }
+
+    if (rowSizes[outerId] == columns.length) {
+      columns = Arrays.copyOf(columns, Math.max(4, columns.length << 1));
+    }
+
+    columns[rowSizes[outerId]++] = innerId;
+    rowColumns[outerId] = columns;
+  }
+
+  private int intern(final V value) {
+    final Integer existing = ids.get(value);
+
+    if (existing != null) {
+      return existing;
+    }
+
+    final int id = values.size();
+
+    ids.put(value, id);
+    values.add(value);
+
+    if (id == valueFrequency.length) {
+      valueFrequency = Arrays.copyOf(valueFrequency, id << 1);
+      rowTotals = Arrays.copyOf(rowTotals, id << 1);
+      rowColumns = Arrays.copyOf(rowColumns, id << 1);
+      rowSizes = Arrays.copyOf(rowSizes, id << 1);
+    }
+
+    return id;
+  }
+}
@@ -0,0 +1,68 @@
+package org.granite.classification.model;
+
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+// Counts a contiguous range of rows, splitting in half until a range is small enough to count
+// on one thread. Partial counters are merged left to right so ids match a sequential count.
+class FrequencyCountingTask<K extends Comparable<K>, V> extends
+    RecursiveTask<FrequencyCounter<V>> {
+
+  private static final long serialVersionUID = 1L;
+
+  private final List<TrainingRow<K, V>> trainingRows;
+  private final int fromIndex;
+  private final int toIndex;
+  private final int splitThreshold;
+  private final boolean strictAssociation;
+  private final WideRowStrategy wideRowStrategy;
+
+  FrequencyCountingTask(
+      final List<TrainingRow<K, V>> trainingRows,
+      final int fromIndex,
+      final int toIndex,
+      final int splitThreshold,
+      final boolean strictAssociation,
+      final WideRowStrategy wideRowStrategy
+  ) {
+    this.trainingRows = trainingRows;
+    this.fromIndex = fromIndex;
+    this.toIndex = toIndex;
+    this.splitThreshold = splitThreshold;
+    this.strictAssociation = strictAssociation;
+    this.wideRowStrategy = wideRowStrategy;
+  }
+
+  @Override
+  protected FrequencyCounter<V> compute() {
+    if (toIndex - fromIndex <= splitThreshold) {
+      final FrequencyCounter<V> frequencyCounter = new FrequencyCounter<>(
+          strictAssociation,
+          wideRowStrategy);
+
+      for (int index = fromIndex; index < toIndex; index++) {
+        frequencyCounter.add(trainingRows.get(index).getValues());
+      }
+
+      return frequencyCounter;
+    }
+
+    final int middleIndex = (fromIndex + toIndex) >>> 1;
+
+    final FrequencyCountingTask<K, V> left = new FrequencyCountingTask<>(
+        trainingRows, fromIndex, middleIndex, splitThreshold, strictAssociation,
+        wideRowStrategy);
+    final FrequencyCountingTask<K, V> right = new FrequencyCountingTask<>(
+        trainingRows, middleIndex, toIndex, splitThreshold, strictAssociation,
+        wideRowStrategy);
+
+    left.fork();
+
+    final FrequencyCounter<V> rightCounter = right.compute();
+    final FrequencyCounter<V> leftCounter = left.join();
+
+    leftCounter.merge(rightCounter);
+
+    return leftCounter;
+  }
+}
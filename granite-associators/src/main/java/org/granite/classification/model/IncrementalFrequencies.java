@@ -0,0 +1,142 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Live frequency counts behind an updatable model, with enough bookkeeping to tell which
+ * statistics are stale. Every added row bumps a sequence number and stamps the values it
+ * contains; statistics record the sequence they were last refreshed at.
+ *
+ * <p>With a decay, rows are counted with their forward decay weight. Probabilities are always
+ * current, while stored frequencies are decayed as of the decay landmark.
+ */
+public class IncrementalFrequencies<V> {
+
+  private final FrequencyCounter<V> frequencyCounter;
+  private final BitSet changedSinceFullRefresh = new BitSet();
+  private long sequence = 0L;
+  private long[] changedAt = new long[16];
+  private long[] refreshedAt = new long[16];
+  private ExponentialDecay decay;
+
+  public IncrementalFrequencies(final FrequencyCounter<V> frequencyCounter) {
+    this(frequencyCounter, null);
+  }
+
+  // Counts added rows with the decay when it is not null
+  public IncrementalFrequencies(
+      final FrequencyCounter<V> frequencyCounter,
+      final ExponentialDecay decay) {
+    this.frequencyCounter = checkNotNull(frequencyCounter, "frequencyCounter");
+    this.decay = decay;
+    ensureCapacity(frequencyCounter.size());
+  }
+
+  public ExponentialDecay getDecay() {
+    return decay;
+  }
+
+  public FrequencyCounter<V> getFrequencyCounter() {
+    return frequencyCounter;
+  }
+
+  public <K extends Comparable<K>> void add(final TrainingRow<K, V> trainingRow) {
+    checkNotNull(trainingRow, "trainingRow").validate();
+
+    final int[] rowIds = frequencyCounter.add(trainingRow.getValues(), weight(trainingRow));
+
+    ensureCapacity(frequencyCounter.size());
+
+    sequence++;
+
+    for (int id : rowIds) {
+      changedAt[id] = sequence;
+      changedSinceFullRefresh.set(id);
+    }
+  }
+
+  // True when the counts of the value changed after its statistics were refreshed
+  public boolean isStale(final int id) {
+    return changedAt[id] > refreshedAt[id];
+  }
+
+  // True when the counts of the associated value changed after the statistics of the value
+  // were refreshed, meaning anything derived from the pair may be stale
+  public boolean isStale(final int id, final int associatedId) {
+    return changedAt[associatedId] > refreshedAt[id];
+  }
+
+  public void markRefreshed(final int id) {
+    refreshedAt[id] = sequence;
+  }
+
+  public BitSet getChangedSinceFullRefresh() {
+    return changedSinceFullRefresh;
+  }
+
+  public void markFullyRefreshed() {
+    Arrays.fill(refreshedAt, 0, frequencyCounter.size(), sequence);
+    changedSinceFullRefresh.clear();
+  }
+
+  // Recomputes the frequencies and P(associatedValue : value) of a value from the live counts.
+  // The probability of the value depends on the global total and is left to the caller.
+  public void refreshFrequencyStatistics(
+      final int id,
+      final AssociationStatistics<V> associationStatistics) {
+    checkNotNull(associationStatistics, "associationStatistics");
+
+    final double totalAssociations = frequencyCounter.getRowTotal(id);
+
+    associationStatistics
+        .withFrequency(frequencyCounter.getFrequency(id))
+        .withAssociationFrequency(totalAssociations);
+
+    associationStatistics.getAssociatedValueProbabilities().clear();
+
+    for (int index = 0; index < frequencyCounter.getRowSize(id); index++) {
+      final int associatedId = frequencyCounter.getColumn(id, index);
+
+      associationStatistics.getAssociatedValueProbabilities()
+          .put(
+              frequencyCounter.getValue(associatedId),
+              frequencyCounter.getCount(id, associatedId) / totalAssociations);
+    }
+  }
+
+  private <K extends Comparable<K>> double weight(final TrainingRow<K, V> trainingRow) {
+    if (decay == null) {
+      return 1.0;
+    }
+
+    trainingRow.validateTimestamp();
+
+    final long timestamp = trainingRow.getTimestamp();
+
+    // Rescaling changes every stored frequency, so every statistic is stale afterwards
+    if (decay.needsRescale(timestamp)) {
+      frequencyCounter.scale(decay.decayFactor(timestamp));
+      decay = decay.withLandmark(timestamp);
+
+      sequence++;
+      Arrays.fill(changedAt, 0, frequencyCounter.size(), sequence);
+      changedSinceFullRefresh.set(0, frequencyCounter.size());
+    }
+
+    return decay.weight(timestamp);
+  }
+
+  private void ensureCapacity(final int size) {
+    if (size <= changedAt.length) {
+      return;
+    }
+
+    final int capacity = Math.max(size, changedAt.length << 1);
+
+    changedAt = Arrays.copyOf(changedAt, capacity);
+    refreshedAt = Arrays.copyOf(refreshedAt, capacity);
+  }
+}
@@ -0,0 +1,74 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Independent unions P(A ∪ B ∪ ...) = 1 - ∏(1 - p) computed from one shared product.
+ */
+public class IndependentUnions {
+
+  // Log of the shared product of (1 - p). Probabilities of one are counted rather than logged
+  // so removing one of them from the product stays exact.
+  public static class LogComplementProduct {
+
+    private double logProduct = 0.0;
+    private int certainCount = 0;
+
+    public void add(final double probability) {
+      checkProbability(probability);
+
+      if (probability >= 1.0) {
+        certainCount++;
+      } else {
+        logProduct += Math.log1p(-probability);
+      }
+    }
+
+    public int getCertainCount() {
+      return certainCount;
+    }
+
+    public double getLogProduct() {
+      return logProduct;
+    }
+
+    public double union() {
+      return certainCount > 0 ? 1.0 : -Math.expm1(logProduct);
+    }
+
+    // Union of every added probability except one occurrence of the given probability
+    public double unionWithout(final double probability) {
+      checkProbability(probability);
+
+      if (probability >= 1.0) {
+        return certainCount > 1 ? 1.0 : -Math.expm1(logProduct);
+      }
+
+      return certainCount > 0 ? 1.0 : -Math.expm1(logProduct - Math.log1p(-probability));
+    }
+  }
+
+  // result[i] is the independent union of every probability except probabilities[i]
+  public static double[] leaveOneOut(final double[] probabilities) {
+    checkNotNull(probabilities, "probabilities");
+
+    final LogComplementProduct product = new LogComplementProduct();
+
+    for (double probability : probabilities) {
+      product.add(probability);
+    }
+
+    final double[] result = new double[probabilities.length];
+
+    for (int index = 0; index < probabilities.length; index++) {
+      result[index] = product.unionWithout(probabilities[index]);
+    }
+
+    return result;
+  }
+
+  private static void checkProbability(final double probability) {
+    checkArgument(probability >= 0.0 && probability <= 1.0, "probability is not in [0, 1]");
+  }
+}
@@ -0,0 +1,167 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map of non-negative long keys to double values. Used to count value pairs
+ * without boxing a key and a value for every pair.
+ */
+public class LongDoubleHashMap {
+
+  private static final long EMPTY = -1L;
+  private static final double LOAD_FACTOR = 0.6;
+
+  private long[] keys;
+  private double[] values;
+  private int size;
+  private int resizeThreshold;
+
+  public LongDoubleHashMap() {
+    this(16);
+  }
+
+  public LongDoubleHashMap(final int expectedSize) {
+    checkArgument(expectedSize >= 0, "expectedSize must be >= 0");
+    allocate(capacityFor(expectedSize));
+  }
+
+  public static long pairKey(final int outerId, final int innerId) {
+    return ((long) outerId << 32) | (innerId & 0xFFFFFFFFL);
+  }
+
+  public static int outerId(final long pairKey) {
+    return (int) (pairKey >>> 32);
+  }
+
+  public static int innerId(final long pairKey) {
+    return (int) pairKey;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public double get(final long key) {
+    final int slot = findSlot(key);
+
+    return keys[slot] == EMPTY ? 0.0 : values[slot];
+  }
+
+  public boolean containsKey(final long key) {
+    return keys[findSlot(key)] != EMPTY;
+  }
+
+  // Returns true when the key was not present before
+  public boolean addTo(final long key, final double delta) {
+    checkArgument(key >= 0, "key must be >= 0");
+
+    final int slot = findSlot(key);
+
+    if (keys[slot] == EMPTY) {
+      keys[slot] = key;
+      values[slot] = delta;
+
+      if (++size > resizeThreshold) {
+        rehash(keys.length << 1);
+      }
+
+      return true;
+    }
+
+    values[slot] += delta;
+
+    return false;
+  }
+
+  public void put(final long key, final double value) {
+    checkArgument(key >= 0, "key must be >= 0");
+
+    final int slot = findSlot(key);
+
+    if (keys[slot] == EMPTY) {
+      keys[slot] = key;
+      values[slot] = value;
+
+      if (++size > resizeThreshold) {
+        rehash(keys.length << 1);
+      }
+
+      return;
+    }
+
+    values[slot] = value;
+  }
+
+  public void scaleValues(final double factor) {
+    for (int slot = 0; slot < keys.length; slot++) {
+      values[slot] *= factor;
+    }
+  }
+
+  public void forEach(final EntryConsumer consumer) {
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (keys[slot] != EMPTY) {
+        consumer.accept(keys[slot], values[slot]);
+      }
+    }
+  }
+
+  public interface EntryConsumer {
+
+    void accept(long key, double value);
+  }
+
+  private int findSlot(final long key) {
+    final int mask = keys.length - 1;
+    int slot = mix(key) & mask;
+
+    while (keys[slot] != EMPTY && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+
+    return slot;
+  }
+
+  private static int mix(final long key) {
+    final long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  private static int capacityFor(final int expectedSize) {
+    int capacity = 16;
+
+    while (capacity * LOAD_FACTOR < expectedSize) {
+      capacity <<= 1;
+    }
+
+    return capacity;
+  }
+
+  private void allocate(final int capacity) {
+    this.keys = new long[capacity];
+    this.values = new double[capacity];
+    this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    Arrays.fill(keys, EMPTY);
+  }
+
+  private void rehash(final int capacity) {
+    final long[] oldKeys = keys;
+    final double[] oldValues = values;
+
+    allocate(capacity);
+
+    for (int slot = 0; slot < oldKeys.length; slot++) {
+      if (oldKeys[slot] != EMPTY) {
+        final int newSlot = findSlot(oldKeys[slot]);
+        keys[newSlot] = oldKeys[slot];
+        values[newSlot] = oldValues[slot];
+      }
+    }
+  }
+}
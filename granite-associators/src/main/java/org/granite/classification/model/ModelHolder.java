@@ -0,0 +1,265 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.granite.classification.model.RebuildReport.Outcome;
+
+/**
+ * Publishes a model to concurrent readers and replaces it with models rebuilt in the
+ * background. Readers call {@link #get()} once per request and use that model throughout, which
+ * is lock-free and never observes a model part way through a swap. A rebuilt model is warmed up
+ * and validated before it is published; a model that fails either is dropped and the current
+ * model stays in place.
+ *
+ * <p>Published models are shared between threads and must not be changed afterwards, so
+ * updatable models are rejected. Compacted models are pruned by their builder before they
+ * are returned and are safe to publish.
+ */
+public class ModelHolder<V, M extends AssociationModel<V, ?>> implements AutoCloseable {
+
+  /**
+   * A published model and the generation of the rebuild that produced it. The initial model is
+   * generation zero.
+   */
+  public static class Snapshot<M> {
+
+    private final M model;
+    private final long generation;
+
+    Snapshot(final M model, final long generation) {
+      this.model = model;
+      this.generation = generation;
+    }
+
+    public M getModel() {
+      return model;
+    }
+
+    public long getGeneration() {
+      return generation;
+    }
+  }
+
+  private final AtomicReference<Snapshot<M>> snapshot;
+  private final AtomicLong generations = new AtomicLong();
+  private final Executor executor;
+  private final ExecutorService ownedExecutor;
+  private final ImmutableList<ScoringQuery<V>> warmUpQueries;
+  private final int warmUpRounds;
+  private final Predicate<? super M> validation;
+  private final List<Consumer<? super M>> swapListeners = new CopyOnWriteArrayList<>();
+  private volatile RebuildReport lastRebuildReport;
+  private long reportedGeneration = -1L;
+  private long notifiedGeneration;
+
+  private ModelHolder(
+      final M initialModel,
+      final Executor executor,
+      final ImmutableList<ScoringQuery<V>> warmUpQueries,
+      final int warmUpRounds,
+      final Predicate<? super M> validation) {
+    this.snapshot = new AtomicReference<>(new Snapshot<>(initialModel, 0L));
+    this.ownedExecutor = executor == null
+        ? Executors.newSingleThreadExecutor(runnable -> {
+          final Thread thread = new Thread(runnable, "granite-model-rebuild");
+          thread.setDaemon(true);
+          return thread;
+        })
+        : null;
+    this.executor = executor == null ? ownedExecutor : executor;
+    this.warmUpQueries = warmUpQueries;
+    this.warmUpRounds = warmUpRounds;
+    this.validation = validation;
+  }
+
+  public M get() {
+    return snapshot.get().getModel();
+  }
+
+  public Snapshot<M> getSnapshot() {
+    return snapshot.get();
+  }
+
+  // Report of the newest rebuild that has finished, or null before the first one finishes
+  public RebuildReport getLastRebuildReport() {
+    return lastRebuildReport;
+  }
+
+  // Called with each newly published model on the rebuilding thread, after readers can see it,
+  // in generation order. Listeners must not throw.
+  public void addSwapListener(final Consumer<? super M> swapListener) {
+    swapListeners.add(checkNotNull(swapListener, "swapListener"));
+  }
+
+  // Builds, warms up and validates a model on the executor, then publishes it unless a later
+  // rebuild was already published. The future completes with the report whatever the outcome.
+  public CompletableFuture<RebuildReport> rebuild(final Supplier<? extends M> modelBuilder) {
+    checkNotNull(modelBuilder, "modelBuilder");
+
+    final long generation = generations.incrementAndGet();
+
+    return CompletableFuture.supplyAsync(() -> rebuild(generation, modelBuilder), executor);
+  }
+
+  // Shuts down the rebuild thread the holder created, if any. Readers are unaffected.
+  @Override
+  public void close() {
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdown();
+    }
+  }
+
+  private RebuildReport rebuild(final long generation, final Supplier<? extends M> modelBuilder) {
+    final long startNanos = System.nanoTime();
+    long buildNanos = 0L;
+    long warmUpNanos = 0L;
+    long validationNanos = 0L;
+    M model = null;
+    Outcome outcome;
+    RuntimeException failure = null;
+
+    try {
+      model = checkNotNull(modelBuilder.get(), "modelBuilder returned null");
+
+      checkArgument(!model.isUpdatable(), "Updatable models cannot be published");
+
+      final long builtNanos = System.nanoTime();
+      buildNanos = builtNanos - startNanos;
+
+      warmUp(model);
+
+      final long warmedUpNanos = System.nanoTime();
+      warmUpNanos = warmedUpNanos - builtNanos;
+
+      final boolean valid = validation.test(model);
+      validationNanos = System.nanoTime() - warmedUpNanos;
+
+      if (!valid) {
+        outcome = Outcome.REJECTED;
+      } else if (publish(new Snapshot<>(model, generation))) {
+        outcome = Outcome.SWAPPED;
+      } else {
+        outcome = Outcome.SUPERSEDED;
+      }
+    } catch (RuntimeException e) {
+      outcome = Outcome.FAILED;
+      failure = e;
+    }
+
+    final RebuildReport report = new RebuildReport(
+        generation,
+        outcome,
+        buildNanos,
+        warmUpNanos,
+        validationNanos,
+        failure);
+
+    report(report, model);
+
+    return report;
+  }
+
+  // Rebuilds may finish out of order, so a report or swap older than one already seen is not
+  // passed on. Holding the lock while notifying keeps listeners from seeing swaps interleaved.
+  private synchronized void report(final RebuildReport report, final M model) {
+    if (report.getGeneration() > reportedGeneration) {
+      reportedGeneration = report.getGeneration();
+      lastRebuildReport = report;
+    }
+
+    if (report.isSwapped() && report.getGeneration() > notifiedGeneration) {
+      notifiedGeneration = report.getGeneration();
+
+      for (Consumer<? super M> swapListener : swapListeners) {
+        swapListener.accept(model);
+      }
+    }
+  }
+
+  // Scores the warm-up queries so lazily computed statistics are filled in and the scoring
+  // path is compiled before live traffic reaches the model
+  private void warmUp(final M model) {
+    for (int round = 0; round < warmUpRounds; round++) {
+      for (ScoringQuery<V> query : warmUpQueries) {
+        model.ensembleProbability(
+            query.getCandidateValues(),
+            query.getGivenAssociations(),
+            ProbabilityEnsembles.MEAN);
+      }
+    }
+  }
+
+  // Rebuilds may finish out of order, so an older generation never replaces a newer one
+  private boolean publish(final Snapshot<M> candidate) {
+    while (true) {
+      final Snapshot<M> current = snapshot.get();
+
+      if (current.getGeneration() > candidate.getGeneration()) {
+        return false;
+      }
+
+      if (snapshot.compareAndSet(current, candidate)) {
+        return true;
+      }
+    }
+  }
+
+  public static class Builder<V, M extends AssociationModel<V, ?>> {
+
+    private Executor executor;
+    private ImmutableList<ScoringQuery<V>> warmUpQueries = ImmutableList.of();
+    private int warmUpRounds = 1;
+    private Predicate<? super M> validation = model -> true;
+
+    public Builder() {
+
+    }
+
+    // Runs rebuilds on the given executor. By default the holder creates one daemon thread and
+    // shuts it down on close.
+    public Builder<V, M> withExecutor(final Executor executor) {
+      this.executor = checkNotNull(executor, "executor");
+      return this;
+    }
+
+    public Builder<V, M> withWarmUpQueries(
+        final List<ScoringQuery<V>> warmUpQueries,
+        final int warmUpRounds) {
+      checkArgument(warmUpRounds >= 0, "warmUpRounds must be >= 0");
+      this.warmUpQueries = ImmutableList.copyOf(checkNotNull(warmUpQueries, "warmUpQueries"));
+      this.warmUpRounds = warmUpRounds;
+      return this;
+    }
+
+    // A rebuilt model is only published when the validation accepts it
+    public Builder<V, M> withValidation(final Predicate<? super M> validation) {
+      this.validation = checkNotNull(validation, "validation");
+      return this;
+    }
+
+    public ModelHolder<V, M> build(final M initialModel) {
+      checkNotNull(initialModel, "initialModel");
+      checkArgument(!initialModel.isUpdatable(), "Updatable models cannot be published");
+
+      return new ModelHolder<>(
+          initialModel,
+          executor,
+          warmUpQueries,
+          warmUpRounds,
+          validation);
+    }
+  }
+}
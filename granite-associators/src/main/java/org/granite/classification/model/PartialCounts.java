@@ -0,0 +1,201 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Co-occurrence counts of one shard of training rows. Shards counted separately, in any number
+ * of processes, merge into the counts of all their rows: merging is associative, and merging
+ * shards in row order assigns the same value ids as counting every row at once. Decayed shards
+ * are expressed as of their latest row, so they are rescaled to the latest landmark of all the
+ * shards before their counts are added.
+ */
+public class PartialCounts<V> {
+
+  private final CooccurrenceTable<V> cooccurrenceTable;
+  private final double totalValueFrequency;
+  private final boolean strictAssociation;
+  private final ExponentialDecay decay;
+
+  public PartialCounts(
+      final CooccurrenceTable<V> cooccurrenceTable,
+      final double totalValueFrequency,
+      final boolean strictAssociation) {
+    this(cooccurrenceTable, totalValueFrequency, strictAssociation, null);
+  }
+
+  // Counts decayed as of the decay's landmark, or undecayed counts when the decay is null
+  public PartialCounts(
+      final CooccurrenceTable<V> cooccurrenceTable,
+      final double totalValueFrequency,
+      final boolean strictAssociation,
+      final ExponentialDecay decay) {
+    this.cooccurrenceTable = checkNotNull(cooccurrenceTable, "cooccurrenceTable");
+    this.totalValueFrequency = totalValueFrequency;
+    this.strictAssociation = strictAssociation;
+    this.decay = decay;
+
+    checkArgument(totalValueFrequency >= 0.0, "totalValueFrequency must be >= 0");
+  }
+
+  // Approximate sets are rejected: a merge would lose their error bound, and a pair kept by one
+  // shard but dropped by another would be undercounted, which the bound does not cover
+  public static <K extends Comparable<K>, V> PartialCounts<V> of(
+      final TrainingSet<K, V> trainingSet) {
+    checkNotNull(trainingSet, "trainingSet");
+    checkArgument(!trainingSet.isApproximate(), "Approximate counts cannot be partial counts");
+
+    return new PartialCounts<>(
+        trainingSet.getCooccurrenceTable(),
+        trainingSet.getTotalValueFrequency(),
+        trainingSet.isStrictAssociation(),
+        trainingSet.getDecay());
+  }
+
+  // Counts a shard without keeping its rows. Unlike a training set a shard may be empty.
+  public static <K extends Comparable<K>, V> PartialCounts<V> count(
+      final Iterator<TrainingRow<K, V>> trainingRowIterator,
+      final boolean strictAssociation) {
+    checkNotNull(trainingRowIterator, "trainingRowIterator");
+
+    final FrequencyCounter<V> frequencyCounter = new FrequencyCounter<>(strictAssociation);
+
+    while (trainingRowIterator.hasNext()) {
+      final TrainingRow<K, V> trainingRow = trainingRowIterator.next();
+
+      checkNotNull(trainingRow, "trainingRow").validate();
+
+      frequencyCounter.add(trainingRow.getValues());
+    }
+
+    return of(frequencyCounter, null);
+  }
+
+  // Merges the shards in the given order. Shards must be all decayed, with one half-life, or all
+  // undecayed.
+  public static <V> PartialCounts<V> merge(final Iterable<PartialCounts<V>> partialCounts) {
+    checkNotNull(partialCounts, "partialCounts");
+
+    final List<PartialCounts<V>> shards = new ArrayList<>();
+
+    for (PartialCounts<V> shard : partialCounts) {
+      shards.add(checkNotNull(shard, "partialCounts cannot contain a null"));
+    }
+
+    checkArgument(!shards.isEmpty(), "partialCounts cannot be empty");
+
+    final ExponentialDecay decay = latestDecay(shards);
+    FrequencyCounter<V> frequencyCounter = null;
+
+    for (PartialCounts<V> shard : shards) {
+      final FrequencyCounter<V> shardCounter = shard.toFrequencyCounter();
+
+      if (decay != null) {
+        final double decayFactor = shard.decay.decayFactor(decay.getLandmark());
+
+        // Shards too old to carry any weight would only add values with no frequency
+        if (decayFactor == 0.0) {
+          continue;
+        }
+
+        shardCounter.scale(decayFactor);
+      }
+
+      if (frequencyCounter == null) {
+        frequencyCounter = shardCounter;
+      } else {
+        frequencyCounter.merge(shardCounter);
+      }
+    }
+
+    return of(frequencyCounter, decay);
+  }
+
+  public PartialCounts<V> merge(final PartialCounts<V> other) {
+    checkNotNull(other, "other");
+
+    return merge(ImmutableList.of(this, other));
+  }
+
+  public CooccurrenceTable<V> getCooccurrenceTable() {
+    return cooccurrenceTable;
+  }
+
+  public double getTotalValueFrequency() {
+    return totalValueFrequency;
+  }
+
+  public boolean isStrictAssociation() {
+    return strictAssociation;
+  }
+
+  // Decay the counts are decayed as of, null when the counts are not decayed
+  public ExponentialDecay getDecay() {
+    return decay;
+  }
+
+  public boolean isDecayed() {
+    return decay != null;
+  }
+
+  public boolean isEmpty() {
+    return cooccurrenceTable.size() == 0;
+  }
+
+  // Counts-only training set for the model builders
+  public <K extends Comparable<K>> TrainingSet<K, V> toTrainingSet() {
+    checkState(!isEmpty(), "No training rows to build from!");
+
+    return new TrainingSet<>(
+        ImmutableList.of(),
+        cooccurrenceTable,
+        totalValueFrequency,
+        strictAssociation,
+        0.0,
+        decay);
+  }
+
+  private FrequencyCounter<V> toFrequencyCounter() {
+    return FrequencyCounter.of(cooccurrenceTable, totalValueFrequency, strictAssociation);
+  }
+
+  // Decay of the shards at the latest landmark among them, or null when they are not decayed
+  private static <V> ExponentialDecay latestDecay(final List<PartialCounts<V>> shards) {
+    final ExponentialDecay first = shards.get(0).decay;
+    ExponentialDecay latest = first;
+
+    for (PartialCounts<V> shard : shards) {
+      checkArgument((shard.decay == null) == (first == null),
+          "Cannot merge decayed and undecayed counts");
+
+      if (first == null) {
+        continue;
+      }
+
+      checkArgument(shard.decay.getHalfLife().toMillis() == first.getHalfLife().toMillis(),
+          "Cannot merge counts decayed with different half-lives");
+
+      if (shard.decay.getLandmark() > latest.getLandmark()) {
+        latest = shard.decay;
+      }
+    }
+
+    return latest;
+  }
+
+  private static <V> PartialCounts<V> of(
+      final FrequencyCounter<V> frequencyCounter,
+      final ExponentialDecay decay) {
+    return new PartialCounts<>(
+        frequencyCounter.toTable(),
+        frequencyCounter.getTotalValueFrequency(),
+        frequencyCounter.isStrictAssociation(),
+        decay);
+  }
+}
@@ -0,0 +1,10 @@
+package org.granite.classification.model;
+
+/**
+ * Combines the supporting probabilities of a value into one score, reading them from the first
+ * length slots of a primitive buffer. Implementations may reorder the buffer.
+ */
+public interface ProbabilityEnsemble {
+
+  double apply(double[] probabilities, int length);
+}
@@ -0,0 +1,152 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Built-in ensembles over primitive probability buffers. None of them allocate; order
+ * statistics are found with quickselect in O(n) rather than by sorting. Every ensemble scores
+ * an empty buffer as zero.
+ */
+public class ProbabilityEnsembles {
+
+  public static final ProbabilityEnsemble MEAN = (probabilities, length) -> {
+    double sum = 0.0;
+
+    for (int index = 0; index < length; index++) {
+      sum += probabilities[index];
+    }
+
+    return length == 0 ? 0.0 : sum / length;
+  };
+
+  public static final ProbabilityEnsemble MEDIAN = percentile(0.5);
+
+  public static final ProbabilityEnsemble MAX = (probabilities, length) -> {
+    double max = 0.0;
+
+    for (int index = 0; index < length; index++) {
+      max = Math.max(max, probabilities[index]);
+    }
+
+    return max;
+  };
+
+  public static final ProbabilityEnsemble PRODUCT = (probabilities, length) -> {
+    if (length == 0) {
+      return 0.0;
+    }
+
+    double product = 1.0;
+
+    for (int index = 0; index < length; index++) {
+      product *= probabilities[index];
+    }
+
+    return product;
+  };
+
+  // Linearly interpolated between the two closest ranks, so percentile(0.5) is the usual median
+  // of an even number of probabilities
+  public static ProbabilityEnsemble percentile(final double percentile) {
+    checkArgument(percentile >= 0.0 && percentile <= 1.0, "percentile is not in [0, 1]");
+
+    return (probabilities, length) -> {
+      if (length == 0) {
+        return 0.0;
+      }
+
+      final double rank = percentile * (length - 1);
+      final int lowerRank = (int) Math.floor(rank);
+      final double lower = select(probabilities, 0, length, lowerRank);
+
+      if (lowerRank == length - 1 || rank == lowerRank) {
+        return lower;
+      }
+
+      // Everything above the lower rank is now to its right, so the next rank is the minimum
+      // of that part
+      double upper = probabilities[lowerRank + 1];
+
+      for (int index = lowerRank + 2; index < length; index++) {
+        upper = Math.min(upper, probabilities[index]);
+      }
+
+      return lower + (rank - lowerRank) * (upper - lower);
+    };
+  }
+
+  // Mean after dropping the given fraction of the lowest and of the highest probabilities.
+  // Falls back to the median when nothing would be left.
+  public static ProbabilityEnsemble trimmedMean(final double trimFraction) {
+    checkArgument(trimFraction >= 0.0 && trimFraction < 0.5, "trimFraction is not in [0, 0.5)");
+
+    return (probabilities, length) -> {
+      final int trimmed = (int) (length * trimFraction);
+
+      if (length - 2 * trimmed <= 0) {
+        return MEDIAN.apply(probabilities, length);
+      }
+
+      if (trimmed > 0) {
+        select(probabilities, 0, length, trimmed);
+        select(probabilities, trimmed, length, length - trimmed - 1);
+      }
+
+      double sum = 0.0;
+
+      for (int index = trimmed; index < length - trimmed; index++) {
+        sum += probabilities[index];
+      }
+
+      return sum / (length - 2 * trimmed);
+    };
+  }
+
+  // Rearranges values[from, to) so the k-th smallest is at index k, with nothing larger to its
+  // left and nothing smaller to its right, and returns it
+  static double select(final double[] values, final int from, final int to, final int k) {
+    int left = from;
+    int right = to - 1;
+
+    while (left < right) {
+      final double pivot = medianOfThree(values[left], values[(left + right) >>> 1], values[right]);
+      int lower = left;
+      int upper = right;
+
+      while (lower <= upper) {
+        while (values[lower] < pivot) {
+          lower++;
+        }
+
+        while (values[upper] > pivot) {
+          upper--;
+        }
+
+        if (lower <= upper) {
+          swap(values, lower++, upper--);
+        }
+      }
+
+      if (k <= upper) {
+        right = upper;
+      } else if (k >= lower) {
+        left = lower;
+      } else {
+        break;
+      }
+    }
+
+    return values[k];
+  }
+
+  private static double medianOfThree(final double first, final double second,
+      final double third) {
+    return Math.max(Math.min(first, second), Math.min(Math.max(first, second), third));
+  }
+
+  private static void swap(final double[] values, final int first, final int second) {
+    final double swapped = values[first];
+    values[first] = values[second];
+    values[second] = swapped;
+  }
+}
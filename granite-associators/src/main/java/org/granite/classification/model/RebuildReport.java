@@ -0,0 +1,77 @@
+package org.granite.classification.model;
+
+/**
+ * Outcome and timings of one model rebuild. Stages after a failure or rejection are not run and
+ * report zero time.
+ */
+public class RebuildReport {
+
+  public enum Outcome {
+    // The model was published
+    SWAPPED,
+
+    // Validation rejected the model; the previous model stays published
+    REJECTED,
+
+    // Building, warming up or validating threw; see getFailure
+    FAILED,
+
+    // A later rebuild was published first, so this model was dropped
+    SUPERSEDED
+  }
+
+  private final long generation;
+  private final Outcome outcome;
+  private final long buildNanos;
+  private final long warmUpNanos;
+  private final long validationNanos;
+  private final RuntimeException failure;
+
+  public RebuildReport(
+      final long generation,
+      final Outcome outcome,
+      final long buildNanos,
+      final long warmUpNanos,
+      final long validationNanos,
+      final RuntimeException failure) {
+    this.generation = generation;
+    this.outcome = outcome;
+    this.buildNanos = buildNanos;
+    this.warmUpNanos = warmUpNanos;
+    this.validationNanos = validationNanos;
+    this.failure = failure;
+  }
+
+  public long getGeneration() {
+    return generation;
+  }
+
+  public Outcome getOutcome() {
+    return outcome;
+  }
+
+  public boolean isSwapped() {
+    return outcome == Outcome.SWAPPED;
+  }
+
+  public long getBuildNanos() {
+    return buildNanos;
+  }
+
+  public long getWarmUpNanos() {
+    return warmUpNanos;
+  }
+
+  public long getValidationNanos() {
+    return validationNanos;
+  }
+
+  public long getTotalNanos() {
+    return buildNanos + warmUpNanos + validationNanos;
+  }
+
+  // Null unless the outcome is FAILED
+  public RuntimeException getFailure() {
+    return failure;
+  }
+}
@@ -0,0 +1,30 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+
+/**
+ * One query of a scoring batch: the candidate values to score given a list of associations.
+ */
+public class ScoringQuery<V> {
+
+  private final ImmutableList<V> candidateValues;
+  private final ImmutableList<V> givenAssociations;
+
+  public ScoringQuery(final List<V> candidateValues, final List<V> givenAssociations) {
+    this.candidateValues = ImmutableList
+        .copyOf(checkNotNull(candidateValues, "candidateValues"));
+    this.givenAssociations = ImmutableList
+        .copyOf(checkNotNull(givenAssociations, "givenAssociations"));
+  }
+
+  public ImmutableList<V> getCandidateValues() {
+    return candidateValues;
+  }
+
+  public ImmutableList<V> getGivenAssociations() {
+    return givenAssociations;
+  }
+}
@@ -0,0 +1,134 @@
+package org.granite.classification.model;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Hash map that counts the calls that may modify it, so values derived from its contents can
+ * tell when they are stale. The views are read-only so every change goes through a counted
+ * method.
+ */
+class StampedHashMap<K, V> extends HashMap<K, V> {
+
+  private static final long serialVersionUID = 1L;
+
+  private long stamp;
+
+  long getStamp() {
+    return stamp;
+  }
+
+  @Override
+  public V put(final K key, final V value) {
+    stamp++;
+    return super.put(key, value);
+  }
+
+  @Override
+  public void putAll(final Map<? extends K, ? extends V> map) {
+    stamp++;
+    super.putAll(map);
+  }
+
+  @Override
+  public V remove(final Object key) {
+    stamp++;
+    return super.remove(key);
+  }
+
+  @Override
+  public boolean remove(final Object key, final Object value) {
+    stamp++;
+    return super.remove(key, value);
+  }
+
+  @Override
+  public void clear() {
+    stamp++;
+    super.clear();
+  }
+
+  @Override
+  public V putIfAbsent(final K key, final V value) {
+    stamp++;
+    return super.putIfAbsent(key, value);
+  }
+
+  @Override
+  public boolean replace(final K key, final V oldValue, final V newValue) {
+    stamp++;
+    return super.replace(key, oldValue, newValue);
+  }
+
+  @Override
+  public V replace(final K key, final V value) {
+    stamp++;
+    return super.replace(key, value);
+  }
+
+  @Override
+  public void replaceAll(final BiFunction<? super K, ? super V, ? extends V> function) {
+    stamp++;
+    super.replaceAll(function);
+  }
+
+  @Override
+  public V computeIfAbsent(
+      final K key,
+      final Function<? super K, ? extends V> mappingFunction) {
+    stamp++;
+    return super.computeIfAbsent(key, mappingFunction);
+  }
+
+  @Override
+  public V computeIfPresent(
+      final K key,
+      final BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    stamp++;
+    return super.computeIfPresent(key, remappingFunction);
+  }
+
+  @Override
+  public V compute(
+      final K key,
+      final BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    stamp++;
+    return super.compute(key, remappingFunction);
+  }
+
+  @Override
+  public V merge(
+      final K key,
+      final V value,
+      final BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+    stamp++;
+    return super.merge(key, value, remappingFunction);
+  }
+
+  @Override
+  public Set<K> keySet() {
+    return Collections.unmodifiableSet(super.keySet());
+  }
+
+  @Override
+  public Collection<V> values() {
+    return Collections.unmodifiableCollection(super.values());
+  }
+
+  // Entries are wrapped as well, as setValue on a plain entry would change the map uncounted
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    return Collections.unmodifiableMap(new AbstractMap<K, V>() {
+      @Override
+      public Set<Map.Entry<K, V>> entrySet() {
+        return StampedHashMap.super.entrySet();
+      }
+    }).entrySet();
+  }
+}
@@ -1,15 +1,22 @@
 package org.granite.classification.model;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
+import com.google.common.collect.ImmutableSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 public class TrainingRow<K extends Comparable<K>, V> implements Comparable<TrainingRow<K, V>> {
 
+  // Timestamp of a row that was never given one
+  public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
   private K id;
   private List<V> values = new ArrayList<>();
+  private long timestamp = NO_TIMESTAMP;
 
   TrainingRow() {
   }
@@ -31,6 +38,42 @@ public class TrainingRow<K extends Comparable<K>, V> implements Comparable<Train
     return values;
   }
 
+  // Epoch milliseconds the row was observed at, only read by decayed training. NO_TIMESTAMP
+  // when the row was never given one.
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public boolean hasTimestamp() {
+    return timestamp != NO_TIMESTAMP;
+  }
+
+  public TrainingRow<K, V> withTimestamp(final long timestamp) {
+    checkArgument(timestamp != NO_TIMESTAMP, "timestamp cannot be NO_TIMESTAMP");
+    this.timestamp = timestamp;
+    return this;
+  }
+
+  // Decayed training weighs rows by their age, so every row needs a timestamp
+  public void validateTimestamp() {
+    checkState(hasTimestamp(), "Training row %s has no timestamp", getId());
+  }
+
+  public void validate() {
+    final ImmutableSet<V> rowValues = ImmutableSet.copyOf(getValues());
+
+    checkState(rowValues.size() > 0, "Training row %s has no values",
+        getId());
+
+    checkState(rowValues.size() == getValues().size(),
+        "Training row %s contains duplicate values",
+        getId());
+
+    for (V value : rowValues) {
+      checkNotNull(value, "Training row %s contains a null", getId());
+    }
+  }
+
   @Override
   public int hashCode() {
     return getId().hashCode();
@@ -1,63 +1,161 @@
 package org.granite.classification.model;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
+import java.time.Duration;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import org.granite.classification.metrics.BuildPhase;
+import org.granite.classification.metrics.Metrics;
+import org.granite.classification.metrics.Timing;
 
 public class TrainingSet<K extends Comparable<K>, V> {
 
-  private final ImmutableMap<V, Double> valueFrequency;
-  private final ImmutableMap<V, ImmutableMap<V, Double>> valueToValueFrequency;
+  private final CooccurrenceTable<V> cooccurrenceTable;
   private final double totalValueFrequency;
+  private final boolean strictAssociation;
   private final ImmutableList<TrainingRow<K, V>> trainingRows;
+  private final double pairCountErrorBound;
+  private final ExponentialDecay decay;
+  private final WideRowStrategy wideRowStrategy;
+  private final WideRowReport wideRowReport;
 
   TrainingSet(
       final ImmutableList<TrainingRow<K, V>> trainingRows,
-      final ImmutableMap<V, Double> valueFrequency,
-      final ImmutableMap<V, ImmutableMap<V, Double>> valueToValueFrequency,
-      final double totalValueFrequency
+      final CooccurrenceTable<V> cooccurrenceTable,
+      final double totalValueFrequency,
+      final boolean strictAssociation
+  ) {
+    this(trainingRows, cooccurrenceTable, totalValueFrequency, strictAssociation, 0.0);
+  }
+
+  TrainingSet(
+      final ImmutableList<TrainingRow<K, V>> trainingRows,
+      final CooccurrenceTable<V> cooccurrenceTable,
+      final double totalValueFrequency,
+      final boolean strictAssociation,
+      final double pairCountErrorBound
+  ) {
+    this(trainingRows, cooccurrenceTable, totalValueFrequency, strictAssociation,
+        pairCountErrorBound, null);
+  }
+
+  TrainingSet(
+      final ImmutableList<TrainingRow<K, V>> trainingRows,
+      final CooccurrenceTable<V> cooccurrenceTable,
+      final double totalValueFrequency,
+      final boolean strictAssociation,
+      final double pairCountErrorBound,
+      final ExponentialDecay decay
+  ) {
+    this(trainingRows, cooccurrenceTable, totalValueFrequency, strictAssociation,
+        pairCountErrorBound, decay, WideRowStrategy.EXACT, WideRowReport.NONE);
+  }
+
+  TrainingSet(
+      final ImmutableList<TrainingRow<K, V>> trainingRows,
+      final CooccurrenceTable<V> cooccurrenceTable,
+      final double totalValueFrequency,
+      final boolean strictAssociation,
+      final double pairCountErrorBound,
+      final ExponentialDecay decay,
+      final WideRowStrategy wideRowStrategy,
+      final WideRowReport wideRowReport
   ) {
     this.trainingRows = checkNotNull(trainingRows, "trainingRows");
     this.totalValueFrequency = totalValueFrequency;
-    this.valueFrequency = checkNotNull(valueFrequency, "valueFrequency");
-    this.valueToValueFrequency = checkNotNull(valueToValueFrequency, "valueToValueFrequency");
+    this.strictAssociation = strictAssociation;
+    this.cooccurrenceTable = checkNotNull(cooccurrenceTable, "cooccurrenceTable");
+    this.pairCountErrorBound = pairCountErrorBound;
+    this.decay = decay;
+    this.wideRowStrategy = checkNotNull(wideRowStrategy, "wideRowStrategy");
+    this.wideRowReport = checkNotNull(wideRowReport, "wideRowReport");
 
   }
 
   public boolean isEmpty() {
-    return trainingRows.size() == 0;
+    return cooccurrenceTable.size() == 0;
   }
 
+  // Sets built from a stream of rows only keep their counts
+  public boolean isCountsOnly() {
+    return trainingRows.isEmpty() && !isEmpty();
+  }
+
+  public CooccurrenceTable<V> getCooccurrenceTable() {
+    return cooccurrenceTable;
+  }
+
+  // Materialized from the co-occurrence table on every call
   public ImmutableMap<V, Double> getValueFrequency() {
-    return valueFrequency;
+    return cooccurrenceTable.toValueFrequencyMap();
   }
 
+  // Materialized from the co-occurrence table on every call
   public ImmutableMap<V, ImmutableMap<V, Double>> getValueToValueFrequency() {
-    return valueToValueFrequency;
+    return cooccurrenceTable.toValueToValueFrequencyMap();
   }
 
   public double getTotalValueFrequency() {
     return totalValueFrequency;
   }
 
+  public boolean isStrictAssociation() {
+    return strictAssociation;
+  }
+
+  // How far an approximately counted pair count may be above the true count, zero when pairs
+  // were counted exactly
+  public double getPairCountErrorBound() {
+    return pairCountErrorBound;
+  }
+
+  public boolean isApproximate() {
+    return pairCountErrorBound > 0.0;
+  }
+
+  // Decay of a set built with decayed counting, whose counts are decayed as of the landmark,
+  // or null
+  public ExponentialDecay getDecay() {
+    return decay;
+  }
+
+  public boolean isDecayed() {
+    return decay != null;
+  }
+
+  // Strategy the rows were counted with, which updatable models keep counting new rows with
+  public WideRowStrategy getWideRowStrategy() {
+    return wideRowStrategy;
+  }
+
+  // Rows the wide row strategy did not count exactly
+  public WideRowReport getWideRowReport() {
+    return wideRowReport;
+  }
+
   public ImmutableList<TrainingRow<K, V>> getTrainingRows() {
     return trainingRows;
   }
 
   public static class Builder<K extends Comparable<K>, V> {
 
+    private static final int MINIMUM_PARALLEL_SPLIT = 1024;
+
     private Collection<TrainingRow<K, V>> trainingRows = ImmutableList.of();
     private boolean strictAssociation = false;
-    private double totalValueFrequency = 0.0;
-    private Map<V, Double> valueFrequency;
-    private Map<V, HashMap<V, Double>> valueToValueFrequency;
+    private int parallelism = 1;
+    private long sketchBytes = 0L;
+    private int pairsPerValue = 0;
+    private Duration halfLife;
+    private WideRowStrategy wideRowStrategy = WideRowStrategy.EXACT;
+    private FrequencyCounter<V> frequencyCounter;
 
     public Builder() {
 
@@ -71,6 +169,10 @@ public class TrainingSet<K extends Comparable<K>, V> {
       return strictAssociation;
     }
 
+    public int getParallelism() {
+      return parallelism;
+    }
+
     public Builder<K, V> withTrainingRows(final Collection<TrainingRow<K, V>> trainingRows) {
       this.trainingRows = trainingRows;
       return this;
@@ -81,103 +183,291 @@ public class TrainingSet<K extends Comparable<K>, V> {
       return this;
     }
 
+    // Number of threads used to count frequencies. Parallel counts are identical to
+    // sequential counts, including the value id order. Sampled wide rows add fractional pair
+    // weights whose sums depend on the order they are added in, so they are always counted
+    // sequentially.
+    public Builder<K, V> withParallelism(final int parallelism) {
+      checkArgument(parallelism >= 1, "parallelism must be >= 1");
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    public boolean isApproximateCounting() {
+      return pairsPerValue > 0;
+    }
+
+    // Counts pairs in a Count-Min sketch of the given size and keeps the pairsPerValue most
+    // frequent pairs of each value, so pair memory stays bounded for open-ended vocabularies.
+    // Value frequencies and row totals stay exact. Approximate counting is sequential.
+    public Builder<K, V> withApproximateCounting(final long sketchBytes, final int pairsPerValue) {
+      checkArgument(sketchBytes > 0L, "sketchBytes must be > 0");
+      checkArgument(pairsPerValue > 0, "pairsPerValue must be > 0");
+      this.sketchBytes = sketchBytes;
+      this.pairsPerValue = pairsPerValue;
+      return this;
+    }
+
+    public boolean isDecayedCounting() {
+      return halfLife != null;
+    }
+
+    // Weights each row by its timestamp so counts halve every halfLife, and expresses the
+    // counts as of the latest row. Decayed counting is sequential and cannot be approximate.
+    public Builder<K, V> withDecay(final Duration halfLife) {
+      checkNotNull(halfLife, "halfLife");
+      checkArgument(halfLife.toMillis() > 0L, "halfLife must be at least a millisecond");
+      this.halfLife = halfLife;
+      return this;
+    }
+
+    public WideRowStrategy getWideRowStrategy() {
+      return wideRowStrategy;
+    }
+
+    // Bounds the pairs counted in rows too wide to count exactly. Approximate counting keeps its
+    // own bound on pairs and cannot be combined with a wide row strategy.
+    public Builder<K, V> withWideRowStrategy(final WideRowStrategy wideRowStrategy) {
+      this.wideRowStrategy = checkNotNull(wideRowStrategy, "wideRowStrategy");
+      return this;
+    }
+
     public TrainingSet<K, V> build() {
+      checkCountingOptions();
+
+      final ImmutableList<TrainingRow<K, V>> rows = ImmutableList.copyOf(trainingRows);
+
+      final Timing validation = Metrics.beginPhase(BuildPhase.VALIDATE_TRAINING_ROWS);
+
       this.validateTrainingRows();
-      this.findValueFrequencies();
+
+      Metrics.endPhase(validation, BuildPhase.VALIDATE_TRAINING_ROWS, rows.size());
+
+      if (isApproximateCounting()) {
+        return buildApproximately(rows, rows.iterator());
+      }
+
+      if (isDecayedCounting()) {
+        return buildDecayed(rows, rows.iterator());
+      }
+
+      final Timing counting = Metrics.beginPhase(BuildPhase.FIND_VALUE_FREQUENCIES);
+
+      this.findValueFrequencies(rows);
+
+      Metrics.endPhase(counting, BuildPhase.FIND_VALUE_FREQUENCIES, rows.size());
 
       return new TrainingSet<K, V>(
-          ImmutableList.copyOf(trainingRows),
-          ImmutableMap.copyOf(valueFrequency),
-          createImmutableValueToValue(),
-          totalValueFrequency
+          rows,
+          frequencyCounter.toTable(),
+          frequencyCounter.getTotalValueFrequency(),
+          isStrictAssociation(),
+          0.0,
+          null,
+          wideRowStrategy,
+          frequencyCounter.getWideRowReport()
       );
     }
 
-    private ImmutableMap<V, ImmutableMap<V, Double>> createImmutableValueToValue() {
-      ImmutableMap.Builder<V, ImmutableMap<V, Double>> builder = ImmutableMap.builder();
+    // Validates and counts each row as it is read. Neither the rows nor their ids are kept, so the
+    // resulting set is counts-only and the input can be larger than the heap.
+    public TrainingSet<K, V> build(final Iterator<TrainingRow<K, V>> trainingRowIterator) {
+      checkNotNull(trainingRowIterator, "trainingRowIterator");
+      checkCountingOptions();
+
+      if (isApproximateCounting()) {
+        return buildApproximately(ImmutableList.of(), trainingRowIterator);
+      }
+
+      if (isDecayedCounting()) {
+        return buildDecayed(ImmutableList.of(), trainingRowIterator);
+      }
+
+      final Timing counting = Metrics.beginPhase(BuildPhase.FIND_VALUE_FREQUENCIES);
+
+      this.frequencyCounter = new FrequencyCounter<>(isStrictAssociation(), wideRowStrategy);
+      long rowCount = 0L;
 
-      for (Entry<V, HashMap<V, Double>> mapEntry : valueToValueFrequency.entrySet()) {
-        builder.put(mapEntry.getKey(), ImmutableMap.copyOf(mapEntry.getValue()));
+      while (trainingRowIterator.hasNext()) {
+        final TrainingRow<K, V> trainingRow = trainingRowIterator.next();
+
+        validateTrainingRow(trainingRow);
+
+        frequencyCounter.add(trainingRow.getValues());
+        rowCount++;
       }
 
-      return builder.build();
+      Metrics.endPhase(counting, BuildPhase.FIND_VALUE_FREQUENCIES, rowCount);
+
+      checkState(frequencyCounter.getTotalValueFrequency() > 0.0,
+          "No training rows to build from!");
+
+      return new TrainingSet<K, V>(
+          ImmutableList.of(),
+          frequencyCounter.toTable(),
+          frequencyCounter.getTotalValueFrequency(),
+          isStrictAssociation(),
+          0.0,
+          null,
+          wideRowStrategy,
+          frequencyCounter.getWideRowReport()
+      );
     }
 
-    private void validateTrainingRows() {
-      checkState(trainingRows.size() > 0, "No training rows to build from!");
+    public TrainingSet<K, V> build(final Stream<TrainingRow<K, V>> trainingRowStream) {
+      checkNotNull(trainingRowStream, "trainingRowStream");
 
-      for (TrainingRow<K, V> trainingRow : trainingRows) {
-        final ImmutableSet<V> rowValues = ImmutableSet.copyOf(trainingRow.getValues());
+      return build(trainingRowStream.iterator());
+    }
+
+    private TrainingSet<K, V> buildDecayed(
+        final ImmutableList<TrainingRow<K, V>> rows,
+        final Iterator<TrainingRow<K, V>> trainingRowIterator) {
+      this.frequencyCounter = new FrequencyCounter<>(isStrictAssociation(), wideRowStrategy);
+
+      final Timing counting = Metrics.beginPhase(BuildPhase.FIND_VALUE_FREQUENCIES);
+      ExponentialDecay decay = null;
+      long latestTimestamp = Long.MIN_VALUE;
+      long rowCount = 0L;
+
+      while (trainingRowIterator.hasNext()) {
+        final TrainingRow<K, V> trainingRow = trainingRowIterator.next();
+
+        validateTrainingRow(trainingRow);
+        trainingRow.validateTimestamp();
 
-        checkState(rowValues.size() > 0, "Training row %s has no values",
-            trainingRow.getId());
+        final long timestamp = trainingRow.getTimestamp();
 
-        checkState(rowValues.size() == trainingRow.getValues().size(),
-            "Training row %s contains duplicate values",
-            trainingRow.getId());
+        if (decay == null) {
+          decay = new ExponentialDecay(halfLife, timestamp);
+        } else if (decay.needsRescale(timestamp)) {
+          frequencyCounter.scale(decay.decayFactor(timestamp));
+          decay = decay.withLandmark(timestamp);
+        }
+
+        // Rows too old to carry any weight would only intern values with no frequency
+        final double weight = decay.weight(timestamp);
 
-        for (V value : rowValues) {
-          checkNotNull(value, "Training row %s contains a null", trainingRow.getId());
+        if (weight > 0.0) {
+          frequencyCounter.add(trainingRow.getValues(), weight);
+          latestTimestamp = Math.max(latestTimestamp, timestamp);
         }
 
+        rowCount++;
       }
 
+      checkState(frequencyCounter.getTotalValueFrequency() > 0.0,
+          "No training rows to build from!");
+
+      // Express the counts as of the latest row
+      frequencyCounter.scale(decay.decayFactor(latestTimestamp));
+
+      Metrics.endPhase(counting, BuildPhase.FIND_VALUE_FREQUENCIES, rowCount);
+
+      return new TrainingSet<K, V>(
+          rows,
+          frequencyCounter.toTable(),
+          frequencyCounter.getTotalValueFrequency(),
+          isStrictAssociation(),
+          0.0,
+          decay.withLandmark(latestTimestamp),
+          wideRowStrategy,
+          frequencyCounter.getWideRowReport()
+      );
     }
 
-    private void findValueFrequencies() {
-      this.valueFrequency = new HashMap<>();
-      this.valueToValueFrequency = new HashMap<>();
+    private TrainingSet<K, V> buildApproximately(
+        final ImmutableList<TrainingRow<K, V>> rows,
+        final Iterator<TrainingRow<K, V>> trainingRowIterator) {
+      final ApproximateFrequencyCounter<V> approximateCounter = new ApproximateFrequencyCounter<>(
+          isStrictAssociation(),
+          sketchBytes,
+          pairsPerValue);
 
-      this.totalValueFrequency = 0.0;
+      final Timing counting = Metrics.beginPhase(BuildPhase.FIND_VALUE_FREQUENCIES);
+      long rowCount = 0L;
 
-      // Find the frequency of all values and count the number of times the values
-      // appear alongside one another
-      for (TrainingRow<K, V> trainingRow : trainingRows) {
+      while (trainingRowIterator.hasNext()) {
+        final TrainingRow<K, V> trainingRow = trainingRowIterator.next();
 
-        for (int outerIndex = 0; outerIndex < trainingRow.getValues().size();
-            outerIndex++) {
+        validateTrainingRow(trainingRow);
 
-          final V outerValue = trainingRow.getValues().get(outerIndex);
+        approximateCounter.add(trainingRow.getValues());
+        rowCount++;
+      }
 
-          final double outerCount = valueFrequency.getOrDefault(outerValue, 0.0);
+      Metrics.endPhase(counting, BuildPhase.FIND_VALUE_FREQUENCIES, rowCount);
 
-          valueFrequency.put(outerValue, outerCount + 1.0);
+      checkState(approximateCounter.getTotalValueFrequency() > 0.0,
+          "No training rows to build from!");
 
-          this.totalValueFrequency += 1.0;
+      return new TrainingSet<K, V>(
+          rows,
+          approximateCounter.toTable(),
+          approximateCounter.getTotalValueFrequency(),
+          isStrictAssociation(),
+          approximateCounter.getErrorBound()
+      );
+    }
 
-          // Find value-to-value frequency (without strict association)
-          // eg. [1, 2, 3, 4]
-          // 4 -> {1:1, 2:1, 3:1, 4:1}
-          // 3 -> {1:1, 2:1, 3:1, 4:1}
-          // etc
+    private void checkCountingOptions() {
+      checkState(!isApproximateCounting() || !isDecayedCounting(),
+          "Decayed counting cannot be approximate");
+      checkState(!isApproximateCounting() || wideRowStrategy.equals(WideRowStrategy.EXACT),
+          "Approximate counting cannot use a wide row strategy");
+    }
 
-          // Find value-to-value frequency (with strict association)
-          // eg. [1, 2, 3, 4]
-          // 4 -> {1:1, 2:1, 3:1}
-          // 3 -> {1:1, 2:1, 4:1}
-          for (int innerIndex = 0; innerIndex <
-              trainingRow.getValues().size(); innerIndex++) {
+    private void validateTrainingRows() {
+      checkState(trainingRows.size() > 0, "No training rows to build from!");
 
-            if (isStrictAssociation() && innerIndex == outerIndex) {
-              continue;
-            }
+      for (TrainingRow<K, V> trainingRow : trainingRows) {
+        validateTrainingRow(trainingRow);
+      }
 
-            final V innerValue = trainingRow.getValues().get(innerIndex);
+    }
 
-            final HashMap<V, Double> associationMap = valueToValueFrequency
-                .computeIfAbsent(
-                    outerValue,
-                    key -> new HashMap<>());
+    private void validateTrainingRow(final TrainingRow<K, V> trainingRow) {
+      checkNotNull(trainingRow, "trainingRow").validate();
+    }
 
-            final double associationCount = associationMap
-                .getOrDefault(innerValue, 0.0);
+    private void findValueFrequencies(final ImmutableList<TrainingRow<K, V>> rows) {
+      if (parallelism > 1
+          && rows.size() >= 2 * MINIMUM_PARALLEL_SPLIT
+          && wideRowStrategy.getMode() != WideRowStrategy.Mode.SAMPLE) {
+        this.frequencyCounter = findValueFrequenciesInParallel(rows);
+        return;
+      }
 
-            associationMap.put(innerValue, associationCount + 1.0);
-          }
-        }
+      this.frequencyCounter = new FrequencyCounter<>(isStrictAssociation(), wideRowStrategy);
 
+      // Find the frequency of all values and count the number of times the values
+      // appear alongside one another
+      for (TrainingRow<K, V> trainingRow : rows) {
+        frequencyCounter.add(trainingRow.getValues());
       }
 
     }
+
+    private FrequencyCounter<V> findValueFrequenciesInParallel(
+        final ImmutableList<TrainingRow<K, V>> rows) {
+      // A few tasks per thread so uneven row widths still balance
+      final int splitThreshold = Math.max(
+          MINIMUM_PARALLEL_SPLIT,
+          rows.size() / (parallelism * 4));
+
+      final ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+
+      try {
+        return forkJoinPool.invoke(new FrequencyCountingTask<>(
+            rows,
+            0,
+            rows.size(),
+            splitThreshold,
+            isStrictAssociation(),
+            wideRowStrategy));
+      } finally {
+        forkJoinPool.shutdown();
+      }
+    }
   }
 }
@@ -0,0 +1,55 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Maps every distinct value to a dense int id in [0, size). Ids are assigned in the order values
+ * were first seen.
+ */
+public class ValueDictionary<V> {
+
+  public static final int UNKNOWN_ID = -1;
+
+  private final ImmutableList<V> values;
+  private final HashMap<V, Integer> ids;
+
+  public ValueDictionary(final List<V> values) {
+    this.values = ImmutableList.copyOf(checkNotNull(values, "values"));
+    this.ids = new HashMap<>(this.values.size() * 2);
+
+    for (int id = 0; id < this.values.size(); id++) {
+      ids.put(this.values.get(id), id);
+    }
+  }
+
+  public int size() {
+    return values.size();
+  }
+
+  public int getId(final V value) {
+    checkNotNull(value, "value");
+
+    final Integer id = ids.get(value);
+
+    return id == null ? UNKNOWN_ID : id;
+  }
+
+  public boolean contains(final V value) {
+    return getId(value) != UNKNOWN_ID;
+  }
+
+  public V getValue(final int id) {
+    checkElementIndex(id, values.size(), "id");
+
+    return values.get(id);
+  }
+
+  public ImmutableList<V> getValues() {
+    return values;
+  }
+}
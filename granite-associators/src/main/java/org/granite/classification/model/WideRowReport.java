@@ -0,0 +1,26 @@
+package org.granite.classification.model;
+
+/**
+ * How many rows a {@link WideRowStrategy} did not count exactly, and how many values capping
+ * dropped from them.
+ */
+public class WideRowReport {
+
+  public static final WideRowReport NONE = new WideRowReport(0L, 0L);
+
+  private final long limitedRows;
+  private final long truncatedValues;
+
+  public WideRowReport(final long limitedRows, final long truncatedValues) {
+    this.limitedRows = limitedRows;
+    this.truncatedValues = truncatedValues;
+  }
+
+  public long getLimitedRows() {
+    return limitedRows;
+  }
+
+  public long getTruncatedValues() {
+    return truncatedValues;
+  }
+}
@@ -0,0 +1,106 @@
+package org.granite.classification.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Objects;
+
+/**
+ * How pairs are counted in wide rows. Counting every pair of a row costs the square of its
+ * width, so a few very wide rows can dominate a build. Each strategy bounds the pairs counted
+ * per value, making counting linear in the total row length. Rows within the limit are counted
+ * exactly by every strategy.
+ */
+public class WideRowStrategy {
+
+  public enum Mode {
+    EXACT,
+
+    // Values pair only with values at most radius positions away, for ordered rows
+    WINDOW,
+
+    // Each value pairs with a random sample of the others, reweighted so row totals stay exact
+    // and every pair count is unbiased
+    SAMPLE,
+
+    // Values after the first maximumWidth are dropped from the row and reported as truncated
+    CAP
+  }
+
+  public static final WideRowStrategy EXACT =
+      new WideRowStrategy(Mode.EXACT, Integer.MAX_VALUE, 0L);
+
+  private final Mode mode;
+  private final int limit;
+  private final long seed;
+
+  private WideRowStrategy(final Mode mode, final int limit, final long seed) {
+    this.mode = mode;
+    this.limit = limit;
+    this.seed = seed;
+  }
+
+  public static WideRowStrategy window(final int radius) {
+    checkArgument(radius >= 1, "radius must be >= 1");
+    return new WideRowStrategy(Mode.WINDOW, radius, 0L);
+  }
+
+  // Samples are seeded by the seed and the row's values, so the pairs drawn do not depend on row
+  // order. Identical rows draw identical samples. Training sets count sampled rows sequentially,
+  // as the fractional pair weights would sum differently across threads.
+  public static WideRowStrategy sample(final int pairsPerValue, final long seed) {
+    checkArgument(pairsPerValue >= 1, "pairsPerValue must be >= 1");
+    return new WideRowStrategy(Mode.SAMPLE, pairsPerValue, seed);
+  }
+
+  public static WideRowStrategy cap(final int maximumWidth) {
+    checkArgument(maximumWidth >= 1, "maximumWidth must be >= 1");
+    return new WideRowStrategy(Mode.CAP, maximumWidth, 0L);
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  // The radius, pairs per value or maximum width, depending on the mode
+  public int getLimit() {
+    return limit;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  // Whether a row of the given width is not counted exactly
+  public boolean isLimited(final int width) {
+    switch (mode) {
+      case WINDOW:
+        return width - 1 > limit;
+      case SAMPLE:
+        return width - 1 > limit;
+      case CAP:
+        return width > limit;
+      default:
+        return false;
+    }
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (!(obj instanceof WideRowStrategy)) {
+      return false;
+    }
+
+    final WideRowStrategy other = (WideRowStrategy) obj;
+
+    return mode == other.mode && limit == other.limit && seed == other.seed;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(mode, limit, seed);
+  }
+}
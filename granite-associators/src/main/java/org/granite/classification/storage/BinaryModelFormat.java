@@ -0,0 +1,67 @@
+package org.granite.classification.storage;
+
+import com.google.common.hash.Hashing;
+
+// Layout of a binary model file. All numbers are big-endian.
+//
+// header:   magic, version, model type, value count, pair count, value slot count (ints),
+//           total value frequency (double), then an (offset, length) pair of longs per section
+// sections: each starts on an 8 byte boundary, see Section for contents
+final class BinaryModelFormat {
+
+  static final int MAGIC = 0x47524D4C;
+  static final int VERSION = 1;
+
+  static final int FREQUENCY_MODEL = 0;
+  static final int BAYES_MODEL = 1;
+
+  // A section is mapped as a single buffer, so it cannot exceed 2GB
+  static final long MAXIMUM_SECTION_BYTES = Integer.MAX_VALUE;
+
+  enum Section {
+    // int[valueCount + 1], offsets of each encoded value in VALUE_BYTES
+    VALUE_OFFSETS,
+    // encoded values back to back
+    VALUE_BYTES,
+    // int[slotCount], open addressing table of id + 1 by value hash, 0 when empty
+    VALUE_SLOTS,
+    // double[valueCount] each
+    FREQUENCIES,
+    PROBABILITIES,
+    LIKELIHOODS,
+    ASSOCIATION_FREQUENCIES,
+    // int[valueCount + 1], start of each value's row in the pair sections
+    ROW_OFFSETS,
+    // int[pairCount], associated value ids, sorted within each row
+    COLUMNS,
+    // double[pairCount], P(associatedValue : value)
+    ASSOCIATED_PROBABILITIES,
+    // double[pairCount], P(value : associatedValue), empty for frequency models
+    POSTERIORS
+  }
+
+  static final int HEADER_BYTES =
+      6 * Integer.BYTES + Double.BYTES + Section.values().length * 2 * Long.BYTES;
+
+  private BinaryModelFormat() {
+  }
+
+  static int hash(final byte[] encodedValue) {
+    return Hashing.murmur3_32().hashBytes(encodedValue).asInt();
+  }
+
+  // Power of two with at most half of the slots used
+  static int slotCount(final int valueCount) {
+    int slotCount = 2;
+
+    while (slotCount < valueCount * 2L) {
+      slotCount <<= 1;
+    }
+
+    return slotCount;
+  }
+
+  static long align(final long position) {
+    return (position + 7L) & ~7L;
+  }
+}
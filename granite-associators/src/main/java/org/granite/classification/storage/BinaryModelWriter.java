@@ -0,0 +1,85 @@
+package org.granite.classification.storage;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.granite.classification.model.AssociationModel;
+import org.granite.classification.model.AssociationStatistics;
+import org.granite.classification.storage.BinaryModelFormat.Section;
+import org.granite.classification.storage.EncodedModel.SectionOutput;
+
+/**
+ * Writes a frequency or Bayes model in the binary format read by {@link MappedAssociationModel}.
+ */
+public class BinaryModelWriter {
+
+  public static <V, S extends AssociationStatistics<V>> void write(
+      final AssociationModel<V, S> model,
+      final ValueCodec<V> valueCodec,
+      final Path path
+  ) throws IOException {
+    checkNotNull(path, "path");
+
+    final EncodedModel encodedModel = new EncodedModel(model, valueCodec);
+
+    final Section[] sections = Section.values();
+    final long[] offsets = new long[sections.length];
+    long position = BinaryModelFormat.align(BinaryModelFormat.HEADER_BYTES);
+
+    for (Section section : sections) {
+      offsets[section.ordinal()] = position;
+      position = BinaryModelFormat.align(position + encodedModel.getSectionLength(section));
+    }
+
+    // Counted separately because DataOutputStream.size() stops at 2GB
+    try (CountingOutputStream countingOutput = new CountingOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        DataOutputStream output = new DataOutputStream(countingOutput)) {
+
+      output.writeInt(BinaryModelFormat.MAGIC);
+      output.writeInt(BinaryModelFormat.VERSION);
+      output.writeInt(encodedModel.isBayes()
+          ? BinaryModelFormat.BAYES_MODEL
+          : BinaryModelFormat.FREQUENCY_MODEL);
+      output.writeInt(encodedModel.getValueCount());
+      output.writeInt(encodedModel.getPairCount());
+      output.writeInt(encodedModel.getSlotCount());
+      output.writeDouble(encodedModel.getTotalValueFrequency());
+
+      for (Section section : sections) {
+        output.writeLong(offsets[section.ordinal()]);
+        output.writeLong(encodedModel.getSectionLength(section));
+      }
+
+      final SectionOutput sectionOutput = new SectionOutput() {
+        @Override
+        public void putInt(final int value) throws IOException {
+          output.writeInt(value);
+        }
+
+        @Override
+        public void putDouble(final double value) throws IOException {
+          output.writeDouble(value);
+        }
+
+        @Override
+        public void putBytes(final byte[] bytes) throws IOException {
+          output.write(bytes);
+        }
+      };
+
+      for (Section section : sections) {
+        while (countingOutput.getCount() < offsets[section.ordinal()]) {
+          output.writeByte(0);
+        }
+
+        encodedModel.writeSection(section, sectionOutput);
+      }
+    }
+  }
+}
@@ -0,0 +1,289 @@
+package org.granite.classification.storage;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.granite.classification.bayes.BayesAssociationStatistics;
+import org.granite.classification.bayes.BayesModel;
+import org.granite.classification.model.AssociationModel;
+import org.granite.classification.model.AssociationStatistics;
+import org.granite.classification.storage.BinaryModelFormat.Section;
+
+// A model flattened into the arrays of the binary format, ready to be written to a file or
+// copied into buffers
+final class EncodedModel {
+
+  private final boolean bayes;
+  private final double totalValueFrequency;
+  private final int valueCount;
+  private final int pairCount;
+  private final byte[][] encodedValues;
+  private final int[] valueOffsets;
+  private final int[] valueSlots;
+  private final double[] frequencies;
+  private final double[] probabilities;
+  private final double[] likelihoods;
+  private final double[] associationFrequencies;
+  private final int[] rowOffsets;
+  private final int[] columns;
+  private final double[] associatedProbabilities;
+  private final double[] posteriors;
+
+  <V, S extends AssociationStatistics<V>> EncodedModel(
+      final AssociationModel<V, S> model,
+      final ValueCodec<V> valueCodec
+  ) {
+    checkNotNull(model, "model");
+    checkNotNull(valueCodec, "valueCodec");
+
+    this.bayes = model instanceof BayesModel;
+    this.totalValueFrequency = model.getTotalValueFrequency();
+
+    final Map<V, S> associationStatisticsMap = model.getAssociationStatisticsMap();
+
+    final List<V> values = new ArrayList<>(associationStatisticsMap.keySet());
+    this.valueCount = values.size();
+    final HashMap<V, Integer> ids = new HashMap<>(valueCount * 2);
+
+    for (int id = 0; id < valueCount; id++) {
+      ids.put(values.get(id), id);
+    }
+
+    // Value dictionary and its hash index
+    this.encodedValues = new byte[valueCount][];
+    this.valueOffsets = new int[valueCount + 1];
+    this.valueSlots = new int[BinaryModelFormat.slotCount(valueCount)];
+
+    final int slotMask = valueSlots.length - 1;
+
+    for (int id = 0; id < valueCount; id++) {
+      encodedValues[id] = checkNotNull(valueCodec.encode(values.get(id)), "encoded value");
+
+      checkState((long) valueOffsets[id] + encodedValues[id].length
+              <= BinaryModelFormat.MAXIMUM_SECTION_BYTES,
+          "Encoded values exceed the maximum section size");
+
+      valueOffsets[id + 1] = valueOffsets[id] + encodedValues[id].length;
+
+      int slot = BinaryModelFormat.hash(encodedValues[id]) & slotMask;
+
+      while (valueSlots[slot] != 0) {
+        slot = (slot + 1) & slotMask;
+      }
+
+      valueSlots[slot] = id + 1;
+    }
+
+    // Per-value statistics and sparse association rows
+    this.frequencies = new double[valueCount];
+    this.probabilities = new double[valueCount];
+    this.likelihoods = new double[valueCount];
+    this.associationFrequencies = new double[valueCount];
+    this.rowOffsets = new int[valueCount + 1];
+
+    for (int id = 0; id < valueCount; id++) {
+      final S statistics = associationStatisticsMap.get(values.get(id));
+
+      frequencies[id] = statistics.getFrequency();
+      probabilities[id] = statistics.getProbability();
+      likelihoods[id] = statistics.getLikelihood();
+      associationFrequencies[id] = statistics.getAssociationFrequency();
+
+      checkState(
+          (long) rowOffsets[id] + statistics.getAssociatedValueProbabilities().size()
+              <= BinaryModelFormat.MAXIMUM_SECTION_BYTES / Double.BYTES,
+          "Association rows exceed the maximum section size");
+
+      rowOffsets[id + 1] = rowOffsets[id] + statistics.getAssociatedValueProbabilities().size();
+    }
+
+    this.pairCount = rowOffsets[valueCount];
+    this.columns = new int[pairCount];
+    this.associatedProbabilities = new double[pairCount];
+    this.posteriors = new double[bayes ? pairCount : 0];
+
+    for (int id = 0; id < valueCount; id++) {
+      final S statistics = associationStatisticsMap.get(values.get(id));
+
+      int index = rowOffsets[id];
+
+      for (V associatedValue : statistics.getAssociatedValueProbabilities().keySet()) {
+        final Integer associatedId = ids.get(associatedValue);
+
+        checkState(associatedId != null, "Associated value %s is not in the model",
+            associatedValue);
+
+        columns[index++] = associatedId;
+      }
+
+      Arrays.sort(columns, rowOffsets[id], rowOffsets[id + 1]);
+
+      for (index = rowOffsets[id]; index < rowOffsets[id + 1]; index++) {
+        final V associatedValue = values.get(columns[index]);
+
+        associatedProbabilities[index] = statistics.getAssociatedValueProbabilities()
+            .get(associatedValue);
+
+        if (bayes) {
+          posteriors[index] = ((BayesAssociationStatistics<V>) statistics)
+              .getAssociatedValuePosteriorProbabilities()
+              .getOrDefault(associatedValue, 0.0);
+        }
+      }
+    }
+  }
+
+  boolean isBayes() {
+    return bayes;
+  }
+
+  double getTotalValueFrequency() {
+    return totalValueFrequency;
+  }
+
+  int getValueCount() {
+    return valueCount;
+  }
+
+  int getPairCount() {
+    return pairCount;
+  }
+
+  int getSlotCount() {
+    return valueSlots.length;
+  }
+
+  long getSectionLength(final Section section) {
+    switch (section) {
+      case VALUE_OFFSETS:
+        return (long) valueOffsets.length * Integer.BYTES;
+      case VALUE_BYTES:
+        return valueOffsets[valueCount];
+      case VALUE_SLOTS:
+        return (long) valueSlots.length * Integer.BYTES;
+      case FREQUENCIES:
+      case PROBABILITIES:
+      case LIKELIHOODS:
+      case ASSOCIATION_FREQUENCIES:
+        return (long) valueCount * Double.BYTES;
+      case ROW_OFFSETS:
+        return (long) rowOffsets.length * Integer.BYTES;
+      case COLUMNS:
+        return (long) pairCount * Integer.BYTES;
+      case ASSOCIATED_PROBABILITIES:
+        return (long) pairCount * Double.BYTES;
+      case POSTERIORS:
+        return (long) posteriors.length * Double.BYTES;
+      default:
+        throw new IllegalArgumentException("Unknown section " + section);
+    }
+  }
+
+  void writeSection(final Section section, final SectionOutput output) throws IOException {
+    switch (section) {
+      case VALUE_OFFSETS:
+        writeInts(output, valueOffsets);
+        break;
+      case VALUE_BYTES:
+        for (byte[] encodedValue : encodedValues) {
+          output.putBytes(encodedValue);
+        }
+        break;
+      case VALUE_SLOTS:
+        writeInts(output, valueSlots);
+        break;
+      case FREQUENCIES:
+        writeDoubles(output, frequencies);
+        break;
+      case PROBABILITIES:
+        writeDoubles(output, probabilities);
+        break;
+      case LIKELIHOODS:
+        writeDoubles(output, likelihoods);
+        break;
+      case ASSOCIATION_FREQUENCIES:
+        writeDoubles(output, associationFrequencies);
+        break;
+      case ROW_OFFSETS:
+        writeInts(output, rowOffsets);
+        break;
+      case COLUMNS:
+        writeInts(output, columns);
+        break;
+      case ASSOCIATED_PROBABILITIES:
+        writeDoubles(output, associatedProbabilities);
+        break;
+      case POSTERIORS:
+        writeDoubles(output, posteriors);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown section " + section);
+    }
+  }
+
+  // Copies every section into its own direct buffer outside the heap
+  ByteBuffer[] toDirectBuffers() {
+    final ByteBuffer[] sections = new ByteBuffer[Section.values().length];
+
+    for (Section section : Section.values()) {
+      final ByteBuffer buffer = ByteBuffer
+          .allocateDirect((int) getSectionLength(section));
+
+      try {
+        writeSection(section, new SectionOutput() {
+          @Override
+          public void putInt(final int value) {
+            buffer.putInt(value);
+          }
+
+          @Override
+          public void putDouble(final double value) {
+            buffer.putDouble(value);
+          }
+
+          @Override
+          public void putBytes(final byte[] bytes) {
+            buffer.put(bytes);
+          }
+        });
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+
+      buffer.flip();
+      sections[section.ordinal()] = buffer;
+    }
+
+    return sections;
+  }
+
+  interface SectionOutput {
+
+    void putInt(final int value) throws IOException;
+
+    void putDouble(final double value) throws IOException;
+
+    void putBytes(final byte[] bytes) throws IOException;
+  }
+
+  private static void writeInts(final SectionOutput output, final int[] values)
+      throws IOException {
+    for (int value : values) {
+      output.putInt(value);
+    }
+  }
+
+  private static void writeDoubles(final SectionOutput output, final double[] values)
+      throws IOException {
+    for (double value : values) {
+      output.putDouble(value);
+    }
+  }
+}
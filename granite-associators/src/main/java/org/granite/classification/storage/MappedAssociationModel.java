@@ -0,0 +1,147 @@
+package org.granite.classification.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.granite.classification.model.AssociationModel;
+import org.granite.classification.model.AssociationStatistics;
+
+/**
+ * Frequency or Bayes model served straight from buffers outside the heap: either a memory-mapped
+ * file written by {@link BinaryModelWriter} or direct buffers filled by {@link #copyOf}. Opening a
+ * file does not read the model into the heap, and processes mapping the same file share its
+ * pages. The statistics map is a read-only view that decodes on access.
+ */
+public class MappedAssociationModel<V> extends AssociationModel<V, AssociationStatistics<V>> {
+
+  private final MappedModelData<V> modelData;
+
+  private MappedAssociationModel(final MappedModelData<V> modelData) {
+    super(modelData.getTotalValueFrequency(), new MappedStatisticsMap<>(modelData));
+    this.modelData = modelData;
+  }
+
+  public static <V> MappedAssociationModel<V> open(
+      final Path path,
+      final ValueCodec<V> valueCodec
+  ) throws IOException {
+    return new MappedAssociationModel<>(MappedModelData.open(path, valueCodec));
+  }
+
+  // Copies a model into direct buffers so heap usage and old-gen collections no longer grow with
+  // the number of associations. The source model can be discarded afterwards.
+  public static <V, S extends AssociationStatistics<V>> MappedAssociationModel<V> copyOf(
+      final AssociationModel<V, S> model,
+      final ValueCodec<V> valueCodec
+  ) {
+    return new MappedAssociationModel<>(
+        MappedModelData.offHeap(new EncodedModel(model, valueCodec), valueCodec));
+  }
+
+  public boolean isBayes() {
+    return modelData.isBayes();
+  }
+
+  public int getPairCount() {
+    return modelData.getPairCount();
+  }
+
+  @Override
+  public Map<V, Double> supportingProbabilities(final V value, final List<V> givenAssociations) {
+    checkNotNull(value, "value");
+    checkNotNull(givenAssociations, "givenAssociations");
+
+    final int id = modelData.findId(value);
+
+    if (id < 0 || givenAssociations.isEmpty()) {
+      return ImmutableMap.of();
+    }
+
+    final HashMap<V, Double> results = new HashMap<>();
+
+    for (V associatedValue : givenAssociations) {
+      checkNotNull(associatedValue, "givenAssociations cannot contain a null");
+
+      final int associatedId = modelData.findId(associatedValue);
+
+      results.put(
+          associatedValue,
+          associatedId < 0 ? 0.0 : supportingProbability(id, associatedId));
+    }
+
+    return results;
+  }
+
+  @Override
+  public int supportingProbabilities(
+      final V value,
+      final List<V> givenAssociations,
+      final double[] probabilities) {
+    checkNotNull(value, "value");
+    checkNotNull(givenAssociations, "givenAssociations");
+    checkNotNull(probabilities, "probabilities");
+    checkArgument(probabilities.length >= givenAssociations.size(),
+        "Buffer holds %s probabilities but %s associations were given",
+        probabilities.length, givenAssociations.size());
+
+    final int id = modelData.findId(value);
+
+    if (id < 0) {
+      return 0;
+    }
+
+    final Set<V> repeatTracker = repeatTracker(givenAssociations);
+    int length = 0;
+
+    for (int index = 0; index < givenAssociations.size(); index++) {
+      final int associatedId = modelData.findId(checkNotNull(givenAssociations.get(index),
+          "givenAssociations cannot contain a null"));
+
+      if (!isRepeated(givenAssociations, index, repeatTracker)) {
+        probabilities[length++] =
+            associatedId < 0 ? 0.0 : supportingProbability(id, associatedId);
+      }
+    }
+
+    return length;
+  }
+
+  // Resolves ids directly rather than through the decoded statistics
+  @Override
+  public double supportingProbability(
+      final V value,
+      final AssociationStatistics<V> valueStatistics,
+      final V associatedValue,
+      final AssociationStatistics<V> associatedValueStatistics) {
+    final int id = modelData.findId(value);
+    final int associatedId = modelData.findId(associatedValue);
+
+    return id < 0 || associatedId < 0 ? 0.0 : supportingProbability(id, associatedId);
+  }
+
+  private double supportingProbability(final int id, final int associatedId) {
+    if (modelData.isBayes()) {
+      // P(value : associatedValue) from the value's posterior row
+      final int index = modelData.findPair(id, associatedId);
+
+      return index < 0 ? 0.0 : modelData.getPosterior(index);
+    }
+
+    // Same as FrequencyModel: P(value) * P(associatedValue) / P(value : associatedValue)
+    final int index = modelData.findPair(associatedId, id);
+
+    if (index < 0) {
+      return 0.0;
+    }
+
+    return (modelData.getProbability(id) * modelData.getProbability(associatedId))
+        / modelData.getAssociatedProbability(index);
+  }
+}
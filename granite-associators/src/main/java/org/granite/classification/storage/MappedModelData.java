@@ -0,0 +1,292 @@
+package org.granite.classification.storage;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.granite.classification.bayes.BayesAssociationStatistics;
+import org.granite.classification.model.AssociationStatistics;
+import org.granite.classification.model.ValueDictionary;
+import org.granite.classification.storage.BinaryModelFormat.Section;
+
+// Read-only views over the sections of a binary model, mapped from a file or held in direct
+// buffers
+final class MappedModelData<V> {
+
+  private final ValueCodec<V> valueCodec;
+  private final boolean bayes;
+  private final int valueCount;
+  private final int pairCount;
+  private final int slotMask;
+  private final double totalValueFrequency;
+  private final IntBuffer valueOffsets;
+  private final ByteBuffer valueBytes;
+  private final IntBuffer valueSlots;
+  private final DoubleBuffer frequencies;
+  private final DoubleBuffer probabilities;
+  private final DoubleBuffer likelihoods;
+  private final DoubleBuffer associationFrequencies;
+  private final IntBuffer rowOffsets;
+  private final IntBuffer columns;
+  private final DoubleBuffer associatedProbabilities;
+  private final DoubleBuffer posteriors;
+
+  private MappedModelData(
+      final ValueCodec<V> valueCodec,
+      final boolean bayes,
+      final int valueCount,
+      final int pairCount,
+      final int slotCount,
+      final double totalValueFrequency,
+      final ByteBuffer[] sections
+  ) {
+    this.valueCodec = checkNotNull(valueCodec, "valueCodec");
+    this.bayes = bayes;
+    this.valueCount = valueCount;
+    this.pairCount = pairCount;
+    this.slotMask = slotCount - 1;
+    this.totalValueFrequency = totalValueFrequency;
+
+    this.valueOffsets = sections[Section.VALUE_OFFSETS.ordinal()].asIntBuffer();
+    this.valueBytes = sections[Section.VALUE_BYTES.ordinal()];
+    this.valueSlots = sections[Section.VALUE_SLOTS.ordinal()].asIntBuffer();
+    this.frequencies = sections[Section.FREQUENCIES.ordinal()].asDoubleBuffer();
+    this.probabilities = sections[Section.PROBABILITIES.ordinal()].asDoubleBuffer();
+    this.likelihoods = sections[Section.LIKELIHOODS.ordinal()].asDoubleBuffer();
+    this.associationFrequencies = sections[Section.ASSOCIATION_FREQUENCIES.ordinal()]
+        .asDoubleBuffer();
+    this.rowOffsets = sections[Section.ROW_OFFSETS.ordinal()].asIntBuffer();
+    this.columns = sections[Section.COLUMNS.ordinal()].asIntBuffer();
+    this.associatedProbabilities = sections[Section.ASSOCIATED_PROBABILITIES.ordinal()]
+        .asDoubleBuffer();
+    this.posteriors = sections[Section.POSTERIORS.ordinal()].asDoubleBuffer();
+
+    checkState(valueOffsets.limit() == valueCount + 1, "Value offsets do not match value count");
+    checkState(valueSlots.limit() == slotCount, "Value slots do not match slot count");
+    checkState(rowOffsets.limit() == valueCount + 1, "Row offsets do not match value count");
+    checkState(columns.limit() == pairCount, "Columns do not match pair count");
+    checkState(!bayes || posteriors.limit() == pairCount, "Posteriors do not match pair count");
+  }
+
+  // Mappings stay valid after the channel is closed
+  static <V> MappedModelData<V> open(final Path path, final ValueCodec<V> valueCodec)
+      throws IOException {
+    checkNotNull(path, "path");
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      checkState(channel.size() >= BinaryModelFormat.HEADER_BYTES, "File is too small");
+
+      final MappedByteBuffer header = channel
+          .map(MapMode.READ_ONLY, 0, BinaryModelFormat.HEADER_BYTES);
+
+      checkState(header.getInt() == BinaryModelFormat.MAGIC, "Not a binary model file");
+
+      final int version = header.getInt();
+
+      checkState(version == BinaryModelFormat.VERSION, "Unsupported model file version %s",
+          version);
+
+      final int modelType = header.getInt();
+
+      checkState(modelType == BinaryModelFormat.FREQUENCY_MODEL
+          || modelType == BinaryModelFormat.BAYES_MODEL, "Unknown model type %s", modelType);
+
+      final int valueCount = header.getInt();
+      final int pairCount = header.getInt();
+      final int slotCount = header.getInt();
+      final double totalValueFrequency = header.getDouble();
+
+      final ByteBuffer[] sections = new ByteBuffer[Section.values().length];
+
+      for (int section = 0; section < sections.length; section++) {
+        final long offset = header.getLong();
+        final long length = header.getLong();
+
+        checkState(offset + length <= channel.size(), "Section %s is truncated",
+            Section.values()[section]);
+
+        sections[section] = channel.map(MapMode.READ_ONLY, offset, length);
+      }
+
+      return new MappedModelData<>(
+          valueCodec,
+          modelType == BinaryModelFormat.BAYES_MODEL,
+          valueCount,
+          pairCount,
+          slotCount,
+          totalValueFrequency,
+          sections);
+    }
+  }
+
+  static <V> MappedModelData<V> offHeap(
+      final EncodedModel encodedModel,
+      final ValueCodec<V> valueCodec) {
+    checkNotNull(encodedModel, "encodedModel");
+
+    return new MappedModelData<>(
+        valueCodec,
+        encodedModel.isBayes(),
+        encodedModel.getValueCount(),
+        encodedModel.getPairCount(),
+        encodedModel.getSlotCount(),
+        encodedModel.getTotalValueFrequency(),
+        encodedModel.toDirectBuffers());
+  }
+
+  boolean isBayes() {
+    return bayes;
+  }
+
+  int getValueCount() {
+    return valueCount;
+  }
+
+  int getPairCount() {
+    return pairCount;
+  }
+
+  double getTotalValueFrequency() {
+    return totalValueFrequency;
+  }
+
+  int findId(final V value) {
+    final byte[] encodedValue = valueCodec.encode(value);
+
+    int slot = BinaryModelFormat.hash(encodedValue) & slotMask;
+
+    while (true) {
+      final int slotValue = valueSlots.get(slot);
+
+      if (slotValue == 0) {
+        return ValueDictionary.UNKNOWN_ID;
+      }
+
+      if (encodedValueEquals(slotValue - 1, encodedValue)) {
+        return slotValue - 1;
+      }
+
+      slot = (slot + 1) & slotMask;
+    }
+  }
+
+  V getValue(final int id) {
+    final byte[] encodedValue = new byte[valueOffsets.get(id + 1) - valueOffsets.get(id)];
+
+    for (int index = 0; index < encodedValue.length; index++) {
+      encodedValue[index] = valueBytes.get(valueOffsets.get(id) + index);
+    }
+
+    return valueCodec.decode(encodedValue);
+  }
+
+  double getFrequency(final int id) {
+    return frequencies.get(id);
+  }
+
+  double getProbability(final int id) {
+    return probabilities.get(id);
+  }
+
+  double getLikelihood(final int id) {
+    return likelihoods.get(id);
+  }
+
+  double getAssociationFrequency(final int id) {
+    return associationFrequencies.get(id);
+  }
+
+  int getRowStart(final int id) {
+    return rowOffsets.get(id);
+  }
+
+  int getRowEnd(final int id) {
+    return rowOffsets.get(id + 1);
+  }
+
+  int getColumn(final int index) {
+    return columns.get(index);
+  }
+
+  double getAssociatedProbability(final int index) {
+    return associatedProbabilities.get(index);
+  }
+
+  double getPosterior(final int index) {
+    return posteriors.get(index);
+  }
+
+  // Index of the pair (id, associatedId) in the pair sections, or -1 when absent
+  int findPair(final int id, final int associatedId) {
+    int low = getRowStart(id);
+    int high = getRowEnd(id) - 1;
+
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final int column = columns.get(middle);
+
+      if (column < associatedId) {
+        low = middle + 1;
+      } else if (column > associatedId) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+
+    return -1;
+  }
+
+  AssociationStatistics<V> materialize(final int id) {
+    final V value = getValue(id);
+
+    final AssociationStatistics<V> associationStatistics = bayes
+        ? new BayesAssociationStatistics<>(value)
+        : new AssociationStatistics<>(value);
+
+    associationStatistics
+        .withFrequency(getFrequency(id))
+        .withProbability(getProbability(id))
+        .withLikelihood(getLikelihood(id))
+        .withAssociationFrequency(getAssociationFrequency(id));
+
+    for (int index = getRowStart(id); index < getRowEnd(id); index++) {
+      final V associatedValue = getValue(getColumn(index));
+
+      associationStatistics.getAssociatedValueProbabilities()
+          .put(associatedValue, getAssociatedProbability(index));
+
+      if (bayes) {
+        ((BayesAssociationStatistics<V>) associationStatistics)
+            .getAssociatedValuePosteriorProbabilities()
+            .put(associatedValue, getPosterior(index));
+      }
+    }
+
+    return associationStatistics;
+  }
+
+  private boolean encodedValueEquals(final int id, final byte[] encodedValue) {
+    final int start = valueOffsets.get(id);
+
+    if (valueOffsets.get(id + 1) - start != encodedValue.length) {
+      return false;
+    }
+
+    for (int index = 0; index < encodedValue.length; index++) {
+      if (valueBytes.get(start + index) != encodedValue[index]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,84 @@
+package org.granite.classification.storage;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.granite.classification.model.AssociationStatistics;
+
+// Read-only map view that decodes statistics from the mapped file on every access
+final class MappedStatisticsMap<V> extends AbstractMap<V, AssociationStatistics<V>> {
+
+  private final MappedModelData<V> modelData;
+
+  MappedStatisticsMap(final MappedModelData<V> modelData) {
+    this.modelData = modelData;
+  }
+
+  @Override
+  public int size() {
+    return modelData.getValueCount();
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return findId(key) >= 0;
+  }
+
+  @Override
+  public AssociationStatistics<V> get(final Object key) {
+    final int id = findId(key);
+
+    return id < 0 ? null : modelData.materialize(id);
+  }
+
+  @Override
+  public Set<Map.Entry<V, AssociationStatistics<V>>> entrySet() {
+    return new AbstractSet<Map.Entry<V, AssociationStatistics<V>>>() {
+      @Override
+      public int size() {
+        return modelData.getValueCount();
+      }
+
+      @Override
+      public Iterator<Map.Entry<V, AssociationStatistics<V>>> iterator() {
+        return new Iterator<Map.Entry<V, AssociationStatistics<V>>>() {
+          private int id = 0;
+
+          @Override
+          public boolean hasNext() {
+            return id < modelData.getValueCount();
+          }
+
+          @Override
+          public Map.Entry<V, AssociationStatistics<V>> next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+
+            final AssociationStatistics<V> associationStatistics = modelData.materialize(id++);
+
+            return new SimpleImmutableEntry<>(
+                associationStatistics.getValue(),
+                associationStatistics);
+          }
+        };
+      }
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  private int findId(final Object key) {
+    if (key == null) {
+      return -1;
+    }
+
+    try {
+      return modelData.findId((V) key);
+    } catch (ClassCastException e) {
+      return -1;
+    }
+  }
+}
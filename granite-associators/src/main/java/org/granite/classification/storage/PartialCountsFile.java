@@ -0,0 +1,145 @@
+package org.granite.classification.storage;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.granite.classification.model.CooccurrenceTable;
+import org.granite.classification.model.ExponentialDecay;
+import org.granite.classification.model.PartialCounts;
+
+/**
+ * Reads and writes {@link PartialCounts} so shards counted by separate processes can be merged.
+ *
+ * <p>Layout, big-endian: magic, version, strict association (ints), value count, pair count
+ * (ints), total value frequency (double), decay half-life in milliseconds, zero when the counts
+ * are not decayed, and decay landmark (longs), then per value its encoded length, bytes, frequency
+ * and row total, then per value its row size followed by (column, count) pairs. Row totals are
+ * stored rather than summed on read, as rows may hold only part of each value's associations.
+ */
+public class PartialCountsFile {
+
+  static final int MAGIC = 0x47525043;
+  static final int VERSION = 3;
+
+  public static <V> void write(
+      final PartialCounts<V> partialCounts,
+      final ValueCodec<V> valueCodec,
+      final Path path
+  ) throws IOException {
+    checkNotNull(partialCounts, "partialCounts");
+    checkNotNull(valueCodec, "valueCodec");
+    checkNotNull(path, "path");
+
+    final CooccurrenceTable<V> table = partialCounts.getCooccurrenceTable();
+
+    try (DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(partialCounts.isStrictAssociation() ? 1 : 0);
+      output.writeInt(table.size());
+      output.writeInt(table.getPairCount());
+      output.writeDouble(partialCounts.getTotalValueFrequency());
+      output.writeLong(partialCounts.isDecayed()
+          ? partialCounts.getDecay().getHalfLife().toMillis()
+          : 0L);
+      output.writeLong(partialCounts.isDecayed() ? partialCounts.getDecay().getLandmark() : 0L);
+
+      for (int id = 0; id < table.size(); id++) {
+        final byte[] encodedValue = valueCodec.encode(table.getDictionary().getValue(id));
+
+        output.writeInt(encodedValue.length);
+        output.write(encodedValue);
+        output.writeDouble(table.getFrequency(id));
+        output.writeDouble(table.getRowTotal(id));
+      }
+
+      for (int id = 0; id < table.size(); id++) {
+        output.writeInt(table.getRowEnd(id) - table.getRowStart(id));
+
+        for (int index = table.getRowStart(id); index < table.getRowEnd(id); index++) {
+          output.writeInt(table.getColumn(index));
+          output.writeDouble(table.getCount(index));
+        }
+      }
+    }
+  }
+
+  public static <V> PartialCounts<V> read(
+      final Path path,
+      final ValueCodec<V> valueCodec
+  ) throws IOException {
+    checkNotNull(path, "path");
+    checkNotNull(valueCodec, "valueCodec");
+
+    try (DataInputStream input = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+
+      checkState(input.readInt() == MAGIC, "%s is not a partial counts file", path);
+
+      final int version = input.readInt();
+
+      checkState(version == VERSION, "Unsupported partial counts version %s", version);
+
+      final boolean strictAssociation = input.readInt() != 0;
+      final int valueCount = input.readInt();
+      final int pairCount = input.readInt();
+      final double totalValueFrequency = input.readDouble();
+      final long halfLifeMillis = input.readLong();
+      final long landmark = input.readLong();
+
+      checkState(valueCount >= 0 && pairCount >= 0 && halfLifeMillis >= 0L,
+          "Corrupt partial counts header");
+
+      final List<V> values = new ArrayList<>(valueCount);
+      final double[] valueFrequency = new double[valueCount];
+      final double[] rowTotals = new double[valueCount];
+
+      for (int id = 0; id < valueCount; id++) {
+        final byte[] encodedValue = new byte[input.readInt()];
+
+        input.readFully(encodedValue);
+        values.add(valueCodec.decode(encodedValue));
+        valueFrequency[id] = input.readDouble();
+        rowTotals[id] = input.readDouble();
+      }
+
+      final int[] rowOffsets = new int[valueCount + 1];
+      final int[] columns = new int[pairCount];
+      final double[] counts = new double[pairCount];
+
+      for (int id = 0; id < valueCount; id++) {
+        final int rowSize = input.readInt();
+
+        checkState(rowSize >= 0 && rowSize <= pairCount - rowOffsets[id],
+            "Corrupt partial counts row");
+
+        for (int index = rowOffsets[id]; index < rowOffsets[id] + rowSize; index++) {
+          columns[index] = input.readInt();
+          counts[index] = input.readDouble();
+        }
+
+        rowOffsets[id + 1] = rowOffsets[id] + rowSize;
+      }
+
+      return new PartialCounts<>(
+          CooccurrenceTable.of(values, valueFrequency, rowOffsets, columns, counts, rowTotals),
+          totalValueFrequency,
+          strictAssociation,
+          halfLifeMillis == 0L
+              ? null
+              : new ExponentialDecay(Duration.ofMillis(halfLifeMillis), landmark));
+    }
+  }
+}
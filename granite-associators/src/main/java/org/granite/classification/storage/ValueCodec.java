@@ -0,0 +1,13 @@
+package org.granite.classification.storage;
+
+/**
+ * Converts model values to and from the bytes stored in a binary model file. Two equal values
+ * must encode to the same bytes.
+ */
+public interface ValueCodec<V> {
+
+  byte[] encode(final V value);
+
+  V decode(final byte[] bytes);
+
+}
@@ -0,0 +1,50 @@
+package org.granite.classification.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import java.nio.charset.StandardCharsets;
+
+public class ValueCodecs {
+
+  public static final ValueCodec<String> STRING = new ValueCodec<String>() {
+    @Override
+    public byte[] encode(final String value) {
+      return checkNotNull(value, "value").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String decode(final byte[] bytes) {
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  };
+
+  public static final ValueCodec<Integer> INTEGER = new ValueCodec<Integer>() {
+    @Override
+    public byte[] encode(final Integer value) {
+      return Ints.toByteArray(checkNotNull(value, "value"));
+    }
+
+    @Override
+    public Integer decode(final byte[] bytes) {
+      checkArgument(bytes.length == Integer.BYTES, "Expected %s bytes", Integer.BYTES);
+      return Ints.fromByteArray(bytes);
+    }
+  };
+
+  public static final ValueCodec<Long> LONG = new ValueCodec<Long>() {
+    @Override
+    public byte[] encode(final Long value) {
+      return Longs.toByteArray(checkNotNull(value, "value"));
+    }
+
+    @Override
+    public Long decode(final byte[] bytes) {
+      checkArgument(bytes.length == Long.BYTES, "Expected %s bytes", Long.BYTES);
+      return Longs.fromByteArray(bytes);
+    }
+  };
+
+}
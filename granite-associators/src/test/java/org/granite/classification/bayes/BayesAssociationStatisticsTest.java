@@ -60,4 +60,59 @@ public class BayesAssociationStatisticsTest {
         0.0001);
   }
 
-}
\ No newline at end of file
+  @Test
+  public void findAssociationLikelihoodAfterChange() throws Exception {
+    final BayesAssociationStatistics<String> stats = new BayesAssociationStatistics<>("a");
+
+    stats.getAssociatedValueProbabilities().put("b", 0.5);
+    stats.getAssociatedValueProbabilities().put("c", 0.25);
+
+    assertEquals(0.5 / 0.25, stats.findAssociationLikelihood("b"), 0.0000001);
+    assertEquals(0.25 / 0.5, stats.findAssociationLikelihood("c"), 0.0000001);
+
+    stats.getAssociatedValueProbabilities().put("d", 0.5);
+    stats.clearAssociationLikelihoods();
+
+    assertEquals(
+        0.25 / ProbabilityTools.independentUnion(ImmutableList.of(0.5, 0.5)),
+        stats.findAssociationLikelihood("c"),
+        0.0000001);
+  }
+
+  @Test
+  public void findAssociationLikelihoodDetectsChange() throws Exception {
+    final BayesAssociationStatistics<String> stats = new BayesAssociationStatistics<>("a");
+
+    stats.getAssociatedValueProbabilities().put("b", 0.5);
+    stats.getAssociatedValueProbabilities().put("c", 0.25);
+
+    assertEquals(0.25 / 0.5, stats.findAssociationLikelihood("c"), 0.0000001);
+
+    // Same size, so only the modification stamp reveals the change
+    stats.getAssociatedValueProbabilities().put("b", 0.75);
+
+    assertEquals(0.25 / 0.75, stats.findAssociationLikelihood("c"), 0.0000001);
+
+    stats.getAssociatedValueProbabilities().remove("b");
+    stats.getAssociatedValueProbabilities().put("d", 0.5);
+
+    assertEquals(0.25 / 0.5, stats.findAssociationLikelihood("c"), 0.0000001);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void associatedValueProbabilityViewsAreReadOnly() throws Exception {
+    final BayesAssociationStatistics<String> stats = new BayesAssociationStatistics<>("a");
+
+    stats.getAssociatedValueProbabilities().put("b", 0.5);
+    stats.getAssociatedValueProbabilities().keySet().remove("b");
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void associatedValueProbabilityEntriesAreReadOnly() throws Exception {
+    final BayesAssociationStatistics<String> stats = new BayesAssociationStatistics<>("a");
+
+    stats.getAssociatedValueProbabilities().put("b", 0.5);
+    stats.getAssociatedValueProbabilities().entrySet().iterator().next().setValue(0.25);
+  }
+
+}
@@ -1,12 +1,20 @@
 package org.granite.classification.bayes;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import org.granite.base.KeyValue;
+import org.granite.classification.model.CompactionReport;
+import org.granite.classification.model.CompactionRules;
+import org.granite.classification.model.ProbabilityEnsembles;
+import org.granite.classification.model.ScoringQuery;
 import org.granite.classification.model.TrainingRow;
 import org.granite.classification.model.TrainingSet;
+import org.granite.math.StatsTools;
 import org.junit.Test;
 
 public class BayesModelTest {
@@ -82,4 +90,175 @@ public class BayesModelTest {
 
   }
 
-}
\ No newline at end of file
+  @Test
+  public void batchEnsembleProbabilities() throws Exception {
+    final BayesModel<String> model = BayesModelBuilder
+        .build(new TrainingSet.Builder<Integer, String>()
+            .withStrictAssociation(false)
+            .withTrainingRows(createTrainingRows())
+            .build());
+
+    final List<String> candidates = ImmutableList.of("a", "c", "h", "z");
+
+    final List<ScoringQuery<String>> queries = ImmutableList.of(
+        new ScoringQuery<>(candidates, ImmutableList.of("b", "a")),
+        new ScoringQuery<>(candidates, ImmutableList.of("e", "z", "e")),
+        new ScoringQuery<>(ImmutableList.of("g"), ImmutableList.of("b", "a")),
+        new ScoringQuery<>(candidates, ImmutableList.of()));
+
+    final double[][] results = model.ensembleProbabilities(queries, StatsTools::mean);
+
+    assertEquals(queries.size(), results.length);
+
+    for (int queryIndex = 0; queryIndex < queries.size(); queryIndex++) {
+      final ScoringQuery<String> query = queries.get(queryIndex);
+
+      assertEquals(query.getCandidateValues().size(), results[queryIndex].length);
+
+      for (int index = 0; index < query.getCandidateValues().size(); index++) {
+        assertEquals(
+            model.meanProbability(
+                query.getCandidateValues().get(index),
+                query.getGivenAssociations()),
+            results[queryIndex][index],
+            0.0);
+      }
+    }
+  }
+
+  @Test
+  public void supportingProbabilitiesIntoBuffer() throws Exception {
+    final BayesModel<String> model = BayesModelBuilder
+        .build(new TrainingSet.Builder<Integer, String>()
+            .withStrictAssociation(false)
+            .withTrainingRows(createTrainingRows())
+            .build());
+
+    final List<String> associations = ImmutableList.of("b", "z", "e", "a");
+    final double[] buffer = new double[8];
+
+    for (String value : ImmutableList.of("a", "c", "h")) {
+      assertEquals(associations.size(),
+          model.supportingProbabilities(value, associations, buffer));
+
+      for (int index = 0; index < associations.size(); index++) {
+        assertEquals(
+            model.supportingProbabilities(value, associations)
+                .getOrDefault(associations.get(index), 0.0),
+            buffer[index],
+            0.0);
+      }
+    }
+
+    assertEquals(0, model.supportingProbabilities("z", associations, buffer));
+  }
+
+  @Test
+  public void repeatedAssociationsCountOnce() throws Exception {
+    final BayesModel<String> model = BayesModelBuilder
+        .build(new TrainingSet.Builder<Integer, String>()
+            .withStrictAssociation(false)
+            .withTrainingRows(createTrainingRows())
+            .build());
+
+    final List<String> distinct = ImmutableList.of("a", "c", "e");
+    final List<String> repeated = ImmutableList.of("a", "c", "a", "e", "a");
+    final List<String> longRepeated = new ArrayList<>();
+
+    // Past the length that is checked in place
+    for (int copy = 0; copy < 10; copy++) {
+      longRepeated.addAll(repeated);
+    }
+
+    for (String value : ImmutableList.of("b", "d", "f")) {
+      final double median = model.medianProbability(value, distinct);
+
+      assertEquals(median, model.medianProbability(value, repeated), 0.0);
+      assertEquals(median, model.medianProbability(value, longRepeated), 0.0);
+      assertEquals(
+          model.meanProbability(value, repeated),
+          model.ensembleProbability(value, repeated, ProbabilityEnsembles.MEAN),
+          1e-12);
+      assertEquals(3, model.supportingProbabilities(value, longRepeated, new double[50]));
+    }
+  }
+
+  @Test
+  public void logJointProbability() throws Exception {
+    final BayesModel<String> model = BayesModelBuilder
+        .build(new TrainingSet.Builder<Integer, String>()
+            .withStrictAssociation(false)
+            .withTrainingRows(createTrainingRows())
+            .build());
+
+    // Row of a: {a:2, b:1, c:1, d:2, e:1, f:1}, 8 associations over 9 values
+    // z is unknown and skipped, h never occurs with a and is smoothed
+    assertEquals(
+        Math.log(2.0 / 16.0) + Math.log(2.0 / 17.0) + Math.log(3.0 / 17.0) + Math.log(1.0 / 17.0),
+        model.logJointProbability("a", ImmutableList.of("b", "d", "z", "h"), 1.0),
+        0.0000000001);
+
+    assertEquals(Double.NEGATIVE_INFINITY,
+        model.logJointProbability("a", ImmutableList.of("h"), 0.0), 0.0);
+    assertEquals(Double.NEGATIVE_INFINITY,
+        model.logJointProbability("z", ImmutableList.of("a"), 1.0), 0.0);
+
+    final KeyValue<String, Double> best = model
+        .mostProbableJoint(ImmutableList.of("a", "b", "g"), ImmutableList.of("c", "e"), 1.0);
+
+    assertEquals("b", best.getKey());
+    assertEquals(
+        Math.log(3.0 / 16.0) + Math.log(3.0 / 21.0) + Math.log(2.0 / 21.0),
+        best.getValue(),
+        0.0000000001);
+  }
+
+  @Test
+  public void compaction() throws Exception {
+    final TrainingSet<Integer, String> trainingSet = new TrainingSet.Builder<Integer, String>()
+        .withStrictAssociation(true)
+        .withTrainingRows(createTrainingRows())
+        .build();
+
+    final BayesModel<String> model = BayesModelBuilder.build(trainingSet);
+    final BayesModel<String> compacted = BayesModelBuilder.build(trainingSet,
+        new CompactionRules()
+            .withMinimumPairCount(1.0)
+            .withMaximumAssociationsPerValue(2));
+
+    final CompactionReport report = compacted.getCompactionReport();
+
+    assertEquals(44, report.getAssociationsBefore());
+    assertEquals(18, report.getAssociationsAfter());
+    assertEquals(2 * report.getAssociationsRemoved(), report.getEntriesRemoved());
+    assertEquals(report.getEntriesRemoved() * CompactionReport.ESTIMATED_BYTES_PER_ENTRY,
+        report.getEstimatedBytesSaved());
+
+    for (BayesAssociationStatistics<String> statistics : compacted
+        .getAssociationStatisticsMap().values()) {
+      final BayesAssociationStatistics<String> original =
+          model.getAssociationStatistics(statistics.getValue());
+      final Map<String, Double> posteriors =
+          statistics.getAssociatedValuePosteriorProbabilities();
+
+      assertTrue(posteriors.size() <= 2);
+      assertEquals(posteriors.keySet(), statistics.getAssociatedValueProbabilities().keySet());
+
+      // The kept associations are the most probable ones, with unchanged probabilities
+      for (Map.Entry<String, Double> posterior : posteriors.entrySet()) {
+        assertEquals(original.getAssociatedValuePosteriorProbabilities().get(posterior.getKey()),
+            posterior.getValue());
+        assertEquals(original.getAssociatedValueProbabilities().get(posterior.getKey()),
+            statistics.getAssociatedValueProbabilities().get(posterior.getKey()));
+
+        for (Map.Entry<String, Double> dropped : original
+            .getAssociatedValuePosteriorProbabilities().entrySet()) {
+          if (!posteriors.containsKey(dropped.getKey())) {
+            assertTrue(dropped.getValue() <= posterior.getValue());
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,169 @@
+package org.granite.classification.bayes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.granite.classification.model.CompactionRules;
+import org.granite.classification.model.TrainingRow;
+import org.granite.classification.model.TrainingSet;
+import org.granite.classification.model.ValueDictionary;
+import org.junit.Test;
+
+public class QuantizedBayesModelTest {
+
+  private TrainingSet<Integer, String> createTrainingSet() {
+    final Random random = new Random(23);
+    final List<TrainingRow<Integer, String>> rows = new ArrayList<>();
+
+    for (int id = 0; id < 2000; id++) {
+      final Set<String> values = new LinkedHashSet<>();
+      final int width = 1 + random.nextInt(6);
+
+      while (values.size() < width) {
+        values.add("v" + (int) (300 * Math.pow(random.nextDouble(), 2)));
+      }
+
+      rows.add(new TrainingRow<>(id, values));
+    }
+
+    return new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(rows)
+        .build();
+  }
+
+  private BayesModel<String> createModel() {
+    return BayesModelBuilder.build(createTrainingSet());
+  }
+
+  @Test
+  public void quantizedPosteriorsStayClose() throws Exception {
+    final BayesModel<String> model = createModel();
+    final List<String> associations = ImmutableList.of("v0", "v3", "v17", "v120", "missing");
+
+    for (Quantization quantization : Quantization.values()) {
+      final QuantizedBayesModel<String> quantized = QuantizedBayesModel.of(model, quantization);
+      final QuantizationReport report = QuantizationReport.of(model, quantized);
+
+      assertEquals(quantization, quantized.getQuantization());
+
+      switch (quantization) {
+        case FLOAT:
+          assertTrue(report.getMaximumRelativeError() < 0.0000001);
+          break;
+        case FIXED_POINT_16:
+          assertTrue(report.getMaximumAbsoluteError() < 0.0001);
+          break;
+        default:
+          assertTrue(report.getMaximumRelativeError() < 0.001);
+      }
+
+      assertTrue(report.getTopOneAgreement() > 0.95);
+      assertTrue(report.getPairwiseAgreement() > 0.95);
+
+      final double[] buffer = new double[associations.size()];
+
+      for (String value : ImmutableList.of("v0", "v1", "v50", "v299")) {
+        final Map<String, Double> expected = model.supportingProbabilities(value, associations);
+        final Map<String, Double> actual = quantized.supportingProbabilities(value, associations);
+
+        assertEquals(expected.keySet(), actual.keySet());
+        assertEquals(associations.size(),
+            quantized.supportingProbabilities(value, associations, buffer));
+
+        for (int index = 0; index < associations.size(); index++) {
+          final double probability = expected.get(associations.get(index));
+
+          assertEquals(probability, actual.get(associations.get(index)),
+              report.getMaximumAbsoluteError());
+          assertEquals(actual.get(associations.get(index)), buffer[index], 0.0);
+        }
+      }
+
+      assertEquals(
+          model.getAssociationStatistics("v3").getAssociatedValuePosteriorProbabilities().keySet(),
+          quantized.getAssociationStatistics("v3").getAssociatedValuePosteriorProbabilities()
+              .keySet());
+    }
+  }
+
+  // After compaction a value's row no longer mirrors the rows of its associations, so the values
+  // an association supports are found from every value's posterior row
+  @Test
+  public void agreementOnCompactedModel() throws Exception {
+    final BayesModel<String> model = BayesModelBuilder.build(
+        createTrainingSet(),
+        new CompactionRules().withMaximumAssociationsPerValue(3));
+    final QuantizedBayesModel<String> quantized =
+        QuantizedBayesModel.of(model, Quantization.FIXED_POINT_16);
+    final QuantizationReport report = QuantizationReport.of(model, quantized);
+    final ValueDictionary<String> dictionary = quantized.getDictionary();
+
+    int rankedAssociations = 0;
+    int topOneAgreements = 0;
+    long orderedPairs = 0L;
+    long concordantPairs = 0L;
+
+    for (String associatedValue : model.getAssociationStatisticsMap().keySet()) {
+      final List<Double> scores = new ArrayList<>();
+      final List<Double> quantizedScores = new ArrayList<>();
+
+      for (BayesAssociationStatistics<String> statistics
+          : model.getAssociationStatisticsMap().values()) {
+        final Double posterior =
+            statistics.getAssociatedValuePosteriorProbabilities().get(associatedValue);
+
+        if (posterior != null) {
+          scores.add(posterior);
+          quantizedScores.add(quantized.posterior(
+              dictionary.getId(statistics.getValue()),
+              dictionary.getId(associatedValue)));
+        }
+      }
+
+      if (scores.isEmpty()) {
+        continue;
+      }
+
+      rankedAssociations++;
+
+      if (scores.get(argmax(quantizedScores)).equals(scores.get(argmax(scores)))) {
+        topOneAgreements++;
+      }
+
+      for (int first = 0; first < scores.size(); first++) {
+        for (int second = first + 1; second < scores.size(); second++) {
+          if (!scores.get(first).equals(scores.get(second))) {
+            orderedPairs++;
+
+            if (Double.compare(scores.get(first), scores.get(second))
+                == Double.compare(quantizedScores.get(first), quantizedScores.get(second))) {
+              concordantPairs++;
+            }
+          }
+        }
+      }
+    }
+
+    assertEquals((double) topOneAgreements / rankedAssociations, report.getTopOneAgreement(), 0.0);
+    assertEquals((double) concordantPairs / orderedPairs, report.getPairwiseAgreement(), 0.0);
+  }
+
+  private static int argmax(final List<Double> values) {
+    int best = 0;
+
+    for (int index = 1; index < values.size(); index++) {
+      if (values.get(index) > values.get(best)) {
+        best = index;
+      }
+    }
+
+    return best;
+  }
+}
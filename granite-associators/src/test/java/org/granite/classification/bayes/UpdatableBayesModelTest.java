@@ -0,0 +1,75 @@
+package org.granite.classification.bayes;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import org.granite.classification.model.TrainingRow;
+import org.granite.classification.model.TrainingSet;
+import org.junit.Test;
+
+public class UpdatableBayesModelTest {
+
+  private List<TrainingRow<Integer, String>> createTrainingRows() {
+    final List<TrainingRow<Integer, String>> result = new ArrayList<>();
+
+    // a, b, c, d, e, f, g, h, i
+    // 1, 2, 3, 4, 5, 6, 7, 8, 9
+    result.add(new TrainingRow<>(100, ImmutableList.of("a", "b", "c", "d")));
+    result.add(new TrainingRow<>(200, ImmutableList.of("a", "e", "f", "d")));
+    result.add(new TrainingRow<>(300, ImmutableList.of("g", "b", "c", "e")));
+    result.add(new TrainingRow<>(400, ImmutableList.of("f", "h", "i", "b")));
+
+    return result;
+  }
+
+  @Test
+  public void updateMatchesRebuild() throws Exception {
+    final List<TrainingRow<Integer, String>> rows = createTrainingRows();
+
+    final UpdatableBayesModel<String> model = BayesModelBuilder
+        .buildUpdatable(new TrainingSet.Builder<Integer, String>()
+            .withTrainingRows(rows.subList(0, 2))
+            .build());
+
+    // Score once so the untouched statistics are materialized before the update
+    model.meanProbability("a", ImmutableList.of("b", "d"));
+
+    model.update(rows.subList(2, 4));
+
+    final BayesModel<String> rebuilt = BayesModelBuilder
+        .build(new TrainingSet.Builder<Integer, String>()
+            .withTrainingRows(rows)
+            .build());
+
+    assertEquals(16.0, model.getTotalValueFrequency(), 0.0);
+
+    final List<String> values = ImmutableList.of("a", "b", "c", "d", "e", "f", "g", "h", "i");
+
+    for (String value : values) {
+      assertEquals(
+          rebuilt.supportingProbabilities(value, values),
+          model.supportingProbabilities(value, values));
+      assertEquals(
+          rebuilt.logJointProbability(value, values, 0.5),
+          model.logJointProbability(value, values, 0.5),
+          0.0000000001);
+    }
+
+    for (String value : values) {
+      final BayesAssociationStatistics<String> expected = rebuilt
+          .getAssociationStatisticsMap().get(value);
+      final BayesAssociationStatistics<String> actual = model
+          .getAssociationStatisticsMap().get(value);
+
+      assertEquals(expected.getProbability(), actual.getProbability(), 0.0);
+      assertEquals(expected.getLikelihood(), actual.getLikelihood(), 0.0000001);
+      assertEquals(expected.getAssociatedValueProbabilities(),
+          actual.getAssociatedValueProbabilities());
+      assertEquals(expected.getAssociatedValuePosteriorProbabilities(),
+          actual.getAssociatedValuePosteriorProbabilities());
+    }
+  }
+
+}
@@ -3,11 +3,17 @@ package org.granite.classification.frequency;
 import static org.junit.Assert.assertEquals;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import org.granite.classification.model.AssociationStatistics;
+import org.granite.classification.model.CompactionRules;
+import org.granite.classification.model.ScoringQuery;
 import org.granite.classification.model.TrainingRow;
 import org.granite.classification.model.TrainingSet;
+import org.granite.math.StatsTools;
 import org.junit.Test;
 
 public class FrequencyModelTest {
@@ -70,4 +76,106 @@ public class FrequencyModelTest {
     );
   }
 
-}
\ No newline at end of file
+  @Test
+  public void batchEnsembleProbabilities() throws Exception {
+    final FrequencyModel<String> model = FrequencyModelBuilder
+        .build(new TrainingSet.Builder<Integer, String>()
+            .withStrictAssociation(false)
+            .withTrainingRows(createTrainingRows())
+            .build());
+
+    final List<String> candidates = ImmutableList.of("a", "c", "h", "z");
+
+    final List<ScoringQuery<String>> queries = ImmutableList.of(
+        new ScoringQuery<>(candidates, ImmutableList.of("b", "a")),
+        new ScoringQuery<>(candidates, ImmutableList.of("e", "z", "e")),
+        new ScoringQuery<>(ImmutableList.of("g"), ImmutableList.of("b", "a")),
+        new ScoringQuery<>(candidates, ImmutableList.of()));
+
+    final double[][] results = model.ensembleProbabilities(queries, StatsTools::mean);
+
+    assertEquals(queries.size(), results.length);
+
+    for (int queryIndex = 0; queryIndex < queries.size(); queryIndex++) {
+      final ScoringQuery<String> query = queries.get(queryIndex);
+
+      assertEquals(query.getCandidateValues().size(), results[queryIndex].length);
+
+      for (int index = 0; index < query.getCandidateValues().size(); index++) {
+        assertEquals(
+            model.meanProbability(
+                query.getCandidateValues().get(index),
+                query.getGivenAssociations()),
+            results[queryIndex][index],
+            0.0);
+      }
+    }
+  }
+
+  @Test
+  public void supportingProbabilitiesIntoBuffer() throws Exception {
+    final FrequencyModel<String> model = FrequencyModelBuilder
+        .build(new TrainingSet.Builder<Integer, String>()
+            .withStrictAssociation(false)
+            .withTrainingRows(createTrainingRows())
+            .build());
+
+    final List<String> associations = ImmutableList.of("b", "z", "e", "a");
+    final double[] buffer = new double[8];
+
+    for (String value : ImmutableList.of("a", "c", "h")) {
+      assertEquals(associations.size(),
+          model.supportingProbabilities(value, associations, buffer));
+
+      for (int index = 0; index < associations.size(); index++) {
+        assertEquals(
+            model.supportingProbabilities(value, associations)
+                .getOrDefault(associations.get(index), 0.0),
+            buffer[index],
+            0.0);
+      }
+    }
+
+    assertEquals(0, model.supportingProbabilities("z", associations, buffer));
+  }
+
+  @Test
+  public void compactionByPairCount() throws Exception {
+    final TrainingSet<Integer, String> trainingSet = new TrainingSet.Builder<Integer, String>()
+        .withStrictAssociation(true)
+        .withTrainingRows(createTrainingRows())
+        .build();
+
+    final FrequencyModel<String> model = FrequencyModelBuilder.build(trainingSet);
+    final FrequencyModel<String> compacted = FrequencyModelBuilder
+        .build(trainingSet, new CompactionRules().withMinimumPairCount(2.0));
+
+    // Only a-d and b-c occur together twice
+    assertEquals(4, compacted.getCompactionReport().getAssociationsAfter());
+    assertEquals(ImmutableMap.of("d", 2.0 / 6.0),
+        compacted.getAssociationStatistics("a").getAssociatedValueProbabilities());
+    assertEquals(model.getAssociationStatistics("a").getAssociatedValueProbabilities().get("d"),
+        compacted.getAssociationStatistics("a").getAssociatedValueProbabilities().get("d"));
+    assertEquals(model.meanProbability("d", ImmutableList.of("a")),
+        compacted.meanProbability("d", ImmutableList.of("a")), 0.0);
+  }
+
+  // Decayed pair counts are fractional, so the threshold must hold exactly
+  @Test
+  public void compactionByDecayedPairCount() throws Exception {
+    final TrainingSet<Integer, String> trainingSet = new TrainingSet.Builder<Integer, String>()
+        .withStrictAssociation(true)
+        .withDecay(Duration.ofDays(1))
+        .withTrainingRows(ImmutableList.of(
+            new TrainingRow<>(1, ImmutableList.of("a", "c")).withTimestamp(0L),
+            new TrainingRow<>(2, ImmutableList.of("a", "b")).withTimestamp(62L)))
+        .build();
+
+    final FrequencyModel<String> compacted = FrequencyModelBuilder
+        .build(trainingSet, new CompactionRules().withMinimumPairCount(1.0));
+
+    // a-c is just under one as of the later row
+    assertEquals(ImmutableSet.of("b"),
+        compacted.getAssociationStatistics("a").getAssociatedValueProbabilities().keySet());
+  }
+}
@@ -0,0 +1,139 @@
+package org.granite.classification.frequency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.collect.ImmutableList;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.granite.classification.model.TrainingRow;
+import org.granite.classification.model.TrainingSet;
+import org.granite.classification.model.WideRowStrategy;
+import org.junit.Test;
+
+public class UpdatableFrequencyModelTest {
+
+  private List<TrainingRow<Integer, String>> createTrainingRows() {
+    final List<TrainingRow<Integer, String>> result = new ArrayList<>();
+
+    // a, b, c, d, e, f, g, h, i
+    // 1, 2, 3, 4, 5, 6, 7, 8, 9
+    result.add(new TrainingRow<>(100, ImmutableList.of("a", "b", "c", "d")));
+    result.add(new TrainingRow<>(200, ImmutableList.of("a", "e", "f", "d")));
+    result.add(new TrainingRow<>(300, ImmutableList.of("g", "b", "c", "e")));
+    result.add(new TrainingRow<>(400, ImmutableList.of("f", "h", "i", "b")));
+
+    return result;
+  }
+
+  @Test
+  public void updateMatchesRebuild() throws Exception {
+    final List<TrainingRow<Integer, String>> rows = createTrainingRows();
+
+    final UpdatableFrequencyModel<String> model = FrequencyModelBuilder
+        .buildUpdatable(new TrainingSet.Builder<Integer, String>()
+            .withTrainingRows(rows.subList(0, 3))
+            .build());
+
+    assertNull(model.getAssociationStatistics("h"));
+
+    model.update(rows.subList(3, 4));
+
+    final FrequencyModel<String> rebuilt = FrequencyModelBuilder
+        .build(new TrainingSet.Builder<Integer, String>()
+            .withTrainingRows(rows)
+            .build());
+
+    final List<String> values = ImmutableList.of("a", "b", "c", "d", "e", "f", "g", "h", "i");
+
+    for (String value : values) {
+      assertEquals(
+          rebuilt.meanProbability(value, values),
+          model.meanProbability(value, values),
+          0.0000001);
+      assertEquals(
+          rebuilt.getAssociationStatisticsMap().get(value).getLikelihood(),
+          model.getAssociationStatisticsMap().get(value).getLikelihood(),
+          0.0000001);
+    }
+  }
+
+  @Test
+  public void decayedUpdateMatchesDecayedRebuild() throws Exception {
+    final List<TrainingRow<Integer, String>> rows = createTrainingRows();
+
+    // The last row is far enough ahead to rescale the stored counts
+    for (int index = 0; index < rows.size(); index++) {
+      rows.get(index).withTimestamp(Duration.ofHours(index == 3 ? 500 : index).toMillis());
+    }
+
+    final UpdatableFrequencyModel<String> model = FrequencyModelBuilder
+        .buildUpdatable(new TrainingSet.Builder<Integer, String>()
+            .withDecay(Duration.ofHours(4))
+            .withTrainingRows(rows.subList(0, 3))
+            .build());
+
+    model.update(rows.subList(3, 4));
+
+    final FrequencyModel<String> rebuilt = FrequencyModelBuilder
+        .build(new TrainingSet.Builder<Integer, String>()
+            .withDecay(Duration.ofHours(4))
+            .withTrainingRows(rows)
+            .build());
+
+    final List<String> values = ImmutableList.of("a", "b", "c", "d", "e", "f", "g", "h", "i");
+
+    for (String value : values) {
+      assertEquals(
+          rebuilt.meanProbability(value, values),
+          model.meanProbability(value, values),
+          0.0000001);
+      assertEquals(
+          rebuilt.getAssociationStatisticsMap().get(value).getProbability(),
+          model.getAssociationStatisticsMap().get(value).getProbability(),
+          0.0000001);
+    }
+
+    // Values from the earlier rows have all but decayed away
+    assertEquals(0.25, model.getAssociationStatistics("h").getProbability(), 0.0000001);
+  }
+
+  @Test
+  public void updateKeepsWideRowStrategy() throws Exception {
+    final List<TrainingRow<Integer, String>> rows = createTrainingRows();
+
+    // Wider than the window, so only values within three places of each other are paired
+    rows.add(new TrainingRow<>(500, ImmutableList.of("a", "c", "e", "g", "h", "i", "j")));
+
+    final UpdatableFrequencyModel<String> model = FrequencyModelBuilder
+        .buildUpdatable(new TrainingSet.Builder<Integer, String>()
+            .withWideRowStrategy(WideRowStrategy.window(3))
+            .withTrainingRows(rows.subList(0, 4))
+            .build());
+
+    model.update(rows.subList(4, 5));
+
+    final FrequencyModel<String> rebuilt = FrequencyModelBuilder
+        .build(new TrainingSet.Builder<Integer, String>()
+            .withWideRowStrategy(WideRowStrategy.window(3))
+            .withTrainingRows(rows)
+            .build());
+
+    final List<String> values =
+        ImmutableList.of("a", "b", "c", "d", "e", "f", "g", "h", "i", "j");
+
+    for (String value : values) {
+      assertEquals(
+          rebuilt.meanProbability(value, values),
+          model.meanProbability(value, values),
+          0.0000001);
+    }
+
+    assertFalse(model.getAssociationStatistics("a")
+        .getAssociatedValueProbabilities()
+        .containsKey("j"));
+  }
+
+}
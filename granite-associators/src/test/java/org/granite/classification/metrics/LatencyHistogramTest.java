@@ -0,0 +1,51 @@
+package org.granite.classification.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void bucketsCoverTheirValues() throws Exception {
+    final Random random = new Random(5);
+
+    for (int index = 0; index < 100000; index++) {
+      final long nanos = (random.nextLong() >>> 1) >>> random.nextInt(63);
+      final int bucket = LatencyHistogram.bucket(nanos);
+
+      assertTrue(nanos <= LatencyHistogram.upperBound(bucket));
+      assertTrue(bucket == 0 || nanos > LatencyHistogram.upperBound(bucket - 1));
+    }
+
+    assertEquals(Long.MAX_VALUE,
+        LatencyHistogram.upperBound(LatencyHistogram.bucket(Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void percentiles() throws Exception {
+    final LatencyHistogram histogram = new LatencyHistogram();
+
+    assertEquals(0L, histogram.getPercentileNanos(0.5));
+
+    for (long nanos = 1; nanos <= 1000; nanos++) {
+      histogram.record(nanos * 1000L);
+    }
+
+    assertEquals(1000L, histogram.getCount());
+    assertEquals(1000000L, histogram.getMaximumNanos());
+    assertEquals(500500.0, histogram.getMeanNanos(), 0.0);
+
+    // Buckets are at most 12.5% wide
+    assertEquals(500000.0, histogram.getPercentileNanos(0.5), 500000.0 * 0.125);
+    assertEquals(990000.0, histogram.getPercentileNanos(0.99), 990000.0 * 0.125);
+    assertEquals(1000000L, histogram.getPercentileNanos(1.0));
+
+    histogram.reset();
+
+    assertEquals(0L, histogram.getCount());
+    assertEquals(0L, histogram.getPercentileNanos(1.0));
+  }
+}
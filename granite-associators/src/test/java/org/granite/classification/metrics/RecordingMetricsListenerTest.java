@@ -0,0 +1,173 @@
+package org.granite.classification.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import org.granite.classification.bayes.BayesModel;
+import org.granite.classification.bayes.BayesModelBuilder;
+import org.granite.classification.model.ProbabilityEnsembles;
+import org.granite.classification.model.ScoringQuery;
+import org.granite.classification.model.TrainingRow;
+import org.granite.classification.model.TrainingSet;
+import org.granite.math.StatsTools;
+import org.junit.After;
+import org.junit.Test;
+
+public class RecordingMetricsListenerTest {
+
+  @After
+  public void clearListener() {
+    Metrics.clearListener();
+  }
+
+  private TrainingSet<Integer, String> createTrainingSet() {
+    return new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(ImmutableList.of(
+            new TrainingRow<>(1, ImmutableList.of("a", "b", "c")),
+            new TrainingRow<>(2, ImmutableList.of("a", "b")),
+            new TrainingRow<>(3, ImmutableList.of("b", "d"))))
+        .withStrictAssociation(true)
+        .build();
+  }
+
+  @Test
+  public void buildPhasesAndSize() throws Exception {
+    final RecordingMetricsListener listener = new RecordingMetricsListener();
+
+    Metrics.setListener(listener);
+
+    BayesModelBuilder.build(createTrainingSet());
+
+    for (BuildPhase phase : BuildPhase.values()) {
+      assertEquals(phase.name(), 1L, listener.getPhaseHistogram(phase).getCount());
+    }
+
+    // a-b, a-c, b-c and b-d in both directions
+    final ModelSize modelSize = listener.getLastModelSize();
+
+    assertEquals(BayesModel.class, modelSize.getModelType());
+    assertEquals(4L, modelSize.getValues());
+    assertEquals(8L, modelSize.getPairs());
+    assertEquals((4L + 16L) * 56L, modelSize.getEstimatedBytes());
+  }
+
+  @Test
+  public void scoringCounters() throws Exception {
+    final BayesModel<String> model = BayesModelBuilder.build(createTrainingSet());
+    final RecordingMetricsListener listener = new RecordingMetricsListener();
+
+    Metrics.setListener(listener);
+
+    model.ensembleProbability("a", ImmutableList.of("b", "x"), ProbabilityEnsembles.MEAN);
+    model.meanProbability("a", ImmutableList.of("c", "y", "z"));
+    model.ensembleProbability("x", ImmutableList.of("b"), ProbabilityEnsembles.MEDIAN);
+    model.ensembleProbabilities(
+        ImmutableList.of(new ScoringQuery<>(ImmutableList.of("a", "x"), ImmutableList.of("b"))),
+        StatsTools::mean);
+
+    assertEquals(5L, listener.getScoringQueries());
+    assertEquals(2L, listener.getUnknownValues());
+    assertEquals(3L, listener.getUnknownAssociations());
+    assertEquals(5L, listener.getScoringHistogram().getCount());
+  }
+
+  @Test
+  public void noOpByDefault() throws Exception {
+    assertFalse(Metrics.isEnabled());
+
+    final RecordingMetricsListener listener = new RecordingMetricsListener();
+
+    Metrics.setListener(listener);
+
+    assertTrue(Metrics.isEnabled());
+
+    Metrics.clearListener();
+
+    BayesModelBuilder.build(createTrainingSet())
+        .ensembleProbability("a", ImmutableList.of("b"), ProbabilityEnsembles.MEAN);
+
+    assertEquals(0L, listener.getScoringQueries());
+    assertEquals(null, listener.getLastModelSize());
+  }
+
+  @Test
+  public void beginTokensReachReports() throws Exception {
+    final List<String> calls = new ArrayList<>();
+
+    Metrics.setListener(new MetricsListener() {
+
+      @Override
+      public Object beginPhase(final BuildPhase phase) {
+        calls.add("begin " + phase);
+        return phase;
+      }
+
+      @Override
+      public void onPhase(
+          final Object token,
+          final BuildPhase phase,
+          final long items,
+          final long elapsedNanos) {
+        assertSame(phase, token);
+        calls.add("end " + phase);
+      }
+
+      @Override
+      public Object beginModelBuild() {
+        calls.add("begin build");
+        return calls;
+      }
+
+      @Override
+      public void onModelBuilt(
+          final Object token,
+          final ModelSize modelSize,
+          final long elapsedNanos) {
+        assertSame(calls, token);
+        calls.add("end build " + modelSize.getModelType().getSimpleName());
+      }
+
+      @Override
+      public Object beginScoringQuery() {
+        calls.add("begin query");
+        return calls;
+      }
+
+      @Override
+      public void onScoringQuery(
+          final Object token,
+          final int givenAssociations,
+          final long elapsedNanos) {
+        assertSame(calls, token);
+        calls.add("end query");
+      }
+    });
+
+    BayesModelBuilder.build(createTrainingSet())
+        .ensembleProbability("a", ImmutableList.of("b"), ProbabilityEnsembles.MEAN);
+
+    // Every phase is reported before the next one begins, and a Bayes build is one model build
+    // around the model phases
+    final List<String> expected = new ArrayList<>();
+
+    for (BuildPhase phase : BuildPhase.values()) {
+      if (phase == BuildPhase.ASSOCIATION_PROBABILITIES) {
+        expected.add("begin build");
+      }
+
+      expected.add("begin " + phase);
+      expected.add("end " + phase);
+    }
+
+    expected.add("end build BayesModel");
+    expected.add("begin query");
+    expected.add("end query");
+
+    assertEquals(expected, calls);
+  }
+}
@@ -0,0 +1,110 @@
+package org.granite.classification.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.granite.base.KeyValue;
+import org.granite.classification.bayes.BayesModel;
+import org.granite.classification.bayes.BayesModelBuilder;
+import org.granite.classification.frequency.FrequencyModel;
+import org.granite.classification.frequency.FrequencyModelBuilder;
+import org.junit.Test;
+
+public class AssociationIndexTest {
+
+  private TrainingSet<Integer, String> createTrainingSet() {
+    final Random random = new Random(11);
+    final List<TrainingRow<Integer, String>> rows = new ArrayList<>();
+
+    for (int id = 0; id < 2000; id++) {
+      final Set<String> values = new LinkedHashSet<>();
+      final int width = 2 + random.nextInt(6);
+
+      while (values.size() < width) {
+        // Skewed so a few values are common
+        values.add("v" + (int) Math.pow(random.nextInt(400), 2) / 400);
+      }
+
+      rows.add(new TrainingRow<>(id, values));
+    }
+
+    return new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(rows)
+        .build();
+  }
+
+  private <S extends AssociationStatistics<String>> void assertMatchesBruteForce(
+      final AssociationModel<String, S> model,
+      final List<String> givenAssociations,
+      final int k) {
+    final List<KeyValue<String, Double>> topK = AssociationIndex.of(model)
+        .topK(givenAssociations, k);
+
+    final List<Double> expectedScores = new ArrayList<>();
+
+    for (String value : model.getAssociationStatisticsMap().keySet()) {
+      final double score = model.meanProbability(value, givenAssociations);
+
+      if (score > 0.0) {
+        expectedScores.add(score);
+      }
+    }
+
+    expectedScores.sort((left, right) -> Double.compare(right, left));
+
+    assertEquals(Math.min(k, expectedScores.size()), topK.size());
+
+    for (int index = 0; index < topK.size(); index++) {
+      assertEquals(expectedScores.get(index), topK.get(index).getValue(), 0.0000001);
+      assertEquals(
+          model.meanProbability(topK.get(index).getKey(), givenAssociations),
+          topK.get(index).getValue(),
+          0.0000001);
+    }
+  }
+
+  @Test
+  public void bayesTopK() throws Exception {
+    final BayesModel<String> model = BayesModelBuilder.build(createTrainingSet());
+
+    assertMatchesBruteForce(model, ImmutableList.of("v0", "v10", "v250"), 10);
+    assertMatchesBruteForce(model, ImmutableList.of("v90", "unknown"), 5);
+    assertMatchesBruteForce(model, ImmutableList.of("v1", "v4", "v9", "v16"), 1000);
+  }
+
+  @Test
+  public void frequencyTopK() throws Exception {
+    final FrequencyModel<String> model = FrequencyModelBuilder.build(createTrainingSet());
+
+    assertMatchesBruteForce(model, ImmutableList.of("v0", "v10", "v250"), 10);
+    assertTrue(AssociationIndex.of(model).topK(ImmutableList.of("unknown"), 3).isEmpty());
+  }
+
+  // Compaction prunes each row on its own, so rows are no longer symmetric
+  @Test
+  public void compactedTopK() throws Exception {
+    final CompactionRules rules = new CompactionRules().withMaximumAssociationsPerValue(3);
+    final BayesModel<String> bayesModel = BayesModelBuilder.build(createTrainingSet(), rules);
+    final FrequencyModel<String> frequencyModel =
+        FrequencyModelBuilder.build(createTrainingSet(), rules);
+    final Random random = new Random(5);
+
+    for (int query = 0; query < 40; query++) {
+      final List<String> givenAssociations = new ArrayList<>();
+
+      for (int index = 0; index < 3; index++) {
+        givenAssociations.add("v" + (int) Math.pow(random.nextInt(400), 2) / 400);
+      }
+
+      assertMatchesBruteForce(bayesModel, givenAssociations, 10);
+      assertMatchesBruteForce(frequencyModel, givenAssociations, 10);
+    }
+  }
+
+}
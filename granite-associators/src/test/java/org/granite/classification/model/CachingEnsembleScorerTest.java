@@ -0,0 +1,121 @@
+package org.granite.classification.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import org.granite.classification.bayes.BayesModel;
+import org.granite.classification.bayes.BayesModelBuilder;
+import org.granite.classification.bayes.UpdatableBayesModel;
+import org.junit.Test;
+
+public class CachingEnsembleScorerTest {
+
+  private BayesModel<String> createModel(final String lastValue) {
+    return BayesModelBuilder.build(new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(ImmutableList.of(
+            new TrainingRow<>(1, ImmutableList.of("a", "b", "c")),
+            new TrainingRow<>(2, ImmutableList.of("a", "b")),
+            new TrainingRow<>(3, ImmutableList.of("b", "d", lastValue))))
+        .withStrictAssociation(true)
+        .build());
+  }
+
+  @Test
+  public void cachesOrderInsensitiveAssociations() throws Exception {
+    final BayesModel<String> model = createModel("e");
+    final CachingEnsembleScorer<String> scorer =
+        CachingEnsembleScorer.of(model, ProbabilityEnsembles.MEAN, 100);
+
+    final double expected = model.ensembleProbability(
+        "a", ImmutableList.of("b", "c"), ProbabilityEnsembles.MEAN);
+
+    assertEquals(expected, scorer.ensembleProbability("a", ImmutableList.of("b", "c")), 0.0);
+    assertEquals(expected, scorer.ensembleProbability("a", ImmutableList.of("c", "b")), 0.0);
+    assertEquals(expected, scorer.ensembleProbability("a", ImmutableList.of("c", "b", "c")), 0.0);
+
+    assertEquals(1L, scorer.getMissCount());
+    assertEquals(2L, scorer.getHitCount());
+    assertEquals(2.0 / 3.0, scorer.getHitRate(), 0.0);
+    assertEquals(1L, scorer.size());
+
+    assertEquals("a", scorer.mostProbable(
+        ImmutableList.of("d", "a"), ImmutableList.of("b", "c")).getKey());
+    assertEquals(2L, scorer.getMissCount());
+  }
+
+  @Test
+  public void boundedSize() throws Exception {
+    final CachingEnsembleScorer<String> scorer =
+        CachingEnsembleScorer.of(createModel("e"), ProbabilityEnsembles.MEAN, 2);
+
+    for (String value : ImmutableList.of("a", "b", "c", "d", "e")) {
+      scorer.ensembleProbability(value, ImmutableList.of("b"));
+    }
+
+    assertTrue(scorer.size() <= 2);
+
+    scorer.invalidateAll();
+
+    assertEquals(0L, scorer.size());
+    assertEquals(1L, scorer.getInvalidationCount());
+  }
+
+  @Test
+  public void invalidatedOnSwap() throws Exception {
+    try (ModelHolder<String, BayesModel<String>> holder =
+        new ModelHolder.Builder<String, BayesModel<String>>()
+            .build(createModel("e"))) {
+
+      final CachingEnsembleScorer<String> scorer =
+          CachingEnsembleScorer.of(holder, ProbabilityEnsembles.MEAN, 100);
+
+      final double before = scorer.ensembleProbability("c", ImmutableList.of("b"));
+
+      assertEquals(1L, scorer.size());
+
+      final BayesModel<String> rebuiltModel = createModel("c");
+
+      holder.rebuild(() -> rebuiltModel).join();
+
+      assertEquals(0L, scorer.size());
+      assertEquals(1L, scorer.getInvalidationCount());
+
+      final double after = scorer.ensembleProbability("c", ImmutableList.of("b"));
+
+      assertTrue(before != after);
+      assertEquals(
+          rebuiltModel.ensembleProbability("c", ImmutableList.of("b"), ProbabilityEnsembles.MEAN),
+          after,
+          0.0);
+      assertEquals(2L, scorer.getMissCount());
+    }
+  }
+
+  @Test
+  public void invalidatedOnUpdate() throws Exception {
+    final UpdatableBayesModel<String> model = BayesModelBuilder
+        .buildUpdatable(new TrainingSet.Builder<Integer, String>()
+            .withTrainingRows(ImmutableList.of(
+                new TrainingRow<>(1, ImmutableList.of("a", "b", "c")),
+                new TrainingRow<>(2, ImmutableList.of("a", "b"))))
+            .withStrictAssociation(true)
+            .build());
+    final CachingEnsembleScorer<String> scorer =
+        CachingEnsembleScorer.of(model, ProbabilityEnsembles.MEAN, 100);
+
+    final double before = scorer.ensembleProbability("c", ImmutableList.of("b"));
+
+    model.update(ImmutableList.of(new TrainingRow<>(3, ImmutableList.of("b", "c"))));
+
+    final double after = scorer.ensembleProbability("c", ImmutableList.of("b"));
+
+    assertTrue(before != after);
+    assertEquals(
+        model.ensembleProbability("c", ImmutableList.of("b"), ProbabilityEnsembles.MEAN),
+        after,
+        0.0);
+    assertEquals(1L, scorer.getInvalidationCount());
+    assertEquals(2L, scorer.getMissCount());
+  }
+}
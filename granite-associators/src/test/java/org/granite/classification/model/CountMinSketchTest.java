@@ -0,0 +1,58 @@
+package org.granite.classification.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class CountMinSketchTest {
+
+  @Test
+  public void estimatesNeverUndercount() throws Exception {
+    final CountMinSketch sketch = CountMinSketch.withMemoryBudget(1 << 12, 4);
+    final double[] counts = new double[5000];
+    final Random random = new Random(3);
+
+    for (int index = 0; index < 50000; index++) {
+      final int key = (int) (counts.length * Math.pow(random.nextDouble(), 2));
+
+      sketch.add(key, 1.0);
+      counts[key]++;
+    }
+
+    assertEquals(128, sketch.getWidth());
+    assertEquals(50000.0, sketch.getTotalCount(), 0.0);
+
+    int withinBound = 0;
+
+    for (int key = 0; key < counts.length; key++) {
+      final double estimate = sketch.estimate(key);
+
+      assertTrue(estimate >= counts[key]);
+
+      if (estimate - counts[key] <= sketch.getErrorBound()) {
+        withinBound++;
+      }
+    }
+
+    assertTrue(withinBound >= sketch.getConfidence() * counts.length);
+  }
+
+  @Test
+  public void pairEstimates() throws Exception {
+    final ApproximateFrequencyCounter<String> counter =
+        new ApproximateFrequencyCounter<>(false, 1 << 12, 2);
+
+    counter.add(Arrays.asList("a", "b", "c"));
+    counter.add(Arrays.asList("a", "b"));
+
+    final CountEstimate estimate = counter.estimatePairCount("b", "a");
+
+    assertTrue(estimate.getEstimate() >= 2.0);
+    assertTrue(estimate.getLowerBound() <= 2.0);
+    assertEquals(2.0, counter.estimatePairCount("a", "a").getEstimate(), 0.0);
+    assertEquals(0.0, counter.estimatePairCount("a", "z").getEstimate(), 0.0);
+  }
+}
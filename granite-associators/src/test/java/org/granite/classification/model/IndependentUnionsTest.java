@@ -0,0 +1,48 @@
+package org.granite.classification.model;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.primitives.Doubles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.granite.math.ProbabilityTools;
+import org.junit.Test;
+
+public class IndependentUnionsTest {
+
+  @Test
+  public void leaveOneOutMatchesIndependentUnion() throws Exception {
+    final Random random = new Random(7);
+    final double[] probabilities = new double[200];
+
+    for (int index = 0; index < probabilities.length; index++) {
+      probabilities[index] = random.nextDouble() * 0.05;
+    }
+
+    final double[] unions = IndependentUnions.leaveOneOut(probabilities);
+
+    for (int index = 0; index < probabilities.length; index++) {
+      final List<Double> others = new ArrayList<>(Doubles.asList(probabilities));
+      others.remove(index);
+
+      assertEquals(ProbabilityTools.independentUnion(others), unions[index], 0.0000000001);
+    }
+  }
+
+  @Test
+  public void leaveOneOutHandlesCertainProbabilities() throws Exception {
+    final double[] unions = IndependentUnions.leaveOneOut(new double[]{1.0, 0.5, 0.25});
+
+    // Without the certain probability only 0.5 and 0.25 remain
+    assertEquals(1.0 - 0.5 * 0.75, unions[0], 0.0000000001);
+    assertEquals(1.0, unions[1], 0.0);
+    assertEquals(1.0, unions[2], 0.0);
+
+    final double[] twoCertain = IndependentUnions.leaveOneOut(new double[]{1.0, 1.0, 0.5});
+
+    assertEquals(1.0, twoCertain[0], 0.0);
+    assertEquals(1.0, twoCertain[2], 0.0);
+  }
+
+}
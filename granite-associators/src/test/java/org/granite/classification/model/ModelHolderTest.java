@@ -0,0 +1,174 @@
+package org.granite.classification.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.granite.classification.bayes.BayesModel;
+import org.granite.classification.bayes.BayesModelBuilder;
+import org.granite.classification.model.RebuildReport.Outcome;
+import org.junit.Test;
+
+public class ModelHolderTest {
+
+  private BayesModel<String> createModel(final String... extraValues) {
+    final List<TrainingRow<Integer, String>> rows = new ArrayList<>();
+
+    rows.add(new TrainingRow<>(1, ImmutableList.of("a", "b", "c")));
+    rows.add(new TrainingRow<>(2, ImmutableList.of("a", "b")));
+    rows.add(new TrainingRow<>(3, ImmutableList.copyOf(extraValues)));
+
+    return BayesModelBuilder.build(new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(rows)
+        .build());
+  }
+
+  @Test
+  public void rebuildSwapsValidatedModel() throws Exception {
+    final BayesModel<String> initialModel = createModel("d");
+    final BayesModel<String> rebuiltModel = createModel("d", "e");
+    final List<BayesModel<String>> swapped = new ArrayList<>();
+
+    try (ModelHolder<String, BayesModel<String>> holder =
+        new ModelHolder.Builder<String, BayesModel<String>>()
+            .withWarmUpQueries(ImmutableList.of(
+                new ScoringQuery<>(ImmutableList.of("a", "c"), ImmutableList.of("b"))), 10)
+            .withValidation(model -> model.getAssociationStatisticsMap().size() >= 5)
+            .build(initialModel)) {
+
+      holder.addSwapListener(swapped::add);
+
+      assertSame(initialModel, holder.get());
+      assertNull(holder.getLastRebuildReport());
+
+      final RebuildReport report = holder.rebuild(() -> rebuiltModel).join();
+
+      assertEquals(Outcome.SWAPPED, report.getOutcome());
+      assertEquals(1L, report.getGeneration());
+      assertTrue(report.getTotalNanos() >= report.getWarmUpNanos());
+      assertSame(rebuiltModel, holder.get());
+      assertEquals(1L, holder.getSnapshot().getGeneration());
+      assertEquals(ImmutableList.of(rebuiltModel), swapped);
+      assertSame(report, holder.getLastRebuildReport());
+    }
+  }
+
+  @Test
+  public void rejectedAndFailedRebuildsKeepCurrentModel() throws Exception {
+    final BayesModel<String> initialModel = createModel("d", "e");
+
+    try (ModelHolder<String, BayesModel<String>> holder =
+        new ModelHolder.Builder<String, BayesModel<String>>()
+            .withValidation(model -> model.getAssociationStatisticsMap().size() >= 5)
+            .build(initialModel)) {
+
+      final RebuildReport rejected = holder.rebuild(() -> createModel("d")).join();
+
+      assertEquals(Outcome.REJECTED, rejected.getOutcome());
+      assertSame(initialModel, holder.get());
+
+      final RebuildReport failed = holder.rebuild(() -> {
+        throw new IllegalStateException("No training rows to build from!");
+      }).join();
+
+      assertEquals(Outcome.FAILED, failed.getOutcome());
+      assertEquals(IllegalStateException.class, failed.getFailure().getClass());
+      assertEquals(0L, failed.getWarmUpNanos());
+      assertSame(initialModel, holder.get());
+      assertEquals(0L, holder.getSnapshot().getGeneration());
+    }
+  }
+
+  @Test
+  public void olderRebuildNeverReplacesNewer() throws Exception {
+    final List<Runnable> tasks = new ArrayList<>();
+    final List<BayesModel<String>> swappedModels = new ArrayList<>();
+    final BayesModel<String> olderModel = createModel("d");
+    final BayesModel<String> newerModel = createModel("e");
+
+    try (ModelHolder<String, BayesModel<String>> holder =
+        new ModelHolder.Builder<String, BayesModel<String>>()
+            .withExecutor(tasks::add)
+            .build(createModel("c"))) {
+
+      holder.addSwapListener(swappedModels::add);
+
+      final CompletableFuture<RebuildReport> older = holder.rebuild(() -> olderModel);
+      final CompletableFuture<RebuildReport> newer = holder.rebuild(() -> newerModel);
+
+      // Finish out of order
+      tasks.get(1).run();
+      tasks.get(0).run();
+
+      assertEquals(Outcome.SWAPPED, newer.join().getOutcome());
+      assertEquals(Outcome.SUPERSEDED, older.join().getOutcome());
+      assertSame(newerModel, holder.get());
+      assertEquals(2L, holder.getSnapshot().getGeneration());
+      assertEquals(2L, holder.getLastRebuildReport().getGeneration());
+      assertEquals(ImmutableList.of(newerModel), swappedModels);
+    }
+  }
+
+  @Test
+  public void olderSwapIsNotReportedAfterNewerFailure() throws Exception {
+    final List<Runnable> tasks = new ArrayList<>();
+    final List<BayesModel<String>> swappedModels = new ArrayList<>();
+    final BayesModel<String> olderModel = createModel("d");
+
+    try (ModelHolder<String, BayesModel<String>> holder =
+        new ModelHolder.Builder<String, BayesModel<String>>()
+            .withExecutor(tasks::add)
+            .build(createModel("c"))) {
+
+      holder.addSwapListener(swappedModels::add);
+
+      final CompletableFuture<RebuildReport> older = holder.rebuild(() -> olderModel);
+      final CompletableFuture<RebuildReport> newer = holder.rebuild(() -> {
+        throw new IllegalStateException("no training rows");
+      });
+
+      tasks.get(1).run();
+      tasks.get(0).run();
+
+      assertEquals(Outcome.FAILED, newer.join().getOutcome());
+      assertEquals(Outcome.SWAPPED, older.join().getOutcome());
+      assertSame(olderModel, holder.get());
+
+      // The newest report stays in place, but listeners still hear about the published model
+      assertEquals(Outcome.FAILED, holder.getLastRebuildReport().getOutcome());
+      assertEquals(ImmutableList.of(olderModel), swappedModels);
+    }
+  }
+
+  private TrainingSet<Integer, String> createTrainingSet() {
+    return new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(ImmutableList.of(new TrainingRow<>(1, ImmutableList.of("a", "b"))))
+        .build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void updatableInitialModelIsRejected() throws Exception {
+    new ModelHolder.Builder<String, BayesModel<String>>()
+        .build(BayesModelBuilder.buildUpdatable(createTrainingSet()));
+  }
+
+  @Test
+  public void updatableRebuiltModelFails() throws Exception {
+    try (ModelHolder<String, BayesModel<String>> holder =
+        new ModelHolder.Builder<String, BayesModel<String>>().build(createModel("d"))) {
+
+      final BayesModel<String> initialModel = holder.get();
+      final RebuildReport report =
+          holder.rebuild(() -> BayesModelBuilder.buildUpdatable(createTrainingSet())).join();
+
+      assertEquals(Outcome.FAILED, report.getOutcome());
+      assertEquals(IllegalArgumentException.class, report.getFailure().getClass());
+      assertSame(initialModel, holder.get());
+    }
+  }
+}
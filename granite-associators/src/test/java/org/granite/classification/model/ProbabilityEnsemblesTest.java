@@ -0,0 +1,80 @@
+package org.granite.classification.model;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.primitives.Doubles;
+import java.util.Arrays;
+import java.util.Random;
+import org.granite.math.PercentileTools;
+import org.granite.math.StatsTools;
+import org.junit.Test;
+
+public class ProbabilityEnsemblesTest {
+
+  private static double[] randomProbabilities(final Random random, final int length) {
+    final double[] result = new double[length];
+
+    for (int index = 0; index < length; index++) {
+      // Few distinct values so ties are common
+      result[index] = random.nextInt(8) / 8.0;
+    }
+
+    return result;
+  }
+
+  @Test
+  public void medianMatchesSortedMedian() throws Exception {
+    final Random random = new Random(11);
+
+    for (int length = 1; length < 60; length++) {
+      final double[] probabilities = randomProbabilities(random, length);
+      final double[] sorted = probabilities.clone();
+      Arrays.sort(sorted);
+
+      assertEquals(
+          PercentileTools.median(Doubles.asList(sorted)),
+          ProbabilityEnsembles.MEDIAN.apply(probabilities, length),
+          0.0);
+    }
+  }
+
+  @Test
+  public void percentileAndTrimmedMeanMatchSorting() throws Exception {
+    final Random random = new Random(5);
+
+    for (int length = 1; length < 60; length++) {
+      final double[] probabilities = randomProbabilities(random, length);
+      final double[] sorted = probabilities.clone();
+      Arrays.sort(sorted);
+
+      // Nearest ranks of the 90th percentile, interpolated
+      final double rank = 0.9 * (length - 1);
+      final int lowerRank = (int) rank;
+      final double expectedPercentile = lowerRank == length - 1
+          ? sorted[lowerRank]
+          : sorted[lowerRank] + (rank - lowerRank) * (sorted[lowerRank + 1] - sorted[lowerRank]);
+
+      assertEquals(expectedPercentile,
+          ProbabilityEnsembles.percentile(0.9).apply(probabilities.clone(), length), 1e-12);
+
+      final int trimmed = (int) (length * 0.2);
+
+      if (length - 2 * trimmed > 0) {
+        assertEquals(
+            StatsTools.mean(Doubles.asList(sorted).subList(trimmed, length - trimmed)),
+            ProbabilityEnsembles.trimmedMean(0.2).apply(probabilities.clone(), length),
+            1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void meanMaxAndProduct() throws Exception {
+    final double[] probabilities = new double[]{0.5, 0.25, 1.0, 0.0, 99.0};
+
+    assertEquals(0.4375, ProbabilityEnsembles.MEAN.apply(probabilities, 4), 0.0);
+    assertEquals(1.0, ProbabilityEnsembles.MAX.apply(probabilities, 4), 0.0);
+    assertEquals(0.125, ProbabilityEnsembles.PRODUCT.apply(probabilities, 3), 0.0);
+    assertEquals(0.0, ProbabilityEnsembles.MEDIAN.apply(probabilities, 0), 0.0);
+  }
+}
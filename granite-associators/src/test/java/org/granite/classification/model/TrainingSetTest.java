@@ -2,10 +2,19 @@ package org.granite.classification.model;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.granite.classification.frequency.FrequencyModel;
+import org.granite.classification.frequency.FrequencyModelBuilder;
 import org.junit.Test;
 
 
@@ -49,4 +58,414 @@ public class TrainingSetTest {
 
   }
 
-}
\ No newline at end of file
+  @Test
+  public void cooccurrenceTable() throws Exception {
+    final TrainingSet<Integer, String> trainingSet = new TrainingSet.Builder<Integer, String>()
+        .withStrictAssociation(true)
+        .withTrainingRows(createTrainingRows())
+        .build();
+
+    final CooccurrenceTable<String> table = trainingSet.getCooccurrenceTable();
+    final ValueDictionary<String> dictionary = table.getDictionary();
+
+    assertEquals(9, table.size());
+    assertEquals(ValueDictionary.UNKNOWN_ID, dictionary.getId("z"));
+
+    final int bId = dictionary.getId("b");
+    final int cId = dictionary.getId("c");
+
+    assertEquals("b", dictionary.getValue(bId));
+    assertEquals(3.0, table.getFrequency(bId), 0.0);
+    assertEquals(2.0, table.getCount(bId, cId), 0.0);
+    assertEquals(0.0, table.getCount(bId, bId), 0.0);
+    assertEquals(9.0, table.getRowTotal(bId), 0.0);
+
+    // Columns within a row are sorted by id
+    for (int index = table.getRowStart(bId) + 1; index < table.getRowEnd(bId); index++) {
+      assertTrue(table.getColumn(index - 1) < table.getColumn(index));
+    }
+
+    int pairCount = 0;
+
+    for (ImmutableMap<String, Double> row : trainingSet.getValueToValueFrequency().values()) {
+      pairCount += row.size();
+    }
+
+    assertEquals(pairCount, table.getPairCount());
+  }
+
+  private List<TrainingRow<Integer, String>> createRandomRows(
+      final int rowCount,
+      final int maximumWidth) {
+    final Random random = new Random(42);
+    final List<TrainingRow<Integer, String>> rows = new ArrayList<>();
+
+    for (int id = 0; id < rowCount; id++) {
+      final Set<String> values = new LinkedHashSet<>();
+      final int width = 1 + random.nextInt(maximumWidth);
+
+      while (values.size() < width) {
+        values.add("v" + random.nextInt(500));
+      }
+
+      rows.add(new TrainingRow<>(id, values));
+    }
+
+    return rows;
+  }
+
+  private void assertSameCounts(
+      final CooccurrenceTable<String> sequential,
+      final CooccurrenceTable<String> parallel) {
+    assertEquals(sequential.getDictionary().getValues(), parallel.getDictionary().getValues());
+    assertEquals(sequential.getPairCount(), parallel.getPairCount());
+
+    for (int id = 0; id < sequential.size(); id++) {
+      assertEquals(sequential.getFrequency(id), parallel.getFrequency(id), 0.0);
+      assertEquals(sequential.getRowTotal(id), parallel.getRowTotal(id), 0.0);
+      assertEquals(sequential.getRowStart(id), parallel.getRowStart(id));
+    }
+
+    for (int index = 0; index < sequential.getPairCount(); index++) {
+      assertEquals(sequential.getColumn(index), parallel.getColumn(index));
+      assertEquals(sequential.getCount(index), parallel.getCount(index), 0.0);
+    }
+  }
+
+  @Test
+  public void parallelBuildMatchesSequential() throws Exception {
+    final List<TrainingRow<Integer, String>> rows = createRandomRows(10000, 8);
+
+    final CooccurrenceTable<String> sequential = new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(rows)
+        .build()
+        .getCooccurrenceTable();
+
+    final CooccurrenceTable<String> parallel = new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(rows)
+        .withParallelism(4)
+        .build()
+        .getCooccurrenceTable();
+
+    assertSameCounts(sequential, parallel);
+  }
+
+  // Sampled pair weights are fractional, so summing them in another order would change them
+  @Test
+  public void parallelSampledBuildMatchesSequential() throws Exception {
+    final List<TrainingRow<Integer, String>> rows = createRandomRows(10000, 30);
+
+    final CooccurrenceTable<String> sequential = new TrainingSet.Builder<Integer, String>()
+        .withWideRowStrategy(WideRowStrategy.sample(5, 3L))
+        .withTrainingRows(rows)
+        .build()
+        .getCooccurrenceTable();
+
+    final CooccurrenceTable<String> parallel = new TrainingSet.Builder<Integer, String>()
+        .withWideRowStrategy(WideRowStrategy.sample(5, 3L))
+        .withTrainingRows(rows)
+        .withParallelism(4)
+        .build()
+        .getCooccurrenceTable();
+
+    assertSameCounts(sequential, parallel);
+  }
+
+  @Test
+  public void streamingBuild() throws Exception {
+    final TrainingSet<Integer, String> trainingSet = new TrainingSet.Builder<Integer, String>()
+        .withStrictAssociation(true)
+        .build(createTrainingRows().stream());
+
+    assertTrue(trainingSet.isCountsOnly());
+    assertTrue(trainingSet.getTrainingRows().isEmpty());
+    assertEquals(16, (int) trainingSet.getTotalValueFrequency());
+    assertEquals(3, (int) ((double) trainingSet.getValueFrequency().get("b")));
+    assertEquals(2, (int) ((double) trainingSet.getValueToValueFrequency().get("b").get("c")));
+    assertNull(trainingSet.getValueToValueFrequency().get("b").get("b"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void streamingBuildRejectsDuplicates() throws Exception {
+    new TrainingSet.Builder<Integer, String>()
+        .build(Stream.of(new TrainingRow<>(100, ImmutableList.of("a", "a"))));
+  }
+
+  @Test
+  public void approximateBuild() throws Exception {
+    final Random random = new Random(17);
+    final List<TrainingRow<Integer, String>> rows = new ArrayList<>();
+
+    for (int id = 0; id < 2000; id++) {
+      final Set<String> values = new LinkedHashSet<>();
+      final int width = 1 + random.nextInt(8);
+
+      // Skewed so some pairs are much more frequent than others
+      while (values.size() < width) {
+        values.add("v" + (int) (500 * Math.pow(random.nextDouble(), 3)));
+      }
+
+      rows.add(new TrainingRow<>(id, values));
+    }
+
+    final CooccurrenceTable<String> exact = new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(rows)
+        .build()
+        .getCooccurrenceTable();
+
+    final TrainingSet<Integer, String> approximateSet = new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(rows)
+        .withApproximateCounting(1 << 15, 8)
+        .build();
+
+    final CooccurrenceTable<String> approximate = approximateSet.getCooccurrenceTable();
+    final double errorBound = approximateSet.getPairCountErrorBound();
+
+    assertTrue(approximateSet.isApproximate());
+    assertTrue(approximate.getPairCount() < exact.getPairCount());
+    assertEquals(exact.getDictionary().getValues(), approximate.getDictionary().getValues());
+
+    int withinBound = 0;
+
+    for (int id = 0; id < exact.size(); id++) {
+      assertEquals(exact.getFrequency(id), approximate.getFrequency(id), 0.0);
+      assertEquals(exact.getRowTotal(id), approximate.getRowTotal(id), 0.0);
+
+      for (int index = approximate.getRowStart(id); index < approximate.getRowEnd(id); index++) {
+        final double exactCount = exact.getCount(id, approximate.getColumn(index));
+
+        assertTrue(approximate.getCount(index) >= exactCount);
+
+        if (approximate.getCount(index) - exactCount <= errorBound) {
+          withinBound++;
+        }
+      }
+    }
+
+    assertTrue(withinBound >= 0.95 * approximate.getPairCount());
+  }
+
+
+  @Test
+  public void decayedBuild() throws Exception {
+    final long day = Duration.ofDays(1).toMillis();
+
+    // Out of order, so the first row is not the oldest
+    final TrainingSet<Integer, String> trainingSet = new TrainingSet.Builder<Integer, String>()
+        .withStrictAssociation(true)
+        .withDecay(Duration.ofDays(1))
+        .withTrainingRows(ImmutableList.of(
+            new TrainingRow<>(2, ImmutableList.of("a", "c")).withTimestamp(2 * day),
+            new TrainingRow<>(1, ImmutableList.of("a", "b")).withTimestamp(day)))
+        .build();
+
+    final CooccurrenceTable<String> table = trainingSet.getCooccurrenceTable();
+    final int a = table.getDictionary().getId("a");
+    final int b = table.getDictionary().getId("b");
+    final int c = table.getDictionary().getId("c");
+
+    assertTrue(trainingSet.isDecayed());
+    assertEquals(2 * day, trainingSet.getDecay().getLandmark());
+    assertEquals(3.0, trainingSet.getTotalValueFrequency(), 0.0000001);
+    assertEquals(1.5, table.getFrequency(a), 0.0000001);
+    assertEquals(0.5, table.getFrequency(b), 0.0000001);
+    assertEquals(0.5, table.getCount(a, b), 0.0000001);
+    assertEquals(1.0, table.getCount(a, c), 0.0000001);
+    assertEquals(1.5, table.getRowTotal(a), 0.0000001);
+  }
+
+  @Test
+  public void decayedBuildRescales() throws Exception {
+    final List<TrainingRow<Integer, String>> rows = new ArrayList<>();
+
+    // Spans far more than 2^64 worth of weight
+    for (int day = 0; day <= 200; day++) {
+      rows.add(new TrainingRow<>(day, ImmutableList.of("a", day % 2 == 0 ? "b" : "c"))
+          .withTimestamp(Duration.ofDays(day).toMillis()));
+    }
+
+    final TrainingSet<Integer, String> trainingSet = new TrainingSet.Builder<Integer, String>()
+        .withDecay(Duration.ofDays(2))
+        .withTrainingRows(rows)
+        .build();
+
+    // a occurs daily: Σ 2^(-d/2) over d = 0..200
+    final double expected = 1.0 / (1.0 - Math.pow(2.0, -0.5));
+    final CooccurrenceTable<String> table = trainingSet.getCooccurrenceTable();
+
+    assertEquals(expected, table.getFrequency(table.getDictionary().getId("a")), 0.0000001);
+    assertEquals(1.0 / (1.0 - 0.5),
+        table.getFrequency(table.getDictionary().getId("b")), 0.0000001);
+    assertEquals(2.0 * expected, trainingSet.getTotalValueFrequency(), 0.0000001);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void decayedBuildRejectsRowsWithoutTimestamp() throws Exception {
+    new TrainingSet.Builder<Integer, String>()
+        .withDecay(Duration.ofDays(1))
+        .withTrainingRows(ImmutableList.of(
+            new TrainingRow<>(1, ImmutableList.of("a", "b")).withTimestamp(0L),
+            new TrainingRow<>(2, ImmutableList.of("a", "c"))))
+        .build();
+  }
+
+  @Test
+  public void decayedBuildSkipsRowsWithNoWeight() throws Exception {
+    final long day = Duration.ofDays(1).toMillis();
+
+    // Over 1075 half-lives older than the first row, so its weight underflows to zero
+    final TrainingSet<Integer, String> trainingSet = new TrainingSet.Builder<Integer, String>()
+        .withStrictAssociation(true)
+        .withDecay(Duration.ofDays(1))
+        .withTrainingRows(ImmutableList.of(
+            new TrainingRow<>(1, ImmutableList.of("a", "b")).withTimestamp(2000 * day),
+            new TrainingRow<>(2, ImmutableList.of("a", "c")).withTimestamp(0L)))
+        .build();
+
+    final CooccurrenceTable<String> table = trainingSet.getCooccurrenceTable();
+    final int a = table.getDictionary().getId("a");
+
+    assertEquals(ValueDictionary.UNKNOWN_ID, table.getDictionary().getId("c"));
+    assertEquals(2.0, trainingSet.getTotalValueFrequency(), 0.0000001);
+    assertEquals(1.0, table.getFrequency(a), 0.0000001);
+    assertEquals(1.0, table.getRowTotal(a), 0.0000001);
+
+    // Scores as if the old row was never given
+    final FrequencyModel<String> model = FrequencyModelBuilder.build(trainingSet);
+    final FrequencyModel<String> recentModel = FrequencyModelBuilder.build(
+        new TrainingSet.Builder<Integer, String>()
+            .withStrictAssociation(true)
+            .withTrainingRows(ImmutableList.of(
+                new TrainingRow<>(1, ImmutableList.of("a", "b"))))
+            .build());
+
+    assertEquals(
+        recentModel.meanProbability("b", ImmutableList.of("a")),
+        model.meanProbability("b", ImmutableList.of("a")),
+        0.0000001);
+    assertEquals(0.0, model.meanProbability("c", ImmutableList.of("a")), 0.0);
+  }
+
+  private List<String> createWideRow(final int width) {
+    final List<String> result = new ArrayList<>();
+
+    for (int index = 0; index < width; index++) {
+      result.add("w" + index);
+    }
+
+    return result;
+  }
+
+  @Test
+  public void cappedWideRows() throws Exception {
+    final TrainingSet<Integer, String> trainingSet = new TrainingSet.Builder<Integer, String>()
+        .withStrictAssociation(true)
+        .withWideRowStrategy(WideRowStrategy.cap(4))
+        .withTrainingRows(ImmutableList.of(
+            new TrainingRow<>(1, createWideRow(10)),
+            new TrainingRow<>(2, createWideRow(3))))
+        .build();
+
+    final CooccurrenceTable<String> table = trainingSet.getCooccurrenceTable();
+
+    assertEquals(4, table.size());
+    assertEquals(7.0, trainingSet.getTotalValueFrequency(), 0.0);
+    assertEquals(3.0, table.getRowTotal(table.getDictionary().getId("w3")), 0.0);
+    assertEquals(1L, trainingSet.getWideRowReport().getLimitedRows());
+    assertEquals(6L, trainingSet.getWideRowReport().getTruncatedValues());
+  }
+
+  @Test
+  public void windowedWideRows() throws Exception {
+    final TrainingSet<Integer, String> trainingSet = new TrainingSet.Builder<Integer, String>()
+        .withStrictAssociation(true)
+        .withWideRowStrategy(WideRowStrategy.window(1))
+        .withTrainingRows(ImmutableList.of(
+            new TrainingRow<>(1, ImmutableList.of("a", "b", "c", "d")),
+            new TrainingRow<>(2, ImmutableList.of("a", "c"))))
+        .build();
+
+    final ImmutableMap<String, ImmutableMap<String, Double>> pairs =
+        trainingSet.getValueToValueFrequency();
+
+    assertEquals(ImmutableMap.of("b", 1.0, "c", 1.0), pairs.get("a"));
+    assertEquals(ImmutableMap.of("a", 1.0, "c", 1.0), pairs.get("b"));
+    assertEquals(ImmutableMap.of("c", 1.0), pairs.get("d"));
+    assertEquals(1L, trainingSet.getWideRowReport().getLimitedRows());
+    assertEquals(0L, trainingSet.getWideRowReport().getTruncatedValues());
+  }
+
+  @Test
+  public void sampledWideRows() throws Exception {
+    final TrainingSet<Integer, String> trainingSet = new TrainingSet.Builder<Integer, String>()
+        .withStrictAssociation(true)
+        .withWideRowStrategy(WideRowStrategy.sample(10, 7L))
+        .withTrainingRows(ImmutableList.of(new TrainingRow<>(1, createWideRow(100))))
+        .build();
+
+    final CooccurrenceTable<String> table = trainingSet.getCooccurrenceTable();
+
+    assertEquals(1000, table.getPairCount());
+
+    for (int id = 0; id < table.size(); id++) {
+      assertEquals(10, table.getRowEnd(id) - table.getRowStart(id));
+      assertEquals(99.0, table.getRowTotal(id), 0.0000001);
+
+      for (int index = table.getRowStart(id); index < table.getRowEnd(id); index++) {
+        assertTrue(table.getColumn(index) != id);
+        assertEquals(9.9, table.getCount(index), 0.0000001);
+        assertEquals(table.getCount(index), table.getCount(table.getColumn(index), id), 0.0);
+      }
+    }
+
+    // Narrow rows are exact and sampling is repeatable
+    final TrainingSet<Integer, String> repeated = new TrainingSet.Builder<Integer, String>()
+        .withStrictAssociation(true)
+        .withWideRowStrategy(WideRowStrategy.sample(10, 7L))
+        .withTrainingRows(ImmutableList.of(
+            new TrainingRow<>(1, createWideRow(100)),
+            new TrainingRow<>(2, createWideRow(5))))
+        .build();
+
+    assertEquals(
+        table.getCount(table.getDictionary().getId("w50"), table.getDictionary().getId("w60")),
+        repeated.getCooccurrenceTable().getCount(
+            repeated.getCooccurrenceTable().getDictionary().getId("w50"),
+            repeated.getCooccurrenceTable().getDictionary().getId("w60")),
+        0.0);
+    assertEquals(1L, repeated.getWideRowReport().getLimitedRows());
+  }
+
+  @Test
+  public void sampledWideRowsAreSymmetric() throws Exception {
+    final Random random = new Random(3);
+
+    // Odd and even widths and sample sizes take different paths through the sampling
+    for (int width : new int[]{9, 10, 51, 52}) {
+      for (int pairsPerValue : new int[]{1, 2, 3, 6}) {
+        final TrainingSet<Integer, String> trainingSet = new TrainingSet.Builder<Integer, String>()
+            .withStrictAssociation(true)
+            .withWideRowStrategy(WideRowStrategy.sample(pairsPerValue, random.nextLong()))
+            .withTrainingRows(ImmutableList.of(new TrainingRow<>(1, createWideRow(width))))
+            .build();
+
+        final CooccurrenceTable<String> table = trainingSet.getCooccurrenceTable();
+        final int partners = width % 2 == 1 && pairsPerValue % 2 == 1
+            ? pairsPerValue + 1
+            : pairsPerValue;
+
+        for (int id = 0; id < table.size(); id++) {
+          assertEquals(partners, table.getRowEnd(id) - table.getRowStart(id));
+          assertEquals(width - 1.0, table.getRowTotal(id), 0.0000001);
+
+          for (int index = table.getRowStart(id); index < table.getRowEnd(id); index++) {
+            assertEquals(
+                table.getCount(index),
+                table.getCount(table.getColumn(index), id),
+                0.0);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package org.granite.classification.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.granite.classification.bayes.BayesAssociationStatistics;
+import org.granite.classification.bayes.BayesModel;
+import org.granite.classification.bayes.BayesModelBuilder;
+import org.granite.classification.frequency.FrequencyModel;
+import org.granite.classification.frequency.FrequencyModelBuilder;
+import org.granite.classification.model.TrainingRow;
+import org.granite.classification.model.TrainingSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedAssociationModelTest {
+
+  private static final List<String> VALUES = ImmutableList
+      .of("a", "b", "c", "d", "e", "f", "g", "h", "i", "z");
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private TrainingSet<Integer, String> createTrainingSet() {
+    final List<TrainingRow<Integer, String>> result = new ArrayList<>();
+
+    // a, b, c, d, e, f, g, h, i
+    // 1, 2, 3, 4, 5, 6, 7, 8, 9
+    result.add(new TrainingRow<>(100, ImmutableList.of("a", "b", "c", "d")));
+    result.add(new TrainingRow<>(200, ImmutableList.of("a", "e", "f", "d")));
+    result.add(new TrainingRow<>(300, ImmutableList.of("g", "b", "c", "e")));
+    result.add(new TrainingRow<>(400, ImmutableList.of("f", "h", "i", "b")));
+
+    return new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(result)
+        .build();
+  }
+
+  @Test
+  public void bayesRoundTrip() throws Exception {
+    final BayesModel<String> model = BayesModelBuilder.build(createTrainingSet());
+    final File file = temporaryFolder.newFile();
+
+    BinaryModelWriter.write(model, ValueCodecs.STRING, file.toPath());
+
+    final MappedAssociationModel<String> mapped = MappedAssociationModel
+        .open(file.toPath(), ValueCodecs.STRING);
+
+    assertTrue(mapped.isBayes());
+    assertEquals(model.getTotalValueFrequency(), mapped.getTotalValueFrequency(), 0.0);
+    assertEquals(9, mapped.getAssociationStatisticsMap().size());
+    assertNull(mapped.getAssociationStatistics("z"));
+
+    for (String value : VALUES) {
+      assertEquals(
+          model.supportingProbabilities(value, VALUES),
+          mapped.supportingProbabilities(value, VALUES));
+    }
+
+    final BayesAssociationStatistics<String> expected = model.getAssociationStatistics("b");
+    final BayesAssociationStatistics<String> actual =
+        (BayesAssociationStatistics<String>) mapped.getAssociationStatistics("b");
+
+    assertEquals(expected.getLikelihood(), actual.getLikelihood(), 0.0);
+    assertEquals(expected.getAssociatedValueProbabilities(),
+        actual.getAssociatedValueProbabilities());
+    assertEquals(expected.getAssociatedValuePosteriorProbabilities(),
+        actual.getAssociatedValuePosteriorProbabilities());
+  }
+
+  @Test
+  public void frequencyRoundTrip() throws Exception {
+    final FrequencyModel<String> model = FrequencyModelBuilder.build(createTrainingSet());
+    final File file = temporaryFolder.newFile();
+
+    BinaryModelWriter.write(model, ValueCodecs.STRING, file.toPath());
+
+    final MappedAssociationModel<String> mapped = MappedAssociationModel
+        .open(file.toPath(), ValueCodecs.STRING);
+
+    assertFalse(mapped.isBayes());
+
+    for (String value : VALUES) {
+      assertEquals(
+          model.meanProbability(value, VALUES),
+          mapped.meanProbability(value, VALUES),
+          0.0);
+    }
+  }
+
+  @Test
+  public void offHeapCopy() throws Exception {
+    final BayesModel<String> model = BayesModelBuilder.build(createTrainingSet());
+
+    final MappedAssociationModel<String> offHeap = MappedAssociationModel
+        .copyOf(model, ValueCodecs.STRING);
+
+    assertTrue(offHeap.isBayes());
+
+    for (String value : VALUES) {
+      assertEquals(
+          model.supportingProbabilities(value, VALUES),
+          offHeap.supportingProbabilities(value, VALUES));
+    }
+
+    assertEquals(
+        model.getAssociationStatistics("c").getAssociatedValueProbabilities(),
+        offHeap.getAssociationStatisticsMap().get("c").getAssociatedValueProbabilities());
+  }
+
+}
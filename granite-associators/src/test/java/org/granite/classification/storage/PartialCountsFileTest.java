@@ -0,0 +1,201 @@
+package org.granite.classification.storage;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.granite.classification.frequency.FrequencyModel;
+import org.granite.classification.frequency.FrequencyModelBuilder;
+import org.granite.classification.model.CooccurrenceTable;
+import org.granite.classification.model.PartialCounts;
+import org.granite.classification.model.TrainingRow;
+import org.granite.classification.model.TrainingSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PartialCountsFileTest {
+
+  private static final List<String> VALUES = ImmutableList
+      .of("a", "b", "c", "d", "e", "f", "g", "h", "i", "z");
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private List<TrainingRow<Integer, String>> createTrainingRows() {
+    final List<TrainingRow<Integer, String>> result = new ArrayList<>();
+
+    result.add(new TrainingRow<>(100, ImmutableList.of("a", "b", "c", "d")));
+    result.add(new TrainingRow<>(200, ImmutableList.of("a", "e", "f", "d")));
+    result.add(new TrainingRow<>(300, ImmutableList.of("g", "b", "c", "e")));
+    result.add(new TrainingRow<>(400, ImmutableList.of("f", "h", "i", "b")));
+    result.add(new TrainingRow<>(500, ImmutableList.of("i", "a")));
+
+    return result;
+  }
+
+  @Test
+  public void mergedShardsMatchSingleBuild() throws Exception {
+    final List<TrainingRow<Integer, String>> rows = createTrainingRows();
+    final List<List<TrainingRow<Integer, String>>> shards = ImmutableList
+        .of(rows.subList(0, 2), rows.subList(2, 2), rows.subList(2, 5));
+
+    // Each shard is counted and written on its own, as a separate worker would
+    final List<PartialCounts<String>> readBack = new ArrayList<>();
+
+    for (List<TrainingRow<Integer, String>> shard : shards) {
+      final File file = temporaryFolder.newFile();
+
+      PartialCountsFile.write(
+          PartialCounts.count(shard.iterator(), true),
+          ValueCodecs.STRING,
+          file.toPath());
+
+      readBack.add(PartialCountsFile.read(file.toPath(), ValueCodecs.STRING));
+    }
+
+    final PartialCounts<String> merged = PartialCounts.merge(readBack);
+
+    final TrainingSet<Integer, String> expected = new TrainingSet.Builder<Integer, String>()
+        .withStrictAssociation(true)
+        .withTrainingRows(rows)
+        .build();
+
+    assertEquals(expected.getValueToValueFrequency(),
+        merged.getCooccurrenceTable().toValueToValueFrequencyMap());
+    assertEquals(expected.getCooccurrenceTable().getDictionary().getValues(),
+        merged.getCooccurrenceTable().getDictionary().getValues());
+
+    final FrequencyModel<String> model = FrequencyModelBuilder.build(expected);
+    final FrequencyModel<String> mergedModel = FrequencyModelBuilder
+        .build(merged.<Integer>toTrainingSet());
+
+    assertEquals(model.getTotalValueFrequency(), mergedModel.getTotalValueFrequency(), 0.0);
+
+    for (String value : VALUES) {
+      assertEquals(
+          model.supportingProbabilities(value, VALUES),
+          mergedModel.supportingProbabilities(value, VALUES));
+    }
+  }
+
+  @Test
+  public void mergeIsAssociative() throws Exception {
+    final List<TrainingRow<Integer, String>> rows = createTrainingRows();
+
+    final PartialCounts<String> first = PartialCounts.count(rows.subList(0, 1).iterator(), false);
+    final PartialCounts<String> second = PartialCounts.count(rows.subList(1, 3).iterator(), false);
+    final PartialCounts<String> third = PartialCounts.count(rows.subList(3, 5).iterator(), false);
+
+    final PartialCounts<String> left = first.merge(second).merge(third);
+    final PartialCounts<String> right = first.merge(second.merge(third));
+
+    assertEquals(left.getTotalValueFrequency(), right.getTotalValueFrequency(), 0.0);
+    assertEquals(left.getCooccurrenceTable().getDictionary().getValues(),
+        right.getCooccurrenceTable().getDictionary().getValues());
+    assertEquals(left.getCooccurrenceTable().toValueToValueFrequencyMap(),
+        right.getCooccurrenceTable().toValueToValueFrequencyMap());
+  }
+
+  // Approximate rows hold only part of each value's associations, so their totals are larger
+  // than the row sums
+  @Test
+  public void rowTotalsSurviveRoundTripAndMerge() throws Exception {
+    final CooccurrenceTable<String> table = CooccurrenceTable.of(
+        ImmutableList.of("a", "b"),
+        new double[] {2.0, 2.0},
+        new int[] {0, 1, 2},
+        new int[] {1, 0},
+        new double[] {1.0, 1.0},
+        new double[] {5.0, 3.0});
+    final File file = temporaryFolder.newFile();
+
+    PartialCountsFile.write(
+        new PartialCounts<>(table, 4.0, false),
+        ValueCodecs.STRING,
+        file.toPath());
+
+    final PartialCounts<String> readBack =
+        PartialCountsFile.read(file.toPath(), ValueCodecs.STRING);
+
+    assertEquals(5.0, readBack.getCooccurrenceTable().getRowTotal(0), 0.0);
+    assertEquals(3.0, readBack.getCooccurrenceTable().getRowTotal(1), 0.0);
+
+    final CooccurrenceTable<String> merged = readBack.merge(readBack).getCooccurrenceTable();
+
+    assertEquals(10.0, merged.getRowTotal(0), 0.0);
+    assertEquals(6.0, merged.getRowTotal(1), 0.0);
+  }
+
+  // An approximate set would come back without its error bound
+  @Test(expected = IllegalArgumentException.class)
+  public void approximateSetsAreNotPartialCounts() throws Exception {
+    final TrainingSet<Integer, String> approximateSet = new TrainingSet.Builder<Integer, String>()
+        .withTrainingRows(createTrainingRows())
+        .withApproximateCounting(1 << 10, 2)
+        .build();
+
+    PartialCountsFile.write(
+        PartialCounts.of(approximateSet),
+        ValueCodecs.STRING,
+        temporaryFolder.newFile().toPath());
+  }
+
+  // Each decayed shard is expressed as of its own latest row
+  @Test
+  public void mergedDecayedShardsMatchSingleBuild() throws Exception {
+    final List<TrainingRow<Integer, String>> rows = createTrainingRows();
+
+    for (int index = 0; index < rows.size(); index++) {
+      rows.get(index).withTimestamp(Duration.ofDays(index + 1).toMillis());
+    }
+
+    final List<PartialCounts<String>> readBack = new ArrayList<>();
+
+    for (List<TrainingRow<Integer, String>> shard : ImmutableList
+        .of(rows.subList(0, 3), rows.subList(3, 5))) {
+      final File file = temporaryFolder.newFile();
+
+      PartialCountsFile.write(
+          PartialCounts.of(new TrainingSet.Builder<Integer, String>()
+              .withDecay(Duration.ofDays(2))
+              .withTrainingRows(shard)
+              .build()),
+          ValueCodecs.STRING,
+          file.toPath());
+
+      readBack.add(PartialCountsFile.read(file.toPath(), ValueCodecs.STRING));
+    }
+
+    final PartialCounts<String> merged = PartialCounts.merge(readBack);
+
+    final TrainingSet<Integer, String> expected = new TrainingSet.Builder<Integer, String>()
+        .withDecay(Duration.ofDays(2))
+        .withTrainingRows(rows)
+        .build();
+
+    assertEquals(expected.getDecay().getLandmark(), merged.getDecay().getLandmark());
+    assertEquals(expected.getTotalValueFrequency(), merged.getTotalValueFrequency(), 0.0000001);
+
+    final CooccurrenceTable<String> expectedTable = expected.getCooccurrenceTable();
+    final CooccurrenceTable<String> mergedTable = merged.getCooccurrenceTable();
+
+    assertEquals(expectedTable.getDictionary().getValues(),
+        mergedTable.getDictionary().getValues());
+
+    for (int row = 0; row < expectedTable.size(); row++) {
+      assertEquals(expectedTable.getFrequency(row), mergedTable.getFrequency(row), 0.0000001);
+      assertEquals(expectedTable.getRowTotal(row), mergedTable.getRowTotal(row), 0.0000001);
+
+      for (int column = 0; column < expectedTable.size(); column++) {
+        assertEquals(
+            expectedTable.getCount(row, column),
+            mergedTable.getCount(row, column),
+            0.0000001);
+      }
+    }
+  }
+}
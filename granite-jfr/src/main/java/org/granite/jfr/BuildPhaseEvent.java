@@ -0,0 +1,21 @@
+package org.granite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.granite.BuildPhase")
+@Label("Build Phase")
+@Description("One phase of building a training set or model")
+@Category({"Granite", "Training"})
+class BuildPhaseEvent extends Event {
+
+  @Label("Phase")
+  String phase;
+
+  @Label("Items")
+  @Description("Rows processed by training set phases, values processed by model phases")
+  long items;
+}
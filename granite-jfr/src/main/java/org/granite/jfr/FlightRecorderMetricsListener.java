@@ -0,0 +1,117 @@
+package org.granite.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import org.granite.classification.metrics.BuildPhase;
+import org.granite.classification.metrics.MetricsListener;
+import org.granite.classification.metrics.ModelSize;
+
+/**
+ * Emits build and scoring measurements as JFR events. Registered as the metrics listener when
+ * this module is on the classpath. Events begin before the work they measure and end after it,
+ * so their duration, thresholds and place on the timeline are those of the work. Scoring queries
+ * are only timed while a recording has the scoring event enabled, and then only one in every
+ * sample interval, set with the granite.jfr.sampleInterval system property.
+ */
+public class FlightRecorderMetricsListener implements MetricsListener {
+
+  private static final EventType SCORING_EVENT_TYPE = EventType.getEventType(ScoringEvent.class);
+
+  private final int sampleInterval;
+
+  public FlightRecorderMetricsListener() {
+    this(Sampling.defaultInterval());
+  }
+
+  public FlightRecorderMetricsListener(final int sampleInterval) {
+    this.sampleInterval = Sampling.checkInterval(sampleInterval);
+  }
+
+  public int getSampleInterval() {
+    return sampleInterval;
+  }
+
+  @Override
+  public Object beginPhase(final BuildPhase phase) {
+    return begin(new BuildPhaseEvent());
+  }
+
+  @Override
+  public void onPhase(
+      final Object token,
+      final BuildPhase phase,
+      final long items,
+      final long elapsedNanos) {
+    if (token instanceof BuildPhaseEvent) {
+      final BuildPhaseEvent event = (BuildPhaseEvent) token;
+
+      event.end();
+
+      if (event.shouldCommit()) {
+        event.phase = phase.name();
+        event.items = items;
+        event.commit();
+      }
+    }
+  }
+
+  @Override
+  public Object beginModelBuild() {
+    return begin(new ModelBuildEvent());
+  }
+
+  @Override
+  public void onModelBuilt(
+      final Object token,
+      final ModelSize modelSize,
+      final long elapsedNanos) {
+    if (token instanceof ModelBuildEvent) {
+      final ModelBuildEvent event = (ModelBuildEvent) token;
+
+      event.end();
+
+      if (event.shouldCommit()) {
+        event.modelType = modelSize.getModelType().getSimpleName();
+        event.values = modelSize.getValues();
+        event.pairs = modelSize.getPairs();
+        event.estimatedBytes = modelSize.getEstimatedBytes();
+        event.commit();
+      }
+    }
+  }
+
+  @Override
+  public Object beginScoringQuery() {
+    return SCORING_EVENT_TYPE.isEnabled() && Sampling.sample(sampleInterval)
+        ? begin(new ScoringEvent())
+        : null;
+  }
+
+  @Override
+  public void onScoringQuery(
+      final Object token,
+      final int givenAssociations,
+      final long elapsedNanos) {
+    if (token instanceof ScoringEvent) {
+      final ScoringEvent event = (ScoringEvent) token;
+
+      event.end();
+
+      if (event.shouldCommit()) {
+        event.givenAssociations = givenAssociations;
+        event.commit();
+      }
+    }
+  }
+
+  // Null when no recording has the event enabled, so nothing is kept until the report
+  private static Event begin(final Event event) {
+    if (!event.isEnabled()) {
+      return null;
+    }
+
+    event.begin();
+
+    return event;
+  }
+}
@@ -0,0 +1,73 @@
+package org.granite.jfr;
+
+import jdk.jfr.EventType;
+import org.granite.nlp.phrases.PhraseTreeListener;
+
+/**
+ * Emits sampled phrase tree lookups as JFR events that span the lookup. Registered as the
+ * phrase tree listener when this module is on the classpath, sampling the same way as the
+ * metrics listener.
+ */
+public class FlightRecorderPhraseTreeListener implements PhraseTreeListener {
+
+  private static final EventType LOOKUP_EVENT_TYPE =
+      EventType.getEventType(PhraseLookupEvent.class);
+
+  private final int sampleInterval;
+
+  public FlightRecorderPhraseTreeListener() {
+    this(Sampling.defaultInterval());
+  }
+
+  public FlightRecorderPhraseTreeListener(final int sampleInterval) {
+    this.sampleInterval = Sampling.checkInterval(sampleInterval);
+  }
+
+  @Override
+  public Object beginLookup() {
+    if (!LOOKUP_EVENT_TYPE.isEnabled() || !Sampling.sample(sampleInterval)) {
+      return null;
+    }
+
+    final PhraseLookupEvent event = new PhraseLookupEvent();
+
+    event.begin();
+
+    return event;
+  }
+
+  @Override
+  public void onGet(
+      final Object token,
+      final int words,
+      final boolean found,
+      final long elapsedNanos) {
+    commit(token, "get", words, found);
+  }
+
+  @Override
+  public void onComputeIfAbsent(final Object token, final int words, final long elapsedNanos) {
+    commit(token, "computeIfAbsent", words, words > 0);
+  }
+
+  private static void commit(
+      final Object token,
+      final String operation,
+      final int words,
+      final boolean found) {
+    if (!(token instanceof PhraseLookupEvent)) {
+      return;
+    }
+
+    final PhraseLookupEvent event = (PhraseLookupEvent) token;
+
+    event.end();
+
+    if (event.shouldCommit()) {
+      event.operation = operation;
+      event.words = words;
+      event.found = found;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package org.granite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.granite.ModelBuild")
+@Label("Model Build")
+@Description("A frequency or Bayes model built from a training set")
+@Category({"Granite", "Training"})
+class ModelBuildEvent extends Event {
+
+  @Label("Model Type")
+  String modelType;
+
+  @Label("Values")
+  long values;
+
+  @Label("Pairs")
+  long pairs;
+
+  @Label("Estimated Size")
+  @DataAmount
+  long estimatedBytes;
+}
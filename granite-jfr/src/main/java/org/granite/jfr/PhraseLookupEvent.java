@@ -0,0 +1,23 @@
+package org.granite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.granite.PhraseLookup")
+@Label("Phrase Lookup")
+@Description("A sampled PhraseTree get or computeIfAbsent")
+@Category({"Granite", "Phrases"})
+class PhraseLookupEvent extends Event {
+
+  @Label("Operation")
+  String operation;
+
+  @Label("Words")
+  int words;
+
+  @Label("Found")
+  boolean found;
+}
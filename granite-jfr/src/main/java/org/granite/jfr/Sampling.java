@@ -0,0 +1,29 @@
+package org.granite.jfr;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// One in every interval calls is sampled, at random so periodic traffic is not aliased
+class Sampling {
+
+  static final String SAMPLE_INTERVAL_PROPERTY = "granite.jfr.sampleInterval";
+  static final int DEFAULT_SAMPLE_INTERVAL = 100;
+
+  private Sampling() {
+
+  }
+
+  static int defaultInterval() {
+    return checkInterval(Integer.getInteger(SAMPLE_INTERVAL_PROPERTY, DEFAULT_SAMPLE_INTERVAL));
+  }
+
+  static int checkInterval(final int sampleInterval) {
+    checkArgument(sampleInterval >= 1, "sampleInterval must be >= 1");
+    return sampleInterval;
+  }
+
+  static boolean sample(final int sampleInterval) {
+    return sampleInterval == 1 || ThreadLocalRandom.current().nextInt(sampleInterval) == 0;
+  }
+}
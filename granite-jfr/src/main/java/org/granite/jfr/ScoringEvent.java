@@ -0,0 +1,17 @@
+package org.granite.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.granite.Scoring")
+@Label("Scoring")
+@Description("A sampled ensemble probability of one value")
+@Category({"Granite", "Scoring"})
+class ScoringEvent extends Event {
+
+  @Label("Given Associations")
+  int givenAssociations;
+}
@@ -0,0 +1,110 @@
+package org.granite.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.granite.classification.bayes.BayesModel;
+import org.granite.classification.bayes.BayesModelBuilder;
+import org.granite.classification.metrics.Metrics;
+import org.granite.classification.model.ProbabilityEnsembles;
+import org.granite.classification.model.TrainingRow;
+import org.granite.classification.model.TrainingSet;
+import org.granite.nlp.phrases.HashPhraseTree;
+import org.granite.nlp.phrases.PhraseTreeMetrics;
+import org.junit.After;
+import org.junit.Test;
+
+public class FlightRecorderMetricsListenerTest {
+
+  @After
+  public void clearListeners() {
+    Metrics.clearListener();
+    PhraseTreeMetrics.clearListener();
+  }
+
+  @Test
+  public void recordsEvents() throws Exception {
+    Metrics.setListener(new FlightRecorderMetricsListener(1));
+    PhraseTreeMetrics.setListener(new FlightRecorderPhraseTreeListener(1));
+
+    final Path file = Files.createTempFile("granite", ".jfr");
+    final Map<String, Integer> eventCounts = new HashMap<>();
+
+    try (Recording recording = new Recording()) {
+      recording.enable(BuildPhaseEvent.class);
+      recording.enable(ModelBuildEvent.class);
+      recording.enable(ScoringEvent.class);
+      recording.enable(PhraseLookupEvent.class);
+      recording.start();
+
+      final BayesModel<String> model = BayesModelBuilder.build(
+          new TrainingSet.Builder<Integer, String>()
+              .withTrainingRows(ImmutableList.of(
+                  new TrainingRow<>(1, ImmutableList.of("a", "b", "c")),
+                  new TrainingRow<>(2, ImmutableList.of("b", "d"))))
+              .withStrictAssociation(true)
+              .build());
+
+      for (int index = 0; index < 10; index++) {
+        model.ensembleProbability("a", ImmutableList.of("b", "c"), ProbabilityEnsembles.MEAN);
+      }
+
+      final HashPhraseTree phraseTree = new HashPhraseTree(
+          ImmutableSet.of("the"),
+          ImmutableSet.of(),
+          list -> list);
+
+      phraseTree.computeIfAbsent("the quick brown fox");
+      phraseTree.get("brown fox quick");
+
+      recording.stop();
+      recording.dump(file);
+    }
+
+    try {
+      for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+        eventCounts.merge(event.getEventType().getName(), 1, Integer::sum);
+
+        // Events begin before the build, so they span it rather than just the commit
+        if (event.getEventType().getName().equals("org.granite.ModelBuild")) {
+          assertTrue(event.getDuration().toNanos() > 0L);
+          assertEquals("BayesModel", event.getString("modelType"));
+          assertEquals(4L, event.getLong("values"));
+          assertEquals(8L, event.getLong("pairs"));
+        }
+      }
+    } finally {
+      Files.delete(file);
+    }
+
+    // Two training set phases, then probabilities, likelihoods and posteriors
+    assertEquals(5, (int) eventCounts.get("org.granite.BuildPhase"));
+    assertEquals(1, (int) eventCounts.get("org.granite.ModelBuild"));
+    assertEquals(10, (int) eventCounts.get("org.granite.Scoring"));
+    assertEquals(2, (int) eventCounts.get("org.granite.PhraseLookup"));
+  }
+
+  @Test
+  public void scoringIsNotSampledWithoutRecording() throws Exception {
+    final FlightRecorderMetricsListener listener = new FlightRecorderMetricsListener(1);
+
+    assertNull(listener.beginScoringQuery());
+
+    try (Recording recording = new Recording()) {
+      recording.enable(ScoringEvent.class);
+      recording.start();
+
+      assertTrue(listener.beginScoringQuery() instanceof ScoringEvent);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package org.granite.nlp.phrases;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Component generation, which grows with the permutations of every component length
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ComponentBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class SinglePhrase {
+
+    @Param({"2", "4", "6"})
+    public int phraseLength;
+
+    private IdentityPhrase identityPhrase;
+    private OrderedPhrase orderedPhrase;
+
+    @Setup
+    public void setUp() {
+      final Random random = new Random(42L);
+      final List<UUID> path = new ArrayList<>();
+
+      for (int index = 0; index < phraseLength; index++) {
+        path.add(new UUID(random.nextLong(), random.nextLong()));
+      }
+
+      identityPhrase = IdentityPhrase.of(path);
+      orderedPhrase = OrderedPhrase.of(path);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Tree {
+
+    @Param({"1000"})
+    public int phraseCount;
+
+    @Param({"4"})
+    public int maximumPhraseLength;
+
+    @Param({"2", "3"})
+    public int maximumComponentLength;
+
+    @Param({PhraseCorpus.DEFAULT_STOP_WORDS})
+    public String stopWordsPath;
+
+    private HashPhraseTree phraseTree;
+
+    @Setup
+    public void setUp() {
+      final PhraseCorpus corpus = new PhraseCorpus(
+          PhraseCorpus.loadStopWords(stopWordsPath),
+          2000,
+          0.3,
+          42L);
+
+      phraseTree = new HashPhraseTree(
+          corpus.getStopWords(),
+          ImmutableSet.of(),
+          PhraseTree::getLowerCasedWords);
+
+      for (String phrase : corpus.nextPhrases(phraseCount, maximumPhraseLength)) {
+        phraseTree.computeIfAbsent(phrase);
+      }
+    }
+  }
+
+  @Benchmark
+  public List<Phrase> componentizeIdentity(final SinglePhrase state) {
+    return state.identityPhrase.componentize(state.phraseLength);
+  }
+
+  @Benchmark
+  public List<Phrase> componentizeOrdered(final SinglePhrase state) {
+    return state.orderedPhrase.componentize(state.phraseLength);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public Map<Phrase, List<Phrase>> generateIdentityComponentMap(final Tree state) {
+    return state.phraseTree.generateIdentityComponentMap(state.maximumComponentLength);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public Map<Phrase, List<Phrase>> generateOrderedComponentMap(final Tree state) {
+    return state.phraseTree.generateOrderedComponentMap(state.maximumComponentLength);
+  }
+}
@@ -0,0 +1,120 @@
+package org.granite.nlp.phrases;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic phrases for the phrase benchmarks. Content words follow a Zipf distribution and a
+ * share of the words are stop words from samples/stop_words.txt, which is also the word filter.
+ */
+public class PhraseCorpus {
+
+  // Relative to the project directory, where the jmh task runs
+  public static final String DEFAULT_STOP_WORDS = "../samples/stop_words.txt";
+
+  private final ImmutableSet<String> stopWords;
+  private final List<String> stopWordList;
+  private final double[] cumulativeProbabilities;
+  private final double stopWordShare;
+  private final Random random;
+
+  public PhraseCorpus(
+      final ImmutableSet<String> stopWords,
+      final int vocabularySize,
+      final double stopWordShare,
+      final long seed) {
+    checkArgument(vocabularySize > 0, "vocabularySize must be > 0");
+    checkArgument(stopWordShare >= 0.0 && stopWordShare < 1.0, "stopWordShare is not in [0, 1)");
+
+    this.stopWords = stopWords;
+    this.stopWordList = new ArrayList<>(stopWords);
+    this.cumulativeProbabilities = new double[vocabularySize];
+    this.stopWordShare = stopWordList.isEmpty() ? 0.0 : stopWordShare;
+    this.random = new Random(seed);
+
+    double total = 0.0;
+
+    for (int rank = 0; rank < vocabularySize; rank++) {
+      total += 1.0 / (rank + 1);
+      cumulativeProbabilities[rank] = total;
+    }
+
+    for (int rank = 0; rank < vocabularySize; rank++) {
+      cumulativeProbabilities[rank] /= total;
+    }
+  }
+
+  // Falls back to the working directory so the benchmarks also run from the repository root
+  public static ImmutableSet<String> loadStopWords(final String path) {
+    Path stopWordsPath = Paths.get(path);
+
+    if (!Files.exists(stopWordsPath)) {
+      stopWordsPath = Paths.get("samples", stopWordsPath.getFileName().toString());
+    }
+
+    try {
+      return Files.readAllLines(stopWordsPath, StandardCharsets.UTF_8)
+          .stream()
+          .map(String::trim)
+          .filter(word -> !word.isEmpty())
+          .collect(ImmutableSet.toImmutableSet());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public ImmutableSet<String> getStopWords() {
+    return stopWords;
+  }
+
+  public String nextWord() {
+    if (random.nextDouble() < stopWordShare) {
+      return stopWordList.get(random.nextInt(stopWordList.size()));
+    }
+
+    final int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+
+    return "word" + (index < 0 ? Math.min(-index - 1, cumulativeProbabilities.length - 1) : index);
+  }
+
+  // Phrase of exactly the given number of distinct content words, with stop words mixed in
+  public String nextPhrase(final int contentWords) {
+    final List<String> words = new ArrayList<>();
+    final List<String> seen = new ArrayList<>();
+
+    while (seen.size() < contentWords) {
+      final String word = nextWord();
+
+      if (stopWords.contains(word)) {
+        words.add(word);
+      } else if (!seen.contains(word)) {
+        seen.add(word);
+        words.add(word);
+      }
+    }
+
+    return PhraseTree.DEFAULT_JOINER.join(words);
+  }
+
+  // Phrases of one to maximumLength content words
+  public List<String> nextPhrases(final int phraseCount, final int maximumLength) {
+    final List<String> phrases = new ArrayList<>(phraseCount);
+
+    for (int index = 0; index < phraseCount; index++) {
+      phrases.add(nextPhrase(1 + random.nextInt(maximumLength)));
+    }
+
+    return phrases;
+  }
+}
@@ -0,0 +1,131 @@
+package org.granite.nlp.phrases;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Phrase lookups and insertion over a synthetic corpus, filtered by the sample stop words.
+// Phrases rotate so each invocation handles a different one.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PhraseTreeBenchmark {
+
+  private static final int QUERY_COUNT = 1024;
+
+  @Param({"10000"})
+  public int phraseCount;
+
+  @Param({"6"})
+  public int maximumPhraseLength;
+
+  @Param({"5000"})
+  public int vocabularySize;
+
+  @Param({"0.3"})
+  public double stopWordShare;
+
+  @Param({PhraseCorpus.DEFAULT_STOP_WORDS})
+  public String stopWordsPath;
+
+  private ImmutableSet<String> stopWords;
+  private List<String> phrases;
+  private List<String> queries;
+  private HashPhraseTree phraseTree;
+  private ImmutablePhraseTree immutablePhraseTree;
+  private int queryIndex;
+
+  @Setup
+  public void setUp() {
+    final PhraseCorpus corpus = new PhraseCorpus(
+        PhraseCorpus.loadStopWords(stopWordsPath),
+        vocabularySize,
+        stopWordShare,
+        42L);
+
+    stopWords = corpus.getStopWords();
+    phrases = corpus.nextPhrases(phraseCount, maximumPhraseLength);
+    phraseTree = populate();
+    immutablePhraseTree = new ImmutablePhraseTree(phraseTree);
+
+    // Half known phrases, half new ones that mostly miss
+    queries = ImmutableList.<String>builder()
+        .addAll(phrases.subList(0, QUERY_COUNT / 2))
+        .addAll(corpus.nextPhrases(QUERY_COUNT / 2, maximumPhraseLength))
+        .build();
+  }
+
+  private String nextQuery() {
+    queryIndex = (queryIndex + 1) & (QUERY_COUNT - 1);
+
+    return queries.get(queryIndex);
+  }
+
+  private HashPhraseTree populate() {
+    final HashPhraseTree result = new HashPhraseTree(
+        stopWords,
+        ImmutableSet.of(),
+        PhraseTree::getLowerCasedWords);
+
+    for (String phrase : phrases) {
+      result.computeIfAbsent(phrase);
+    }
+
+    return result;
+  }
+
+  // Every phrase inserted into an empty tree
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public HashPhraseTree computeIfAbsentAll() {
+    return populate();
+  }
+
+  // Known and new phrases against a populated tree, which stops growing once the queries have
+  // all been added
+  @Benchmark
+  public Phrase computeIfAbsent() {
+    return phraseTree.computeIfAbsent(nextQuery());
+  }
+
+  @Benchmark
+  public Phrase get() {
+    return phraseTree.get(nextQuery());
+  }
+
+  @Benchmark
+  public Phrase getImmutable() {
+    return immutablePhraseTree.get(nextQuery());
+  }
+
+  @Benchmark
+  public String getSynonym() {
+    return phraseTree.getSynonym(nextQuery());
+  }
+
+  @Benchmark
+  public ImmutableList<String> sortedRawTextToPhrase() {
+    return phraseTree.getSortedPhraseMaker().rawTextToPhrase(nextQuery());
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public ImmutablePhraseTree buildImmutablePhraseTree() {
+    return new ImmutablePhraseTree(phraseTree);
+  }
+}
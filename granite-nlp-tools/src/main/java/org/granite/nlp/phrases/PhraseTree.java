@@ -108,6 +108,22 @@ public abstract class PhraseTree implements Serializable {
   abstract Map<Phrase, Phrase> getKnownPaths();
 
   public Phrase get(final String rawText) {
+    final PhraseTreeListener listener = PhraseTreeMetrics.getListener();
+    final Object token = listener.beginLookup();
+
+    if (token == null) {
+      return find(rawText);
+    }
+
+    final long startNanos = System.nanoTime();
+    final Phrase phrase = find(rawText);
+
+    listener.onGet(token, wordCount(phrase), phrase != null, System.nanoTime() - startNanos);
+
+    return phrase;
+  }
+
+  private Phrase find(final String rawText) {
     checkNotNull(rawText, "rawText");
 
     final String trimmed = rawText.trim();
@@ -172,6 +188,26 @@ public abstract class PhraseTree implements Serializable {
   }
 
   public Phrase computeIfAbsent(final String rawText) {
+    final PhraseTreeListener listener = PhraseTreeMetrics.getListener();
+    final Object token = listener.beginLookup();
+
+    if (token == null) {
+      return add(rawText);
+    }
+
+    final long startNanos = System.nanoTime();
+    final Phrase phrase = add(rawText);
+
+    listener.onComputeIfAbsent(token, wordCount(phrase), System.nanoTime() - startNanos);
+
+    return phrase;
+  }
+
+  private static int wordCount(final Phrase phrase) {
+    return phrase == null ? 0 : phrase.getOrderedPath().size();
+  }
+
+  private Phrase add(final String rawText) {
     checkNotNull(rawText, "rawText");
 
     final String trimmed = rawText.trim();
@@ -0,0 +1,33 @@
+package org.granite.nlp.phrases;
+
+/**
+ * Receives timings of phrase tree lookups, for forwarding to a metrics system or profiler.
+ * Words are the length of the resulting phrase, zero when the text was empty or filtered out.
+ * Methods may be called concurrently and must not throw.
+ *
+ * <p>Each lookup starts with {@link #beginLookup()}, called before the work, whose result is
+ * handed back as the token when the lookup is reported on the same thread.
+ */
+public interface PhraseTreeListener {
+
+  // Token for a sampled lookup that carries nothing from begin to report
+  Object SAMPLED = new Object();
+
+  // Called before each lookup. A null token leaves the lookup untimed, so listeners can sample
+  // or switch timing off cheaply.
+  default Object beginLookup() {
+    return SAMPLED;
+  }
+
+  default void onGet(
+      final Object token,
+      final int words,
+      final boolean found,
+      final long elapsedNanos) {
+
+  }
+
+  default void onComputeIfAbsent(final Object token, final int words, final long elapsedNanos) {
+
+  }
+}
@@ -0,0 +1,47 @@
+package org.granite.nlp.phrases;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * The listener phrase tree lookups are reported to. The first {@link PhraseTreeListener}
+ * registered under META-INF/services is installed when the class loads, otherwise a listener
+ * that samples nothing.
+ */
+public class PhraseTreeMetrics {
+
+  public static final PhraseTreeListener NO_OP = new PhraseTreeListener() {
+
+    @Override
+    public Object beginLookup() {
+      return null;
+    }
+  };
+
+  private static volatile PhraseTreeListener listener = loadListener();
+
+  private PhraseTreeMetrics() {
+
+  }
+
+  public static PhraseTreeListener getListener() {
+    return listener;
+  }
+
+  public static void setListener(final PhraseTreeListener listener) {
+    PhraseTreeMetrics.listener = checkNotNull(listener, "listener");
+  }
+
+  public static void clearListener() {
+    listener = NO_OP;
+  }
+
+  private static PhraseTreeListener loadListener() {
+    final Iterator<PhraseTreeListener> listeners =
+        ServiceLoader.load(PhraseTreeListener.class).iterator();
+
+    return listeners.hasNext() ? listeners.next() : NO_OP;
+  }
+}
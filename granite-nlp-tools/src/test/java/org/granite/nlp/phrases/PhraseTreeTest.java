@@ -2,6 +2,8 @@ package org.granite.nlp.phrases;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
@@ -9,6 +11,7 @@ import com.google.common.collect.Sets.SetView;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.junit.Test;
 
@@ -101,4 +104,55 @@ public class PhraseTreeTest {
 
 
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testLookupListener() {
+    final HashPhraseTree phraseTree = new HashPhraseTree(
+        ImmutableSet.of("the"),
+        ImmutableSet.of(),
+        list -> list
+    );
+
+    final AtomicInteger addedWords = new AtomicInteger();
+    final AtomicInteger foundLookups = new AtomicInteger();
+    final AtomicInteger missedLookups = new AtomicInteger();
+
+    PhraseTreeMetrics.setListener(new PhraseTreeListener() {
+
+      @Override
+      public void onGet(
+          final Object token,
+          final int words,
+          final boolean found,
+          final long elapsedNanos) {
+        assertSame(PhraseTreeListener.SAMPLED, token);
+        assertTrue(elapsedNanos >= 0L);
+        (found ? foundLookups : missedLookups).incrementAndGet();
+      }
+
+      @Override
+      public void onComputeIfAbsent(
+          final Object token,
+          final int words,
+          final long elapsedNanos) {
+        addedWords.addAndGet(words);
+      }
+    });
+
+    try {
+      phraseTree.computeIfAbsent("the quick brown fox");
+      phraseTree.computeIfAbsent("the");
+      phraseTree.get("brown quick fox");
+      phraseTree.get("lazy dog");
+      phraseTree.getSynonym("quick fox");
+    } finally {
+      PhraseTreeMetrics.clearListener();
+    }
+
+    phraseTree.get("quick brown fox");
+
+    assertEquals(3, addedWords.get());
+    assertEquals(1, foundLookups.get());
+    assertEquals(2, missedLookups.get());
+  }
+}